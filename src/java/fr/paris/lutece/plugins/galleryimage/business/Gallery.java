@@ -58,6 +58,32 @@ public class Gallery implements RBACResource
     private int _nHeightGallery;
     private int _nWidthGallery;
     private boolean _bAuthenticatedMode;
+    private int _nLoadBinaryLimit = -1;
+
+    /**
+     * Constructor
+     */
+    public Gallery( )
+    {
+    }
+
+    /**
+     * Copy constructor : every field of the gallery must be copied here
+     * 
+     * @param gallery
+     *            the gallery to copy
+     */
+    public Gallery( Gallery gallery )
+    {
+        _nIdGallery = gallery._nIdGallery;
+        _strCodeGallery = gallery._strCodeGallery;
+        _strLabel = gallery._strLabel;
+        _strGalleryImageType = gallery._strGalleryImageType;
+        _nHeightGallery = gallery._nHeightGallery;
+        _nWidthGallery = gallery._nWidthGallery;
+        _bAuthenticatedMode = gallery._bAuthenticatedMode;
+        _nLoadBinaryLimit = gallery._nLoadBinaryLimit;
+    }
 
     /**
      * Returns the IdGallery
@@ -197,6 +223,27 @@ public class Gallery implements RBACResource
         this._bAuthenticatedMode = bAuthenticatedMode;
     }
 
+    /**
+     * Returns the number of slides of a page which carry their binary, the others being loaded lazily
+     * 
+     * @return the LoadBinaryLimit, negative to use the default limit of the plugin
+     */
+    public int getLoadBinaryLimit( )
+    {
+        return _nLoadBinaryLimit;
+    }
+
+    /**
+     * Sets the number of slides of a page which carry their binary
+     * 
+     * @param nLoadBinaryLimit
+     *            The LoadBinaryLimit, negative to use the default limit of the plugin
+     */
+    public void setLoadBinaryLimit( int nLoadBinaryLimit )
+    {
+        _nLoadBinaryLimit = nLoadBinaryLimit;
+    }
+
     @Override
     public String getResourceTypeCode( )
     {
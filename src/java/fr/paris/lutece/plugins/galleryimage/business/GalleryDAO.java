@@ -46,12 +46,12 @@ import java.sql.Statement;
 public final class GalleryDAO implements IGalleryDAO
 {
     // Constants
-    private static final String SQL_QUERY_SELECT = "SELECT id_gallery, code_gallery, label, gallery_image_type, height_gallery, width_gallery, authenticated_mode FROM galleryimage_gallery WHERE id_gallery = ?";
-    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_gallery ( label, gallery_image_type, height_gallery, width_gallery, authenticated_mode ) VALUES ( ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_SELECT = "SELECT id_gallery, code_gallery, label, gallery_image_type, height_gallery, width_gallery, authenticated_mode, load_binary_limit FROM galleryimage_gallery WHERE id_gallery = ?";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_gallery ( label, gallery_image_type, height_gallery, width_gallery, authenticated_mode, load_binary_limit ) VALUES ( ?, ?, ?, ?, ?, ? ) ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM galleryimage_gallery WHERE id_gallery = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE galleryimage_gallery SET id_gallery = ?, code_gallery = ?, label = ?, gallery_image_type = ?, height_gallery = ?, width_gallery = ?, authenticated_mode = ? WHERE id_gallery = ?";
-    private static final String SQL_QUERY_SELECTALL = "SELECT id_gallery, code_gallery, label, gallery_image_type, height_gallery, width_gallery, authenticated_mode FROM galleryimage_gallery";
-    private static final String SQL_QUERY_SELECT_BY_CODE = "SELECT id_gallery, code_gallery, label, gallery_image_type, height_gallery, width_gallery, authenticated_mode FROM galleryimage_gallery WHERE code_gallery = ?";
+    private static final String SQL_QUERY_UPDATE = "UPDATE galleryimage_gallery SET id_gallery = ?, code_gallery = ?, label = ?, gallery_image_type = ?, height_gallery = ?, width_gallery = ?, authenticated_mode = ?, load_binary_limit = ? WHERE id_gallery = ?";
+    private static final String SQL_QUERY_SELECTALL = "SELECT id_gallery, code_gallery, label, gallery_image_type, height_gallery, width_gallery, authenticated_mode, load_binary_limit FROM galleryimage_gallery";
+    private static final String SQL_QUERY_SELECT_BY_CODE = "SELECT id_gallery, code_gallery, label, gallery_image_type, height_gallery, width_gallery, authenticated_mode, load_binary_limit FROM galleryimage_gallery WHERE code_gallery = ?";
 
     /**
      * {@inheritDoc }
@@ -67,6 +67,7 @@ public final class GalleryDAO implements IGalleryDAO
             daoUtil.setInt( ++nIndex, gallery.getHeightGallery( ) );
             daoUtil.setInt( ++nIndex, gallery.getWidthGallery( ) );
             daoUtil.setBoolean( ++nIndex, gallery.isAuthenticatedMode( ) );
+            daoUtil.setInt( ++nIndex, gallery.getLoadBinaryLimit( ) );
             
             daoUtil.executeUpdate( );
             if ( daoUtil.nextGeneratedKey( ) )
@@ -102,6 +103,7 @@ public final class GalleryDAO implements IGalleryDAO
                 gallery.setHeightGallery( daoUtil.getInt( ++nIndex ) );
                 gallery.setWidthGallery( daoUtil.getInt( ++nIndex ) );
                 gallery.setAuthenticatedMode( daoUtil.getBoolean( ++nIndex ) );
+                gallery.setLoadBinaryLimit( daoUtil.getInt( ++nIndex ) );
             }
 
             return gallery;
@@ -137,6 +139,7 @@ public final class GalleryDAO implements IGalleryDAO
             daoUtil.setInt( ++nIndex, gallery.getHeightGallery( ) );
             daoUtil.setInt( ++nIndex, gallery.getWidthGallery( ) );
             daoUtil.setBoolean( ++nIndex, gallery.isAuthenticatedMode( ) );
+            daoUtil.setInt( ++nIndex, gallery.getLoadBinaryLimit( ) );
             
             daoUtil.setInt( ++nIndex, gallery.getIdGallery( ) );
 
@@ -166,6 +169,7 @@ public final class GalleryDAO implements IGalleryDAO
                 gallery.setHeightGallery( daoUtil.getInt( ++nIndex ) );
                 gallery.setWidthGallery( daoUtil.getInt( ++nIndex ) );
                 gallery.setAuthenticatedMode( daoUtil.getBoolean( ++nIndex ) );
+                gallery.setLoadBinaryLimit( daoUtil.getInt( ++nIndex ) );
                 
                 listGallery.add( gallery );
             }
@@ -199,6 +203,7 @@ public final class GalleryDAO implements IGalleryDAO
                 gallery.setHeightGallery( daoUtil.getInt( ++nIndex ) );
                 gallery.setWidthGallery( daoUtil.getInt( ++nIndex ) );
                 gallery.setAuthenticatedMode( daoUtil.getBoolean( ++nIndex ) );
+                gallery.setLoadBinaryLimit( daoUtil.getInt( ++nIndex ) );
             }
 
             return gallery;
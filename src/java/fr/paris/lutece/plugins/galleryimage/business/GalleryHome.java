@@ -35,6 +35,9 @@ package fr.paris.lutece.plugins.galleryimage.business;
 
 import java.util.List;
 
+import fr.paris.lutece.plugins.galleryimage.service.GalleryCacheService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryPagesService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryStateService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 
 /**
@@ -61,7 +64,11 @@ public final class GalleryHome
      */
     public static Gallery create( Gallery gallery )
     {
-        return _galleryDAO.insert( gallery );
+        Gallery galleryCreated = _galleryDAO.insert( gallery );
+        GalleryCacheService.getInstance( ).put( galleryCreated );
+        GalleryStateService.getInstance( ).invalidate( galleryCreated.getIdGallery( ) );
+
+        return galleryCreated;
     }
 
     /**
@@ -72,6 +79,9 @@ public final class GalleryHome
     public static void remove( int nIdGallery )
     {
         _galleryDAO.delete( nIdGallery );
+        GalleryCacheService.getInstance( ).remove( nIdGallery );
+        GalleryStateService.getInstance( ).invalidate( nIdGallery );
+        GalleryPagesService.getInstance( ).invalidate( nIdGallery );
     }
 
     /**
@@ -82,28 +92,54 @@ public final class GalleryHome
     public static void update( Gallery gallery )
     {
         _galleryDAO.store( gallery );
+        GalleryCacheService.getInstance( ).put( gallery );
+        GalleryStateService.getInstance( ).invalidate( gallery.getIdGallery( ) );
     }
 
     /**
-     * Returns Gallery by id
+     * Returns Gallery by id, from the gallery cache when possible
      * 
      * @param nIdGallery
      * @return The gallery
      */
     public static Gallery find( int nIdGallery )
     {
-        return _galleryDAO.load( nIdGallery );
+        Gallery gallery = GalleryCacheService.getInstance( ).getById( nIdGallery );
+
+        if ( gallery == null )
+        {
+            gallery = _galleryDAO.load( nIdGallery );
+
+            if ( gallery != null )
+            {
+                GalleryCacheService.getInstance( ).put( gallery );
+            }
+        }
+
+        return gallery;
     }
     
     /**
-     * Returns Gallery by code gallery
+     * Returns Gallery by code gallery, from the gallery cache when possible
      * 
      * @param strCodeGallery
      * @return The gallery
      */
     public static Gallery findByCodeGallery( String strCodeGallery )
     {
-        return _galleryDAO.loadByCodeGallery( strCodeGallery );       
+        Gallery gallery = GalleryCacheService.getInstance( ).getByCode( strCodeGallery );
+
+        if ( gallery == null )
+        {
+            gallery = _galleryDAO.loadByCodeGallery( strCodeGallery );
+
+            if ( gallery != null )
+            {
+                GalleryCacheService.getInstance( ).put( gallery );
+            }
+        }
+
+        return gallery;
     }
     
 
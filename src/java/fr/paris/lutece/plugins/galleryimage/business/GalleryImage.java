@@ -44,6 +44,7 @@ public class GalleryImage
     private int _nIdGalleryImage;
     private int _nIdGallery;
     private int _nIdImage;
+    private int _nPosition;
     
     /**
      * Returns the IdGalleryImage
@@ -107,4 +108,25 @@ public class GalleryImage
     {
         _nIdImage = nIdImage;
     }
+
+    /**
+     * Returns the position of the image in the gallery
+     * 
+     * @return The position
+     */
+    public int getPosition( )
+    {
+        return _nPosition;
+    }
+
+    /**
+     * Sets the position of the image in the gallery
+     * 
+     * @param nPosition
+     *            The position
+     */
+    public void setPosition( int nPosition )
+    {
+        _nPosition = nPosition;
+    }
 }
@@ -38,6 +38,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.sql.Statement;
 
 /**
@@ -46,15 +47,25 @@ import java.sql.Statement;
 public final class GalleryImageDAO implements IGalleryImageDAO
 {
     // Constants
-    private static final String SQL_QUERY_SELECT = "SELECT id_gallery_image, id_gallery, id_image FROM galleryimage_gallery_image WHERE id_gallery_image = ?";
-    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_gallery_image ( id_gallery, id_image ) VALUES ( ?, ? ) ";
+    private static final String SQL_QUERY_SELECT = "SELECT id_gallery_image, id_gallery, id_image, image_position FROM galleryimage_gallery_image WHERE id_gallery_image = ?";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_gallery_image ( id_gallery, id_image, image_position ) VALUES ( ?, ?, ? ) ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM galleryimage_gallery_image WHERE id_gallery_image = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE galleryimage_gallery_image SET id_gallery_image = ?, id_gallery = ?, id_image = ? WHERE id_gallery_image = ?";
-    private static final String SQL_QUERY_SELECTALL = "SELECT id_gallery_image, id_gallery, id_image FROM galleryimage_gallery_image";
-    private static final String SQL_QUERY_SELECT_BY_GALLERY = "SELECT id_gallery_image, id_gallery, id_image FROM galleryimage_gallery_image WHERE id_gallery = ?";
+    private static final String SQL_QUERY_UPDATE = "UPDATE galleryimage_gallery_image SET id_gallery_image = ?, id_gallery = ?, id_image = ?, image_position = ? WHERE id_gallery_image = ?";
+    private static final String SQL_QUERY_SELECTALL = "SELECT id_gallery_image, id_gallery, id_image, image_position FROM galleryimage_gallery_image";
+    private static final String SQL_QUERY_SELECT_BY_GALLERY = "SELECT id_gallery_image, id_gallery, id_image, image_position FROM galleryimage_gallery_image WHERE id_gallery = ? ORDER BY image_position, id_image";
     private static final String SQL_QUERY_DELETE_BY_GALLERY = "DELETE FROM galleryimage_gallery_image WHERE id_gallery = ? ";
     private static final String SQL_QUERY_DELETE_BY_IMAGE = "DELETE FROM galleryimage_gallery_image WHERE id_image = ? ";
     private static final String SQL_QUERY_DELETE_BY_GALLERY_AND_IMAGE = "DELETE FROM galleryimage_gallery_image WHERE id_gallery = ? AND id_image = ? ";
+    private static final String SQL_QUERY_SELECT_POSITION = "SELECT image_position FROM galleryimage_gallery_image WHERE id_gallery = ? AND id_image = ? ";
+    private static final String SQL_QUERY_SELECT_MAX_POSITION = "SELECT MAX( image_position ) FROM galleryimage_gallery_image WHERE id_gallery = ? ";
+    private static final String SQL_QUERY_SELECT_POSITIONS_BEFORE = "SELECT image_position FROM galleryimage_gallery_image WHERE id_gallery = ? AND image_position < ? ORDER BY image_position DESC LIMIT ?";
+    private static final String SQL_QUERY_SELECT_POSITIONS_AFTER = "SELECT image_position FROM galleryimage_gallery_image WHERE id_gallery = ? AND image_position > ? ORDER BY image_position LIMIT ?";
+    private static final String SQL_QUERY_SELECT_GALLERY_IDS_BY_IMAGE = "SELECT DISTINCT id_gallery FROM galleryimage_gallery_image WHERE id_image = ? ";
+    private static final String SQL_QUERY_SELECT_GALLERY_IDS_BY_IMAGES = "SELECT DISTINCT id_gallery FROM galleryimage_gallery_image WHERE id_image IN ( ";
+    private static final String SQL_QUERY_SELECT_GALLERY_IDS_BY_IMAGES_END = " ) ";
+    private static final String SQL_QUERY_SELECT_POSITIONS = "SELECT image_position FROM galleryimage_gallery_image WHERE id_gallery = ? ORDER BY image_position";
+    private static final String SQL_QUERY_UPDATE_POSITION = "UPDATE galleryimage_gallery_image SET image_position = ? WHERE id_gallery = ? AND id_image = ? ";
+    private static final String SQL_QUERY_UPDATE_POSITION_BY_ID = "UPDATE galleryimage_gallery_image SET image_position = ? WHERE id_gallery_image = ? ";
 
     /**
      * {@inheritDoc }
@@ -67,6 +78,7 @@ public final class GalleryImageDAO implements IGalleryImageDAO
             int nIndex = 0;
             daoUtil.setInt( ++nIndex, galleryImage.getIdGallery( ) );
             daoUtil.setInt( ++nIndex, galleryImage.getIdImage( ) );
+            daoUtil.setInt( ++nIndex, galleryImage.getPosition( ) );
 
             daoUtil.executeUpdate( );
             if ( daoUtil.nextGeneratedKey( ) )
@@ -97,6 +109,7 @@ public final class GalleryImageDAO implements IGalleryImageDAO
                 galleryImage.setIdGalleryImage( daoUtil.getInt( ++nIndex ) );
                 galleryImage.setIdGallery( daoUtil.getInt( ++nIndex ) );
                 galleryImage.setIdImage( daoUtil.getInt( ++nIndex ) );
+                galleryImage.setPosition( daoUtil.getInt( ++nIndex ) );
             }
 
             return galleryImage;
@@ -122,6 +135,7 @@ public final class GalleryImageDAO implements IGalleryImageDAO
                 galleryImage.setIdGalleryImage( daoUtil.getInt( ++nIndex ) );
                 galleryImage.setIdGallery( daoUtil.getInt( ++nIndex ) );
                 galleryImage.setIdImage( daoUtil.getInt( ++nIndex ) );
+                galleryImage.setPosition( daoUtil.getInt( ++nIndex ) );
                 listGalleryImages.add( galleryImage );
             }
 
@@ -194,6 +208,7 @@ public final class GalleryImageDAO implements IGalleryImageDAO
             daoUtil.setInt( ++nIndex, galleryImage.getIdGalleryImage( ) );
             daoUtil.setInt( ++nIndex, galleryImage.getIdGallery( ) );
             daoUtil.setInt( ++nIndex, galleryImage.getIdImage( ) );
+            daoUtil.setInt( ++nIndex, galleryImage.getPosition( ) );
             daoUtil.setInt( ++nIndex, galleryImage.getIdGalleryImage( ) );
 
             daoUtil.executeUpdate( );
@@ -218,10 +233,271 @@ public final class GalleryImageDAO implements IGalleryImageDAO
                 galleryImage.setIdGalleryImage( daoUtil.getInt( ++nIndex ) );
                 galleryImage.setIdGallery( daoUtil.getInt( ++nIndex ) );
                 galleryImage.setIdImage( daoUtil.getInt( ++nIndex ) );
+                galleryImage.setPosition( daoUtil.getInt( ++nIndex ) );
                 listGalleryImages.add( galleryImage );
             }
 
             return listGalleryImages;
         }
     }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Integer selectPosition( int nIdGallery, int nIdImage )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_POSITION, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdGallery );
+            daoUtil.setInt( 2, nIdImage );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                return daoUtil.getInt( 1 );
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Integer selectMaxPosition( int nIdGallery )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_MAX_POSITION, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdGallery );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) && daoUtil.getObject( 1 ) != null )
+            {
+                return daoUtil.getInt( 1 );
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Integer> selectPositionsBefore( int nIdGallery, int nPosition, int nLimit )
+    {
+        return selectPositions( SQL_QUERY_SELECT_POSITIONS_BEFORE, nIdGallery, nPosition, nLimit );
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Integer> selectPositionsAfter( int nIdGallery, int nPosition, int nLimit )
+    {
+        return selectPositions( SQL_QUERY_SELECT_POSITIONS_AFTER, nIdGallery, nPosition, nLimit );
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Integer> selectGalleryIdsByImage( int nIdImage )
+    {
+        List<Integer> listIdGalleries = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_GALLERY_IDS_BY_IMAGE, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdImage );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIdGalleries.add( daoUtil.getInt( 1 ) );
+            }
+
+            return listIdGalleries;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Integer> selectGalleryIdsByImages( List<Integer> listIdImages )
+    {
+        List<Integer> listIdGalleries = new ArrayList<>( );
+
+        if ( listIdImages.isEmpty( ) )
+        {
+            return listIdGalleries;
+        }
+
+        String strQuery = SQL_QUERY_SELECT_GALLERY_IDS_BY_IMAGES + listIdImages.stream( ).map( i -> "?" ).collect( Collectors.joining( "," ) )
+                + SQL_QUERY_SELECT_GALLERY_IDS_BY_IMAGES_END;
+
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            for ( int i = 0; i < listIdImages.size( ); i++ )
+            {
+                daoUtil.setInt( i + 1, listIdImages.get( i ) );
+            }
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIdGalleries.add( daoUtil.getInt( 1 ) );
+            }
+
+            return listIdGalleries;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Integer> selectPositions( int nIdGallery )
+    {
+        List<Integer> listPositions = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_POSITIONS, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdGallery );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listPositions.add( daoUtil.getInt( 1 ) );
+            }
+
+            return listPositions;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void updatePosition( int nIdGallery, int nIdImage, int nPosition )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_POSITION, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, nPosition );
+            daoUtil.setInt( ++nIndex, nIdGallery );
+            daoUtil.setInt( ++nIndex, nIdImage );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void renumber( int nIdGallery, int nGap )
+    {
+        List<GalleryImage> listGalleryImages = findByGallery( nIdGallery );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_POSITION_BY_ID, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            int nPosition = 0;
+
+            for ( GalleryImage galleryImage : listGalleryImages )
+            {
+                nPosition += nGap;
+                daoUtil.setInt( 1, nPosition );
+                daoUtil.setInt( 2, galleryImage.getIdGalleryImage( ) );
+                daoUtil.addBatch( );
+            }
+
+            if ( !listGalleryImages.isEmpty( ) )
+            {
+                daoUtil.executeBatch( );
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insertBatch( List<GalleryImage> listGalleryImages )
+    {
+        if ( listGalleryImages.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            for ( GalleryImage galleryImage : listGalleryImages )
+            {
+                int nIndex = 0;
+                daoUtil.setInt( ++nIndex, galleryImage.getIdGallery( ) );
+                daoUtil.setInt( ++nIndex, galleryImage.getIdImage( ) );
+                daoUtil.setInt( ++nIndex, galleryImage.getPosition( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void deleteBatchByGalleryAndImages( int nIdGallery, List<Integer> listIdImages )
+    {
+        if ( listIdImages.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_BY_GALLERY_AND_IMAGE, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            for ( Integer nIdImage : listIdImages )
+            {
+                daoUtil.setInt( 1, nIdGallery );
+                daoUtil.setInt( 2, nIdImage );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * Select the positions next to a position
+     * 
+     * @param strQuery
+     *            the query
+     * @param nIdGallery
+     *            the gallery id
+     * @param nPosition
+     *            the position
+     * @param nLimit
+     *            the maximum number of positions
+     * @return the positions, from the nearest
+     */
+    private static List<Integer> selectPositions( String strQuery, int nIdGallery, int nPosition, int nLimit )
+    {
+        List<Integer> listPositions = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, nIdGallery );
+            daoUtil.setInt( ++nIndex, nPosition );
+            daoUtil.setInt( ++nIndex, nLimit );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listPositions.add( daoUtil.getInt( 1 ) );
+            }
+
+            return listPositions;
+        }
+    }
 }
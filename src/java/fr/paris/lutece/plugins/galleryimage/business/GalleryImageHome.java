@@ -33,6 +33,7 @@
  */
 package fr.paris.lutece.plugins.galleryimage.business;
 
+import fr.paris.lutece.plugins.galleryimage.service.GalleryStateService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import java.util.List;
 
@@ -65,6 +66,7 @@ public final class GalleryImageHome
     public static GalleryImage create( GalleryImage galleryImage )
     {
         _dao.insert( galleryImage );
+        GalleryStateService.getInstance( ).invalidate( galleryImage.getIdGallery( ) );
 
         return galleryImage;
     }
@@ -79,8 +81,16 @@ public final class GalleryImageHome
 
     public static GalleryImage update( GalleryImage galleryImage )
     {
+        GalleryImage galleryImagePrevious = _dao.load( galleryImage.getIdGalleryImage( ) );
         _dao.store( galleryImage );
 
+        // The link may have moved from a gallery to another
+        if ( galleryImagePrevious != null )
+        {
+            GalleryStateService.getInstance( ).invalidate( galleryImagePrevious.getIdGallery( ) );
+        }
+        GalleryStateService.getInstance( ).invalidate( galleryImage.getIdGallery( ) );
+
         return galleryImage;
     }
 
@@ -93,7 +103,13 @@ public final class GalleryImageHome
 
     public static void remove( int nGalleryImageId )
     {
+        GalleryImage galleryImage = _dao.load( nGalleryImageId );
         _dao.delete( nGalleryImageId );
+
+        if ( galleryImage != null )
+        {
+            GalleryStateService.getInstance( ).invalidate( galleryImage.getIdGallery( ) );
+        }
     }
 
     /**
@@ -105,6 +121,7 @@ public final class GalleryImageHome
     public static void removeByGalleryId( int nGalleryId )
     {
         _dao.deleteByGallery( nGalleryId );
+        GalleryStateService.getInstance( ).invalidate( nGalleryId );
     }
 
     /**
@@ -115,7 +132,9 @@ public final class GalleryImageHome
      */
     public static void removeByImageId( int nImageId )
     {
+        List<Integer> listIdGalleries = _dao.selectGalleryIdsByImage( nImageId );
         _dao.deleteByImage( nImageId );
+        GalleryStateService.getInstance( ).invalidate( listIdGalleries );
     }
     
     /**
@@ -127,11 +146,140 @@ public final class GalleryImageHome
     public static void removeByGalleryIdAndIdImage( int nGalleryId, int nImageId  )
     {
         _dao.deleteByGalleryAndImage( nGalleryId, nImageId );
+        GalleryStateService.getInstance( ).invalidate( nGalleryId );
+    }
+
+    /**
+     * Create several links of a gallery in a single batch. The caches of the gallery are left to the caller, which invalidates them once its
+     * transaction is committed
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param listGalleryImages
+     *            The links of the gallery to create
+     */
+    public static void createBatch( int nGalleryId, List<GalleryImage> listGalleryImages )
+    {
+        _dao.insertBatch( listGalleryImages );
+    }
+
+    /**
+     * Remove the links between a gallery and several images in a single batch. The caches of the gallery are left to the caller, which invalidates
+     * them once its transaction is committed
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param listImageIds
+     *            The image Ids
+     */
+    public static void removeBatchByGalleryIdAndIdImages( int nGalleryId, List<Integer> listImageIds )
+    {
+        _dao.deleteBatchByGalleryAndImages( nGalleryId, listImageIds );
+    }
+
+    /**
+     * Update the position of an image in a gallery
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param nImageId
+     *            The image Id
+     * @param nPosition
+     *            The new position
+     */
+    public static void updatePosition( int nGalleryId, int nImageId, int nPosition )
+    {
+        _dao.updatePosition( nGalleryId, nImageId, nPosition );
+        GalleryStateService.getInstance( ).invalidate( nGalleryId );
+    }
+
+    /**
+     * Spread the positions of a gallery again with a constant gap, keeping their order. The caches of the gallery are left to the caller, which
+     * invalidates them once its transaction is committed
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param nGap
+     *            The gap between two positions
+     */
+    public static void renumber( int nGalleryId, int nGap )
+    {
+        _dao.renumber( nGalleryId, nGap );
     }
 
     ///////////////////////////////////////////////////////////////////////////
     // Finders
 
+    /**
+     * Returns the position of an image in a gallery
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param nImageId
+     *            The image Id
+     * @return the position, or null if the image is not linked to the gallery
+     */
+    public static Integer findPosition( int nGalleryId, int nImageId )
+    {
+        return _dao.selectPosition( nGalleryId, nImageId );
+    }
+
+    /**
+     * Returns the last position of a gallery
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @return the last position, or null if the gallery is empty
+     */
+    public static Integer findMaxPosition( int nGalleryId )
+    {
+        return _dao.selectMaxPosition( nGalleryId );
+    }
+
+    /**
+     * Returns the positions before a position, from the nearest
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param nPosition
+     *            The position
+     * @param nLimit
+     *            The maximum number of positions
+     * @return the positions
+     */
+    public static List<Integer> findPositionsBefore( int nGalleryId, int nPosition, int nLimit )
+    {
+        return _dao.selectPositionsBefore( nGalleryId, nPosition, nLimit );
+    }
+
+    /**
+     * Returns the positions after a position, from the nearest
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @param nPosition
+     *            The position
+     * @param nLimit
+     *            The maximum number of positions
+     * @return the positions
+     */
+    public static List<Integer> findPositionsAfter( int nGalleryId, int nPosition, int nLimit )
+    {
+        return _dao.selectPositionsAfter( nGalleryId, nPosition, nLimit );
+    }
+
+    /**
+     * Returns all the positions of a gallery, in order
+     * 
+     * @param nGalleryId
+     *            The gallery Id
+     * @return the positions
+     */
+    public static List<Integer> findPositions( int nGalleryId )
+    {
+        return _dao.selectPositions( nGalleryId );
+    }
+
     /**
      * Returns an instance of a galleryImage whose identifier is specified in parameter
      * 
@@ -158,6 +306,30 @@ public final class GalleryImageHome
         return _dao.findByGallery( nKey );
     }
 
+    /**
+     * Find the ids of the galleries an image is linked to
+     * 
+     * @param nImageId
+     *            The image id
+     * @return the gallery ids
+     */
+    public static List<Integer> findGalleryIdsByImageId( int nImageId )
+    {
+        return _dao.selectGalleryIdsByImage( nImageId );
+    }
+
+    /**
+     * Find the ids of the galleries several images are linked to
+     * 
+     * @param listImageIds
+     *            The image ids
+     * @return the gallery ids, without duplicates
+     */
+    public static List<Integer> findGalleryIdsByImageIds( List<Integer> listImageIds )
+    {
+        return _dao.selectGalleryIdsByImages( listImageIds );
+    }
+
     /**
      * Load the data of all the galleryImage objects and returns them in form of a collection
      * 
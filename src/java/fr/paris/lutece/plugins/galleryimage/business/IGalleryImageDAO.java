@@ -123,4 +123,116 @@ public interface IGalleryImageDAO
 
     List<GalleryImage> selectGalleryImagesList( );
 
+    /**
+     * Load the position of an image in a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nIdImage
+     *            the image id
+     * @return the position, or null if the image is not linked to the gallery
+     */
+    Integer selectPosition( int nIdGallery, int nIdImage );
+
+    /**
+     * Load the last position of a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @return the last position, or null if the gallery is empty
+     */
+    Integer selectMaxPosition( int nIdGallery );
+
+    /**
+     * Load the positions before a position, from the nearest
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nPosition
+     *            the position
+     * @param nLimit
+     *            the maximum number of positions
+     * @return the positions
+     */
+    List<Integer> selectPositionsBefore( int nIdGallery, int nPosition, int nLimit );
+
+    /**
+     * Load the positions after a position, from the nearest
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nPosition
+     *            the position
+     * @param nLimit
+     *            the maximum number of positions
+     * @return the positions
+     */
+    List<Integer> selectPositionsAfter( int nIdGallery, int nPosition, int nLimit );
+
+    /**
+     * Load all the positions of a gallery, in order
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @return the positions
+     */
+    List<Integer> selectPositions( int nIdGallery );
+
+    /**
+     * Load the ids of the galleries an image is linked to
+     * 
+     * @param nIdImage
+     *            the image id
+     * @return the gallery ids
+     */
+    List<Integer> selectGalleryIdsByImage( int nIdImage );
+
+    /**
+     * Load the ids of the galleries several images are linked to, in a single query
+     * 
+     * @param listIdImages
+     *            the image ids
+     * @return the gallery ids, without duplicates
+     */
+    List<Integer> selectGalleryIdsByImages( List<Integer> listIdImages );
+
+    /**
+     * Update the position of an image in a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nIdImage
+     *            the image id
+     * @param nPosition
+     *            the new position
+     */
+    void updatePosition( int nIdGallery, int nIdImage, int nPosition );
+
+    /**
+     * Spread the positions of a gallery again with a constant gap, keeping their order
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nGap
+     *            the gap between two positions
+     */
+    void renumber( int nIdGallery, int nGap );
+
+    /**
+     * Insert several links in a single batch
+     * 
+     * @param listGalleryImages
+     *            the links to insert
+     */
+    void insertBatch( List<GalleryImage> listGalleryImages );
+
+    /**
+     * Delete the links between a gallery and several images in a single batch
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param listIdImages
+     *            the image ids
+     */
+    void deleteBatchByGalleryAndImages( int nIdGallery, List<Integer> listIdImages );
 }
@@ -35,6 +35,7 @@ package fr.paris.lutece.plugins.galleryimage.business;
 
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import java.util.List;
+import java.util.Map;
 
 /**
  * IImageDAO Interface
@@ -54,6 +55,16 @@ public interface IImageDAO
 
     void insert( Image image, Plugin plugin );
 
+    /**
+     * Insert several records in the table with a single batch, and set their generated primary keys
+     * 
+     * @param listImages
+     *            the images to insert
+     * @param plugin
+     *            the Plugin
+     */
+    void insertBatch( List<Image> listImages, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
@@ -76,6 +87,28 @@ public interface IImageDAO
 
     void delete( int nIdImage, Plugin plugin );
 
+    /**
+     * Update the perceptual hash of an image
+     * 
+     * @param nIdImage
+     *            int identifier of the Image
+     * @param lPerceptualHash
+     *            the perceptual hash
+     * @param plugin
+     *            the Plugin
+     */
+    void storePerceptualHash( int nIdImage, long lPerceptualHash, Plugin plugin );
+
+    /**
+     * Update the perceptual hashes of several images with a single batch. The images without hash are ignored.
+     * 
+     * @param listImages
+     *            the images
+     * @param plugin
+     *            the Plugin
+     */
+    void storePerceptualHashes( List<Image> listImages, Plugin plugin );
+
     ///////////////////////////////////////////////////////////////////////////
     // Finders
 
@@ -115,6 +148,18 @@ public interface IImageDAO
     
     List<Integer> selectIdsLinkedToGallery( int nGalleryId, Plugin plugin );
     
+    /**
+     * Load the list of images that are linked with a gallery, without their binary
+     * 
+     * @param nGalleryId
+     *            the gallery id
+     * @param plugin
+     *            the Plugin
+     * @return The list of images that are linked with a gallery
+     */
+    
+    List<Image> selectImagesLinkedToGallery( int nGalleryId, Plugin plugin );
+    
     /**
      * Load list of ids image by id gallery
      * 
@@ -150,4 +195,181 @@ public interface IImageDAO
      */
     
     List<Image> selectImagesByIds( List<Integer> listIds, Plugin plugin );
+
+    /**
+     * Count the images linked to a gallery
+     * 
+     * @param nGalleryId
+     *            the gallery id
+     * @param plugin
+     *            the Plugin
+     * @return the number of images linked to the gallery
+     */
+    int countImagesLinkedToGallery( int nGalleryId, Plugin plugin );
+
+    /**
+     * Load a page of the images linked to a gallery, starting after a given image (keyset pagination on position and id)
+     * 
+     * @param nGalleryId
+     *            the gallery id
+     * @param nPositionAfter
+     *            the position of the last image of the previous page, Integer.MIN_VALUE for the first page
+     * @param nIdImageAfter
+     *            the id of the last image of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the images of the page
+     */
+    List<Image> selectImagesLinkedToGalleryAfter( int nGalleryId, int nPositionAfter, int nIdImageAfter, int nLimit, Plugin plugin );
+
+    /**
+     * Load a page of the images linked to a gallery
+     * 
+     * @param nGalleryId
+     *            the gallery id
+     * @param nOffset
+     *            the number of images to skip
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the images of the page
+     */
+    List<Image> selectImagesLinkedToGalleryPage( int nGalleryId, int nOffset, int nLimit, Plugin plugin );
+
+    /**
+     * Count the images owned by a gallery
+     * 
+     * @param nGalleryId
+     *            the gallery id
+     * @param plugin
+     *            the Plugin
+     * @return the number of images owned by the gallery
+     */
+    int countImagesByGallery( int nGalleryId, Plugin plugin );
+
+    /**
+     * Load a page of the images owned by a gallery
+     * 
+     * @param nGalleryId
+     *            the gallery id
+     * @param nOffset
+     *            the number of images to skip
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the images of the page
+     */
+    List<Image> selectImagesByGalleryPage( int nGalleryId, int nOffset, int nLimit, Plugin plugin );
+
+    /**
+     * Count the images available for all the galleries
+     * 
+     * @param plugin
+     *            the Plugin
+     * @return the number of images
+     */
+    int countImages( Plugin plugin );
+
+    /**
+     * Load a page of the images available for all the galleries
+     * 
+     * @param nOffset
+     *            the number of images to skip
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the images of the page
+     */
+    List<Image> selectImagesPage( int nOffset, int nLimit, Plugin plugin );
+
+    /**
+     * Load a page of the images linked to a gallery identified by its code, starting after a given image, in a single query joining the
+     * gallery, its links and the images
+     * 
+     * @param strCodeGallery
+     *            the gallery code
+     * @param nPositionAfter
+     *            the position of the last image of the previous page, Integer.MIN_VALUE for the first page
+     * @param nIdImageAfter
+     *            the id of the last image of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the images of the page, in the gallery order
+     */
+    List<Image> selectImagesLinkedToGalleryCodeAfter( String strCodeGallery, int nPositionAfter, int nIdImageAfter, int nLimit, Plugin plugin );
+
+    /**
+     * Load the perceptual hashes of all the images
+     * 
+     * @param plugin
+     *            the Plugin
+     * @return the perceptual hashes by image id
+     */
+    Map<Integer, Long> selectPerceptualHashes( Plugin plugin );
+
+    /**
+     * Load the images without perceptual hash, ordered by id
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the list of the images
+     */
+    List<Image> selectImagesWithoutPerceptualHash( int nIdImageAfter, int nLimit, Plugin plugin );
+
+    /**
+     * Update the placeholders of several images with a single batch. The images without placeholder are ignored.
+     * 
+     * @param listImages
+     *            the images
+     * @param plugin
+     *            the Plugin
+     */
+    void storePlaceholders( List<Image> listImages, Plugin plugin );
+
+    /**
+     * Load the images without placeholder, ordered by id
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the list of the images
+     */
+    List<Image> selectImagesWithoutPlaceholder( int nIdImageAfter, int nLimit, Plugin plugin );
+
+    /**
+     * Update the width, height, size and mime type of several images with a single batch. The images without mime type are ignored.
+     * 
+     * @param listImages
+     *            the images
+     * @param plugin
+     *            the Plugin
+     */
+    void storeMetadata( List<Image> listImages, Plugin plugin );
+
+    /**
+     * Load the images without width, height, size and mime type, ordered by id
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @param plugin
+     *            the Plugin
+     * @return the list of the images
+     */
+    List<Image> selectImagesWithoutMetadata( int nIdImageAfter, int nLimit, Plugin plugin );
 }
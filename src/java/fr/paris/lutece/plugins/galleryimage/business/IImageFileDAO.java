@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+/**
+ * IImageFileDAO Interface
+ */
+
+public interface IImageFileDAO
+{
+
+    /**
+     * Insert a new record in the table.
+     * 
+     * @param imageFile
+     *            instance of the ImageFile object to insert
+     */
+
+    void insert( ImageFile imageFile );
+
+    /**
+     * Add a reference to a file
+     * 
+     * @param nIdFile
+     *            int identifier of the file
+     * @return true if the file is in the table
+     */
+
+    boolean incrementRefCount( int nIdFile );
+
+    /**
+     * Remove a reference to a file
+     * 
+     * @param nIdFile
+     *            int identifier of the file
+     */
+
+    void decrementRefCount( int nIdFile );
+
+    /**
+     * Delete a record from the table if no image references it anymore
+     * 
+     * @param nIdFile
+     *            int identifier of the file
+     * @return true if the record has been deleted
+     */
+
+    boolean deleteIfUnreferenced( int nIdFile );
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Finders
+
+    /**
+     * Load the file whose content has a given hash
+     * 
+     * @param strHash
+     *            the SHA-256 of the content, in hexadecimal
+     * @return the file, or null if no file has this hash
+     */
+
+    ImageFile selectByHash( String strHash );
+
+    /**
+     * Load a file
+     * 
+     * @param nIdFile
+     *            int identifier of the file
+     * @return the file, or null if it is not in the table
+     */
+
+    ImageFile load( int nIdFile );
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+import java.util.List;
+
+/**
+ * IImageRenditionDAO Interface
+ */
+
+public interface IImageRenditionDAO
+{
+
+    /**
+     * Insert a new record in the table.
+     * 
+     * @param imageRendition
+     *            instance of the ImageRendition object to insert
+     */
+
+    void insert( ImageRendition imageRendition );
+
+    /**
+     * Delete the records of an image from the table
+     * 
+     * @param nIdImage
+     *            int identifier of the image
+     */
+
+    void deleteByImage( int nIdImage );
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Finders
+
+    /**
+     * Load the renditions of an image, ordered by width
+     * 
+     * @param nIdImage
+     *            int identifier of the image
+     * @return The list of the renditions of the image
+     */
+
+    List<ImageRendition> selectByImage( int nIdImage );
+
+    /**
+     * Load the renditions of a list of images, ordered by image and width
+     * 
+     * @param listIdImages
+     *            the image identifiers
+     * @return The list of the renditions of the images
+     */
+
+    List<ImageRendition> selectByImages( List<Integer> listIdImages );
+
+    /**
+     * Load the smallest rendition of an image whose width is at least the given width
+     * 
+     * @param nIdImage
+     *            int identifier of the image
+     * @param nMinWidth
+     *            the minimum width
+     * @return The rendition, or null if no rendition is wide enough
+     */
+
+    ImageRendition selectBestFit( int nIdImage, int nMinWidth );
+
+}
@@ -34,8 +34,12 @@
 
 package fr.paris.lutece.plugins.galleryimage.business;
 
+import fr.paris.lutece.plugins.galleryimage.util.ProcessedImage;
 import fr.paris.lutece.portal.service.rbac.RBACResource;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This is the business class for the object Image
  */
@@ -57,6 +61,14 @@ public class Image implements RBACResource
     private int _nIdFile;
     private int _nIdGallery;
     private String _strImageBase64;
+    private List<ImageRendition> _listRenditions = new ArrayList<>( );
+    private int _nPosition;
+    private Long _lPerceptualHash;
+    private String _strPlaceholder;
+    private int _nWidth;
+    private int _nHeight;
+    private int _nSize;
+    private String _strMimeType;
 
     /**
      * Returns the IdImage
@@ -170,6 +182,153 @@ public class Image implements RBACResource
         this._strImageBase64 = strImageBase64;
     }
 
+    /**
+     * @return the renditions of the image, ordered by width
+     */
+    public List<ImageRendition> getListRenditions( )
+    {
+        return _listRenditions;
+    }
+
+    /**
+     * @param listRenditions the renditions of the image to set
+     */
+    public void setListRenditions( List<ImageRendition> listRenditions )
+    {
+        this._listRenditions = listRenditions;
+    }
+
+    /**
+     * @return the position of the image in the gallery it was loaded from
+     */
+    public int getPosition( )
+    {
+        return _nPosition;
+    }
+
+    /**
+     * @param nPosition the position of the image in the gallery it was loaded from
+     */
+    public void setPosition( int nPosition )
+    {
+        this._nPosition = nPosition;
+    }
+
+    /**
+     * @return the perceptual hash of the image, or null if it is not computed
+     */
+    public Long getPerceptualHash( )
+    {
+        return _lPerceptualHash;
+    }
+
+    /**
+     * @param lPerceptualHash the perceptual hash of the image
+     */
+    public void setPerceptualHash( Long lPerceptualHash )
+    {
+        this._lPerceptualHash = lPerceptualHash;
+    }
+
+    /**
+     * @return the tiny image displayed while the image loads, as a data URI, or null if it is not computed
+     */
+    public String getPlaceholder( )
+    {
+        return _strPlaceholder;
+    }
+
+    /**
+     * @param strPlaceholder
+     *            the tiny image displayed while the image loads, as a data URI
+     */
+    public void setPlaceholder( String strPlaceholder )
+    {
+        this._strPlaceholder = strPlaceholder;
+    }
+
+    /**
+     * @return the width of the stored image, 0 if unknown
+     */
+    public int getWidth( )
+    {
+        return _nWidth;
+    }
+
+    /**
+     * @param nWidth
+     *            the width of the stored image
+     */
+    public void setWidth( int nWidth )
+    {
+        this._nWidth = nWidth;
+    }
+
+    /**
+     * @return the height of the stored image, 0 if unknown
+     */
+    public int getHeight( )
+    {
+        return _nHeight;
+    }
+
+    /**
+     * @param nHeight
+     *            the height of the stored image
+     */
+    public void setHeight( int nHeight )
+    {
+        this._nHeight = nHeight;
+    }
+
+    /**
+     * @return the size of the stored image in bytes, 0 if unknown
+     */
+    public int getSize( )
+    {
+        return _nSize;
+    }
+
+    /**
+     * @param nSize
+     *            the size of the stored image in bytes
+     */
+    public void setSize( int nSize )
+    {
+        this._nSize = nSize;
+    }
+
+    /**
+     * @return the mime type of the stored image, or null if unknown
+     */
+    public String getMimeType( )
+    {
+        return _strMimeType;
+    }
+
+    /**
+     * @param strMimeType
+     *            the mime type of the stored image
+     */
+    public void setMimeType( String strMimeType )
+    {
+        this._strMimeType = strMimeType;
+    }
+
+    /**
+     * Set the width, height, size and mime type of the stored image
+     * 
+     * @param processedImage
+     *            the stored image
+     */
+    public void setMetadata( ProcessedImage processedImage )
+    {
+        _nWidth = processedImage.getWidth( );
+        _nHeight = processedImage.getHeight( );
+        _nSize = processedImage.getContent( ).length;
+        _strMimeType = processedImage.getMimeType( );
+    }
+
     @Override
     public String getResourceTypeCode( )
     {
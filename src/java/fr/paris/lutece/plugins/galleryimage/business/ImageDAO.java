@@ -37,7 +37,9 @@ import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.sql.Statement;
 
@@ -47,15 +49,37 @@ import java.sql.Statement;
 public final class ImageDAO implements IImageDAO
 {
     // Constants
-    private static final String SQL_QUERY_SELECT = "SELECT id_image, title, description, id_file, id_gallery FROM galleryimage_image WHERE id_image = ?";
-    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_image ( id_image, title, description, id_file, id_gallery ) VALUES ( ?, ?, ?, ?, ? ) ";
+    private static final String SQL_COLUMNS = "gi.id_image, gi.title, gi.description, gi.id_file, gi.id_gallery, gi.image_width, gi.image_height, gi.image_size, gi.mime_type";
+    private static final int SQL_COLUMNS_COUNT = 9;
+    private static final String SQL_ORDER_BY_POSITION = " ORDER BY ggi.image_position, ggi.id_image";
+    private static final String SQL_FILTER_AFTER_POSITION = " AND ( ggi.image_position > ? OR ( ggi.image_position = ? AND ggi.id_image > ? ) )";
+    private static final String SQL_QUERY_SELECT = "SELECT " + SQL_COLUMNS + ", gi.placeholder FROM galleryimage_image gi WHERE gi.id_image = ?";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_image ( id_image, title, description, id_file, id_gallery, image_width, image_height, image_size, mime_type, placeholder ) VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ? ) ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM galleryimage_image WHERE id_image = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE galleryimage_image SET id_image = ?, title = ?, description = ?, id_file = ?, id_gallery = ? WHERE id_image = ?";
-    private static final String SQL_QUERY_SELECTALL = "SELECT id_image, title, description, id_file, id_gallery FROM galleryimage_image WHERE id_gallery < 1 ";
+    private static final String SQL_QUERY_UPDATE = "UPDATE galleryimage_image SET id_image = ?, title = ?, description = ?, id_file = ?, id_gallery = ?, image_width = ?, image_height = ?, image_size = ?, mime_type = ?, placeholder = ? WHERE id_image = ?";
+    private static final String SQL_QUERY_SELECTALL = "SELECT " + SQL_COLUMNS + " FROM galleryimage_image gi WHERE gi.id_gallery < 1 ";
     private static final String SQL_QUERY_SELECTALL_IDS = "SELECT id_image FROM galleryimage_image WHERE id_gallery < 1 ";
     private static final String SQL_QUERY_SELECTALL_IDS_BY_ID_GALLERY = "SELECT id_image FROM galleryimage_image WHERE id_gallery = ? "; 
-    private static final String SQL_QUERY_SELECT_LINKED_IDS_BY_ID_GALLERY = "SELECT gi.id_image FROM galleryimage_image gi, galleryimage_gallery_image ggi WHERE gi.id_image = ggi.id_image AND ggi.id_gallery = ?";
-    private static final String SQL_QUERY_SELECT_BY_IDS = "SELECT id_image, title, description, id_file, id_gallery FROM galleryimage_image WHERE id_image IN ( ";
+    private static final String SQL_QUERY_SELECT_LINKED_IDS_BY_ID_GALLERY = "SELECT ggi.id_image FROM galleryimage_gallery_image ggi INNER JOIN galleryimage_image gi ON gi.id_image = ggi.id_image WHERE ggi.id_gallery = ? ORDER BY ggi.image_position, ggi.id_image";
+    private static final String SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY = "SELECT " + SQL_COLUMNS + ", ggi.image_position, gi.placeholder FROM galleryimage_gallery_image ggi INNER JOIN galleryimage_image gi ON gi.id_image = ggi.id_image WHERE ggi.id_gallery = ?";
+    private static final String SQL_QUERY_SELECT_BY_IDS = "SELECT " + SQL_COLUMNS + " FROM galleryimage_image gi WHERE gi.id_image IN ( ";
+    private static final String SQL_QUERY_COUNT_LINKED_BY_ID_GALLERY = "SELECT COUNT(*) FROM galleryimage_gallery_image ggi INNER JOIN galleryimage_image gi ON gi.id_image = ggi.id_image WHERE ggi.id_gallery = ?";
+    private static final String SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY_AFTER = SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY + SQL_FILTER_AFTER_POSITION + SQL_ORDER_BY_POSITION + " LIMIT ?";
+    private static final String SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY_PAGE = SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY + SQL_ORDER_BY_POSITION + " LIMIT ? OFFSET ?";
+    private static final String SQL_QUERY_SELECT_LINKED_BY_CODE_GALLERY_AFTER = "SELECT " + SQL_COLUMNS + ", ggi.image_position, gi.placeholder FROM galleryimage_gallery g"
+            + " INNER JOIN galleryimage_gallery_image ggi ON ggi.id_gallery = g.id_gallery INNER JOIN galleryimage_image gi ON gi.id_image = ggi.id_image"
+            + " WHERE g.code_gallery = ?" + SQL_FILTER_AFTER_POSITION + SQL_ORDER_BY_POSITION + " LIMIT ?";
+    private static final String SQL_QUERY_COUNT_BY_ID_GALLERY = "SELECT COUNT(*) FROM galleryimage_image WHERE id_gallery = ? ";
+    private static final String SQL_QUERY_SELECT_BY_ID_GALLERY_PAGE = "SELECT " + SQL_COLUMNS + " FROM galleryimage_image gi WHERE gi.id_gallery = ? ORDER BY gi.id_image LIMIT ? OFFSET ?";
+    private static final String SQL_QUERY_COUNT = "SELECT COUNT(*) FROM galleryimage_image WHERE id_gallery < 1 ";
+    private static final String SQL_QUERY_SELECTALL_PAGE = SQL_QUERY_SELECTALL + "ORDER BY gi.id_image LIMIT ? OFFSET ?";
+    private static final String SQL_QUERY_UPDATE_PERCEPTUAL_HASH = "UPDATE galleryimage_image SET perceptual_hash = ? WHERE id_image = ?";
+    private static final String SQL_QUERY_SELECT_PERCEPTUAL_HASHES = "SELECT id_image, perceptual_hash FROM galleryimage_image WHERE perceptual_hash IS NOT NULL";
+    private static final String SQL_QUERY_SELECT_WITHOUT_PERCEPTUAL_HASH = "SELECT " + SQL_COLUMNS + " FROM galleryimage_image gi WHERE gi.perceptual_hash IS NULL AND gi.id_image > ? ORDER BY gi.id_image LIMIT ?";
+    private static final String SQL_QUERY_UPDATE_PLACEHOLDER = "UPDATE galleryimage_image SET placeholder = ? WHERE id_image = ?";
+    private static final String SQL_QUERY_SELECT_WITHOUT_PLACEHOLDER = "SELECT " + SQL_COLUMNS + " FROM galleryimage_image gi WHERE gi.placeholder IS NULL AND gi.id_image > ? ORDER BY gi.id_image LIMIT ?";
+    private static final String SQL_QUERY_UPDATE_METADATA = "UPDATE galleryimage_image SET image_width = ?, image_height = ?, image_size = ?, mime_type = ? WHERE id_image = ?";
+    private static final String SQL_QUERY_SELECT_WITHOUT_METADATA = "SELECT " + SQL_COLUMNS + " FROM galleryimage_image gi WHERE gi.mime_type IS NULL AND gi.id_image > ? ORDER BY gi.id_image LIMIT ?";
 
     /**
      * {@inheritDoc }
@@ -71,6 +95,8 @@ public final class ImageDAO implements IImageDAO
             daoUtil.setString( ++nIndex, image.getDescription( ) );
             daoUtil.setInt( ++nIndex, image.getIdFile( ) );
             daoUtil.setInt( ++nIndex, image.getIdGallery( ) );
+            nIndex = setMetadata( daoUtil, nIndex, image );
+            daoUtil.setString( ++nIndex, image.getPlaceholder( ) );
             
             daoUtil.executeUpdate( );
             if ( daoUtil.nextGeneratedKey( ) )
@@ -80,6 +106,44 @@ public final class ImageDAO implements IImageDAO
         }
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insertBatch( List<Image> listImages, Plugin plugin )
+    {
+        if ( listImages.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+        {
+            for ( Image image : listImages )
+            {
+                int nIndex = 0;
+                daoUtil.setInt( ++nIndex, image.getIdImage( ) );
+                daoUtil.setString( ++nIndex, image.getTitle( ) );
+                daoUtil.setString( ++nIndex, image.getDescription( ) );
+                daoUtil.setInt( ++nIndex, image.getIdFile( ) );
+                daoUtil.setInt( ++nIndex, image.getIdGallery( ) );
+                nIndex = setMetadata( daoUtil, nIndex, image );
+                daoUtil.setString( ++nIndex, image.getPlaceholder( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+
+            for ( Image image : listImages )
+            {
+                if ( daoUtil.nextGeneratedKey( ) )
+                {
+                    image.setIdImage( daoUtil.getGeneratedKeyInt( 1 ) );
+                }
+            }
+        }
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -95,13 +159,8 @@ public final class ImageDAO implements IImageDAO
 
             if ( daoUtil.next( ) )
             {
-                image = new Image( );
-                int nIndex = 0;
-                image.setIdImage( daoUtil.getInt( ++nIndex ) );
-                image.setTitle( daoUtil.getString( ++nIndex  ) );
-                image.setDescription( daoUtil.getString( ++nIndex  ) );
-                image.setIdFile( daoUtil.getInt( ++nIndex  ) );
-                image.setIdGallery( daoUtil.getInt( ++nIndex  ) );
+                image = dataToObject( daoUtil );
+                image.setPlaceholder( daoUtil.getString( SQL_COLUMNS_COUNT + 1 ) );
             }
 
             return image;
@@ -135,6 +194,8 @@ public final class ImageDAO implements IImageDAO
             daoUtil.setString( ++nIndex, image.getDescription( ) );
             daoUtil.setInt( ++nIndex, image.getIdFile( ) );
             daoUtil.setInt( ++nIndex, image.getIdGallery( ) );
+            nIndex = setMetadata( daoUtil, nIndex, image );
+            daoUtil.setString( ++nIndex, image.getPlaceholder( ) );
             
             daoUtil.setInt( ++nIndex, image.getIdImage( ) );
 
@@ -156,16 +217,7 @@ public final class ImageDAO implements IImageDAO
 
             while ( daoUtil.next( ) )
             {
-                Image image = new Image( );
-                int nIndex = 0;
-                
-                image.setIdImage( daoUtil.getInt( ++nIndex ) );
-                image.setTitle( daoUtil.getString( ++nIndex ) );
-                image.setDescription( daoUtil.getString( ++nIndex ) );
-                image.setIdFile( daoUtil.getInt( ++nIndex ) );
-                image.setIdGallery( daoUtil.getInt( ++nIndex ) );
-                
-                listImages.add( image );
+                listImages.add( dataToObject( daoUtil ) );
             }
 
             return listImages;
@@ -191,6 +243,17 @@ public final class ImageDAO implements IImageDAO
         }
     }
 
+    @Override
+    public List<Image> selectImagesLinkedToGallery( int nGalleryId, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY + SQL_ORDER_BY_POSITION, plugin ) )
+        {
+            daoUtil.setInt( 1, nGalleryId );
+
+            return selectImages( daoUtil, true );
+        }
+    }
+
     @Override
     public List<Image> selectImagesByIds( List<Integer> listIds, Plugin plugin )
     {
@@ -210,15 +273,7 @@ public final class ImageDAO implements IImageDAO
     
                 while ( daoUtil.next( ) )
                 {
-                    Image image = new Image( );
-                    int nIndex = 0;
-                    image.setIdImage( daoUtil.getInt( ++nIndex ) );
-                    image.setTitle( daoUtil.getString( ++nIndex ) );
-                    image.setDescription( daoUtil.getString( ++nIndex ) );
-                    image.setIdFile( daoUtil.getInt( ++nIndex ) );
-                    image.setIdGallery( daoUtil.getInt( ++nIndex ) );
-                    
-                    listImages.add( image );
+                    listImages.add( dataToObject( daoUtil ) );
                 }
             }
 
@@ -263,4 +318,383 @@ public final class ImageDAO implements IImageDAO
         }
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countImagesLinkedToGallery( int nGalleryId, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_LINKED_BY_ID_GALLERY, plugin ) )
+        {
+            daoUtil.setInt( 1, nGalleryId );
+
+            return count( daoUtil );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesLinkedToGalleryAfter( int nGalleryId, int nPositionAfter, int nIdImageAfter, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY_AFTER, plugin ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, nGalleryId );
+            daoUtil.setInt( ++nIndex, nPositionAfter );
+            daoUtil.setInt( ++nIndex, nPositionAfter );
+            daoUtil.setInt( ++nIndex, nIdImageAfter );
+            daoUtil.setInt( ++nIndex, nLimit );
+
+            return selectImages( daoUtil, true );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesLinkedToGalleryPage( int nGalleryId, int nOffset, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_LINKED_BY_ID_GALLERY_PAGE, plugin ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, nGalleryId );
+            daoUtil.setInt( ++nIndex, nLimit );
+            daoUtil.setInt( ++nIndex, nOffset );
+
+            return selectImages( daoUtil, true );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countImagesByGallery( int nGalleryId, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_BY_ID_GALLERY, plugin ) )
+        {
+            daoUtil.setInt( 1, nGalleryId );
+
+            return count( daoUtil );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesByGalleryPage( int nGalleryId, int nOffset, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_ID_GALLERY_PAGE, plugin ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, nGalleryId );
+            daoUtil.setInt( ++nIndex, nLimit );
+            daoUtil.setInt( ++nIndex, nOffset );
+
+            return selectImages( daoUtil, false );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countImages( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT, plugin ) )
+        {
+            return count( daoUtil );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesPage( int nOffset, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECTALL_PAGE, plugin ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, nLimit );
+            daoUtil.setInt( ++nIndex, nOffset );
+
+            return selectImages( daoUtil, false );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesLinkedToGalleryCodeAfter( String strCodeGallery, int nPositionAfter, int nIdImageAfter, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_LINKED_BY_CODE_GALLERY_AFTER, plugin ) )
+        {
+            int nIndex = 0;
+            daoUtil.setString( ++nIndex, strCodeGallery );
+            daoUtil.setInt( ++nIndex, nPositionAfter );
+            daoUtil.setInt( ++nIndex, nPositionAfter );
+            daoUtil.setInt( ++nIndex, nIdImageAfter );
+            daoUtil.setInt( ++nIndex, nLimit );
+
+            return selectImages( daoUtil, true );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void storePerceptualHash( int nIdImage, long lPerceptualHash, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_PERCEPTUAL_HASH, plugin ) )
+        {
+            daoUtil.setLong( 1, lPerceptualHash );
+            daoUtil.setInt( 2, nIdImage );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void storePerceptualHashes( List<Image> listImages, Plugin plugin )
+    {
+        List<Image> listHashedImages = listImages.stream( ).filter( image -> image.getPerceptualHash( ) != null ).collect( Collectors.toList( ) );
+
+        if ( listHashedImages.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_PERCEPTUAL_HASH, plugin ) )
+        {
+            for ( Image image : listHashedImages )
+            {
+                daoUtil.setLong( 1, image.getPerceptualHash( ) );
+                daoUtil.setInt( 2, image.getIdImage( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Map<Integer, Long> selectPerceptualHashes( Plugin plugin )
+    {
+        Map<Integer, Long> mapHashes = new HashMap<>( );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PERCEPTUAL_HASHES, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                mapHashes.put( daoUtil.getInt( 1 ), daoUtil.getLong( 2 ) );
+            }
+        }
+
+        return mapHashes;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesWithoutPerceptualHash( int nIdImageAfter, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_WITHOUT_PERCEPTUAL_HASH, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdImageAfter );
+            daoUtil.setInt( 2, nLimit );
+
+            return selectImages( daoUtil, false );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void storePlaceholders( List<Image> listImages, Plugin plugin )
+    {
+        List<Image> listImagesWithPlaceholder = listImages.stream( ).filter( image -> image.getPlaceholder( ) != null ).collect( Collectors.toList( ) );
+
+        if ( listImagesWithPlaceholder.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_PLACEHOLDER, plugin ) )
+        {
+            for ( Image image : listImagesWithPlaceholder )
+            {
+                daoUtil.setString( 1, image.getPlaceholder( ) );
+                daoUtil.setInt( 2, image.getIdImage( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesWithoutPlaceholder( int nIdImageAfter, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_WITHOUT_PLACEHOLDER, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdImageAfter );
+            daoUtil.setInt( 2, nLimit );
+
+            return selectImages( daoUtil, false );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void storeMetadata( List<Image> listImages, Plugin plugin )
+    {
+        List<Image> listImagesWithMetadata = listImages.stream( ).filter( image -> image.getMimeType( ) != null ).collect( Collectors.toList( ) );
+
+        if ( listImagesWithMetadata.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_METADATA, plugin ) )
+        {
+            for ( Image image : listImagesWithMetadata )
+            {
+                daoUtil.setInt( setMetadata( daoUtil, 0, image ) + 1, image.getIdImage( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Image> selectImagesWithoutMetadata( int nIdImageAfter, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_WITHOUT_METADATA, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdImageAfter );
+            daoUtil.setInt( 2, nLimit );
+
+            return selectImages( daoUtil, false );
+        }
+    }
+
+    /**
+     * Set the width, height, size and mime type of an image as the parameters following a given index
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nIndex
+     *            the index of the parameter preceding the metadata
+     * @param image
+     *            the image
+     * @return the index of the last metadata parameter
+     */
+    private static int setMetadata( DAOUtil daoUtil, int nIndex, Image image )
+    {
+        daoUtil.setInt( ++nIndex, image.getWidth( ) );
+        daoUtil.setInt( ++nIndex, image.getHeight( ) );
+        daoUtil.setInt( ++nIndex, image.getSize( ) );
+        daoUtil.setString( ++nIndex, image.getMimeType( ) );
+
+        return nIndex;
+    }
+
+    /**
+     * Read the columns of {@link #SQL_COLUMNS} from the current row
+     * 
+     * @param daoUtil
+     *            the daoUtil positioned on the row
+     * @return the image
+     */
+    private static Image dataToObject( DAOUtil daoUtil )
+    {
+        Image image = new Image( );
+        int nIndex = 0;
+        image.setIdImage( daoUtil.getInt( ++nIndex ) );
+        image.setTitle( daoUtil.getString( ++nIndex ) );
+        image.setDescription( daoUtil.getString( ++nIndex ) );
+        image.setIdFile( daoUtil.getInt( ++nIndex ) );
+        image.setIdGallery( daoUtil.getInt( ++nIndex ) );
+        image.setWidth( daoUtil.getInt( ++nIndex ) );
+        image.setHeight( daoUtil.getInt( ++nIndex ) );
+        image.setSize( daoUtil.getInt( ++nIndex ) );
+        image.setMimeType( daoUtil.getString( ++nIndex ) );
+
+        return image;
+    }
+
+    /**
+     * Execute a count query
+     * 
+     * @param daoUtil
+     *            the daoUtil with its parameters set
+     * @return the count
+     */
+    private static int count( DAOUtil daoUtil )
+    {
+        daoUtil.executeQuery( );
+
+        if ( daoUtil.next( ) )
+        {
+            return daoUtil.getInt( 1 );
+        }
+
+        return 0;
+    }
+
+    /**
+     * Execute a query returning image rows
+     * 
+     * @param daoUtil
+     *            the daoUtil with its parameters set
+     * @param bWithPosition
+     *            true if the query also returns the position of the images in the gallery and their placeholder
+     * @return the images
+     */
+    private static List<Image> selectImages( DAOUtil daoUtil, boolean bWithPosition )
+    {
+        List<Image> listImages = new ArrayList<>( );
+        daoUtil.executeQuery( );
+
+        while ( daoUtil.next( ) )
+        {
+            Image image = dataToObject( daoUtil );
+
+            if ( bWithPosition )
+            {
+                int nIndex = SQL_COLUMNS_COUNT;
+                image.setPosition( daoUtil.getInt( ++nIndex ) );
+                image.setPlaceholder( daoUtil.getString( ++nIndex ) );
+            }
+
+            listImages.add( image );
+        }
+
+        return listImages;
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+/**
+ * This is the business class for the object ImageFile : a stored image binary, shared by the images whose content has the same hash
+ */
+public class ImageFile
+{
+    // Variables declarations
+    private int _nIdFile;
+    private String _strHash;
+    private int _nRefCount;
+
+    /**
+     * Returns the IdFile
+     * 
+     * @return The IdFile
+     */
+    public int getIdFile( )
+    {
+        return _nIdFile;
+    }
+
+    /**
+     * Sets the IdFile
+     * 
+     * @param nIdFile
+     *            The IdFile
+     */
+    public void setIdFile( int nIdFile )
+    {
+        _nIdFile = nIdFile;
+    }
+
+    /**
+     * Returns the SHA-256 of the content, in hexadecimal
+     * 
+     * @return The Hash
+     */
+    public String getHash( )
+    {
+        return _strHash;
+    }
+
+    /**
+     * Sets the SHA-256 of the content, in hexadecimal
+     * 
+     * @param strHash
+     *            The Hash
+     */
+    public void setHash( String strHash )
+    {
+        _strHash = strHash;
+    }
+
+    /**
+     * Returns the number of images using the file
+     * 
+     * @return The RefCount
+     */
+    public int getRefCount( )
+    {
+        return _nRefCount;
+    }
+
+    /**
+     * Sets the number of images using the file
+     * 
+     * @param nRefCount
+     *            The RefCount
+     */
+    public void setRefCount( int nRefCount )
+    {
+        _nRefCount = nRefCount;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+import fr.paris.lutece.plugins.galleryimage.service.GalleryImagePlugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for ImageFile objects
+ */
+public final class ImageFileDAO implements IImageFileDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_image_file ( id_file, hash_value, ref_count ) VALUES ( ?, ?, ? ) ";
+    private static final String SQL_QUERY_INCREMENT_REF_COUNT = "UPDATE galleryimage_image_file SET ref_count = ref_count + 1 WHERE id_file = ? ";
+    private static final String SQL_QUERY_DECREMENT_REF_COUNT = "UPDATE galleryimage_image_file SET ref_count = ref_count - 1 WHERE id_file = ? AND ref_count > 0 ";
+    private static final String SQL_QUERY_DELETE_UNREFERENCED = "DELETE FROM galleryimage_image_file WHERE id_file = ? AND ref_count <= 0 ";
+    private static final String SQL_QUERY_SELECT_BY_HASH = "SELECT id_file, hash_value, ref_count FROM galleryimage_image_file WHERE hash_value = ? ";
+    private static final String SQL_QUERY_SELECT = "SELECT id_file, hash_value, ref_count FROM galleryimage_image_file WHERE id_file = ? ";
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insert( ImageFile imageFile )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, imageFile.getIdFile( ) );
+            daoUtil.setString( ++nIndex, imageFile.getHash( ) );
+            daoUtil.setInt( ++nIndex, imageFile.getRefCount( ) );
+
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean incrementRefCount( int nIdFile )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_REF_COUNT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void decrementRefCount( int nIdFile )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DECREMENT_REF_COUNT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean deleteIfUnreferenced( int nIdFile )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_UNREFERENCED, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public ImageFile selectByHash( String strHash )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_HASH, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setString( 1, strHash );
+
+            return select( daoUtil );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public ImageFile load( int nIdFile )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+
+            return select( daoUtil );
+        }
+    }
+
+    /**
+     * Execute a query selecting at most one file
+     * 
+     * @param daoUtil
+     *            the prepared query
+     * @return the file, or null
+     */
+    private static ImageFile select( DAOUtil daoUtil )
+    {
+        daoUtil.executeQuery( );
+
+        if ( !daoUtil.next( ) )
+        {
+            return null;
+        }
+
+        int nIndex = 0;
+        ImageFile imageFile = new ImageFile( );
+        imageFile.setIdFile( daoUtil.getInt( ++nIndex ) );
+        imageFile.setHash( daoUtil.getString( ++nIndex ) );
+        imageFile.setRefCount( daoUtil.getInt( ++nIndex ) );
+
+        return imageFile;
+    }
+}
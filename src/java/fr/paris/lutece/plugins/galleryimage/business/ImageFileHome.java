@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods (create, find, ...) for ImageFile objects
+ */
+
+public final class ImageFileHome
+{
+
+    // Static variable pointed at the DAO instance
+    private static IImageFileDAO _dao = (IImageFileDAO) SpringContextService.getBean( "galleryimage.imageFileDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+
+    private ImageFileHome( )
+    {
+    }
+
+    /**
+     * Create an instance of the imageFile class
+     * 
+     * @param imageFile
+     *            The instance of the ImageFile which contains the informations to store
+     * @return The instance of imageFile which has been created
+     */
+
+    public static ImageFile create( ImageFile imageFile )
+    {
+        _dao.insert( imageFile );
+
+        return imageFile;
+    }
+
+    /**
+     * Add a reference to a file
+     * 
+     * @param nIdFile
+     *            The file Id
+     * @return true if the file is in the table
+     */
+
+    public static boolean incrementRefCount( int nIdFile )
+    {
+        return _dao.incrementRefCount( nIdFile );
+    }
+
+    /**
+     * Remove a reference to a file
+     * 
+     * @param nIdFile
+     *            The file Id
+     */
+
+    public static void decrementRefCount( int nIdFile )
+    {
+        _dao.decrementRefCount( nIdFile );
+    }
+
+    /**
+     * Remove a file from the table if no image references it anymore
+     * 
+     * @param nIdFile
+     *            The file Id
+     * @return true if the file has been removed from the table
+     */
+
+    public static boolean removeIfUnreferenced( int nIdFile )
+    {
+        return _dao.deleteIfUnreferenced( nIdFile );
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Finders
+
+    /**
+     * Find the file whose content has a given hash
+     * 
+     * @param strHash
+     *            the SHA-256 of the content, in hexadecimal
+     * @return the file, or null if no file has this hash
+     */
+
+    public static ImageFile findByHash( String strHash )
+    {
+        return _dao.selectByHash( strHash );
+    }
+
+    /**
+     * Find a file
+     * 
+     * @param nIdFile
+     *            The file Id
+     * @return the file, or null if it is not in the table
+     */
+
+    public static ImageFile findByPrimaryKey( int nIdFile )
+    {
+        return _dao.load( nIdFile );
+    }
+}
@@ -34,6 +34,8 @@
 package fr.paris.lutece.plugins.galleryimage.business;
 
 import fr.paris.lutece.plugins.galleryimage.service.GalleryImagePlugin;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryStateService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageRenditionService;
 import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
 import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
 import fr.paris.lutece.portal.service.image.ImageResource;
@@ -41,6 +43,7 @@ import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 
@@ -76,6 +79,20 @@ public final class ImageHome
         return image;
     }
 
+    /**
+     * Create several images with a single batch
+     * 
+     * @param listImages
+     *            the images to create, their primary keys are set
+     * @return the created images
+     */
+    public static List<Image> createBatch( List<Image> listImages )
+    {
+        _dao.insertBatch( listImages, GalleryImagePlugin.getPlugin( ) );
+
+        return listImages;
+    }
+
     /**
      * Update of the image which is specified in parameter
      * 
@@ -88,6 +105,7 @@ public final class ImageHome
     public static Image update( Image image )
     {
         _dao.store( image, GalleryImagePlugin.getPlugin( ) );
+        GalleryStateService.getInstance( ).invalidateImage( image.getIdImage( ) );
 
         return image;
     }
@@ -102,7 +120,34 @@ public final class ImageHome
      */
     public static void remove( int nImageId )
     {
+        // The links are looked up before the image is removed
+        List<Integer> listIdGalleries = GalleryImageHome.findGalleryIdsByImageId( nImageId );
         _dao.delete( nImageId, GalleryImagePlugin.getPlugin( ) );
+        GalleryStateService.getInstance( ).invalidate( listIdGalleries );
+    }
+
+    /**
+     * Store the perceptual hash of an image, and index it
+     * 
+     * @param nIdImage
+     *            The image Id
+     * @param lPerceptualHash
+     *            the perceptual hash
+     */
+    public static void updatePerceptualHash( int nIdImage, long lPerceptualHash )
+    {
+        _dao.storePerceptualHash( nIdImage, lPerceptualHash, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Store the perceptual hashes of several images with a single batch. The images without hash are ignored.
+     * 
+     * @param listImages
+     *            the images
+     */
+    public static void updatePerceptualHashes( List<Image> listImages )
+    {
+        _dao.storePerceptualHashes( listImages, GalleryImagePlugin.getPlugin( ) );
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -213,6 +258,183 @@ public final class ImageHome
         return _dao.selectIdsLinkedToGallery( nIdGallery, GalleryImagePlugin.getPlugin( ) );
     }
       
+    /**
+     * Load the images linked with gallery, without their binary
+     * 
+     * @param nIdGallery
+     *            the nIdGallery
+     * @return the list of the images linked with the gallery
+     */
+    public static List<Image> getImagesLinkedToGallery( int nIdGallery )
+    {
+        return _dao.selectImagesLinkedToGallery( nIdGallery, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load images by ids, without their binary
+     * 
+     * @param listIds
+     *            the list of image ids
+     * @return the list which contains the data of the image objects
+     */
+    public static List<Image> getImagesByIds( List<Integer> listIds )
+    {
+        return _dao.selectImagesByIds( listIds, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load images by ids, with the binary of the rendition that covers the given width
+     * 
+     * @param listIds
+     *            the list of image ids
+     * @param nWidth
+     *            the displayed width, the original binaries are loaded if not positive
+     * @return the list which contains the data of the image objects
+     */
+    public static List<Image> getImagesByIdsWithBinary( List<Integer> listIds, int nWidth )
+    {
+        List<Image> listImages = _dao.selectImagesByIds( listIds, GalleryImagePlugin.getPlugin( ) );
+        loadBinaries( listImages, nWidth );
+
+        return listImages;
+    }
+
+    /**
+     * Load the binaries of images, using the rendition that covers the given width
+     * 
+     * @param listImages
+     *            the images
+     * @param nWidth
+     *            the displayed width, the original binaries are loaded if not positive
+     */
+    public static void loadBinaries( List<Image> listImages, int nWidth )
+    {
+        FileImagePublicService.init( );
+
+        for ( Image image : listImages )
+        {
+            int nIdFile = ImageRenditionService.getInstance( ).getIdFile( image, nWidth );
+            ImageResource imageResource = FileImagePublicService.getInstance( ).getImageResource( nIdFile );
+            image.setImageBase64( ImageUtils.imageBase64( imageResource ) );
+        }
+    }
+
+    /**
+     * Count the images linked to a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @return the number of images linked to the gallery
+     */
+    public static int countImagesLinkedToGallery( int nIdGallery )
+    {
+        return _dao.countImagesLinkedToGallery( nIdGallery, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load a page of the images linked to a gallery, starting after a given image
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nPositionAfter
+     *            the position of the last image of the previous page, Integer.MIN_VALUE for the first page
+     * @param nIdImageAfter
+     *            the id of the last image of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images of the page, without their binary
+     */
+    public static List<Image> getImagesLinkedToGalleryAfter( int nIdGallery, int nPositionAfter, int nIdImageAfter, int nLimit )
+    {
+        return _dao.selectImagesLinkedToGalleryAfter( nIdGallery, nPositionAfter, nIdImageAfter, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load a page of the images linked to a gallery identified by its code, starting after a given image, with a single query
+     * 
+     * @param strCodeGallery
+     *            the gallery code
+     * @param nPositionAfter
+     *            the position of the last image of the previous page, Integer.MIN_VALUE for the first page
+     * @param nIdImageAfter
+     *            the id of the last image of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images of the page, without their binary
+     */
+    public static List<Image> getImagesLinkedToGalleryCodeAfter( String strCodeGallery, int nPositionAfter, int nIdImageAfter, int nLimit )
+    {
+        return _dao.selectImagesLinkedToGalleryCodeAfter( strCodeGallery, nPositionAfter, nIdImageAfter, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load a page of the images linked to a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nOffset
+     *            the number of images to skip
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images of the page, without their binary
+     */
+    public static List<Image> getImagesLinkedToGalleryPage( int nIdGallery, int nOffset, int nLimit )
+    {
+        return _dao.selectImagesLinkedToGalleryPage( nIdGallery, nOffset, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Count the images owned by a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @return the number of images owned by the gallery
+     */
+    public static int countImagesByGallery( int nIdGallery )
+    {
+        return _dao.countImagesByGallery( nIdGallery, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load a page of the images owned by a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nOffset
+     *            the number of images to skip
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images of the page, without their binary
+     */
+    public static List<Image> getImagesByGalleryPage( int nIdGallery, int nOffset, int nLimit )
+    {
+        return _dao.selectImagesByGalleryPage( nIdGallery, nOffset, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Count the images available for all the galleries
+     * 
+     * @return the number of images
+     */
+    public static int countImages( )
+    {
+        return _dao.countImages( GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load a page of the images available for all the galleries
+     * 
+     * @param nOffset
+     *            the number of images to skip
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images of the page, without their binary
+     */
+    public static List<Image> getImagesPage( int nOffset, int nLimit )
+    {
+        return _dao.selectImagesPage( nOffset, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
     /**
      * Load images by ids
      * 
@@ -233,4 +455,86 @@ public final class ImageHome
 
         return listImages;
     }
+
+    /**
+     * Load the perceptual hashes of all the images
+     * 
+     * @return the perceptual hashes by image id
+     */
+    public static Map<Integer, Long> getPerceptualHashes( )
+    {
+        return _dao.selectPerceptualHashes( GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load the images whose perceptual hash is not computed yet
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images ordered by id, without their binary
+     */
+    public static List<Image> getImagesWithoutPerceptualHash( int nIdImageAfter, int nLimit )
+    {
+        return _dao.selectImagesWithoutPerceptualHash( nIdImageAfter, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Store the placeholders of several images with a single batch. The images without placeholder are ignored.
+     * 
+     * @param listImages
+     *            the images
+     */
+    public static void updatePlaceholders( List<Image> listImages )
+    {
+        if ( listImages.stream( ).anyMatch( image -> image.getPlaceholder( ) != null ) )
+        {
+            _dao.storePlaceholders( listImages, GalleryImagePlugin.getPlugin( ) );
+            GalleryStateService.getInstance( ).invalidateImages( listImages );
+        }
+    }
+
+    /**
+     * Load the images whose placeholder is not computed yet
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images ordered by id, without their binary
+     */
+    public static List<Image> getImagesWithoutPlaceholder( int nIdImageAfter, int nLimit )
+    {
+        return _dao.selectImagesWithoutPlaceholder( nIdImageAfter, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Store the width, height, size and mime type of several images with a single batch. The images without mime type are ignored.
+     * 
+     * @param listImages
+     *            the images
+     */
+    public static void updateMetadata( List<Image> listImages )
+    {
+        if ( listImages.stream( ).anyMatch( image -> image.getMimeType( ) != null ) )
+        {
+            _dao.storeMetadata( listImages, GalleryImagePlugin.getPlugin( ) );
+            GalleryStateService.getInstance( ).invalidateImages( listImages );
+        }
+    }
+
+    /**
+     * Load the images whose width, height, size and mime type are not known yet
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images ordered by id, without their binary
+     */
+    public static List<Image> getImagesWithoutMetadata( int nIdImageAfter, int nLimit )
+    {
+        return _dao.selectImagesWithoutMetadata( nIdImageAfter, nLimit, GalleryImagePlugin.getPlugin( ) );
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+import fr.paris.lutece.plugins.galleryimage.service.GalleryImagePlugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class provides Data Access methods for ImageRendition objects
+ */
+public final class ImageRenditionDAO implements IImageRenditionDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO galleryimage_image_rendition ( id_image, width, height, id_file ) VALUES ( ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_DELETE_BY_IMAGE = "DELETE FROM galleryimage_image_rendition WHERE id_image = ? ";
+    private static final String SQL_QUERY_SELECT_BY_IMAGE = "SELECT id_image, width, height, id_file FROM galleryimage_image_rendition WHERE id_image = ? ORDER BY width";
+    private static final String SQL_QUERY_SELECT_BY_IMAGES = "SELECT id_image, width, height, id_file FROM galleryimage_image_rendition WHERE id_image IN ( ";
+    private static final String SQL_QUERY_SELECT_BY_IMAGES_END = " ) ORDER BY id_image, width";
+    private static final String SQL_QUERY_SELECT_BEST_FIT = "SELECT id_image, width, height, id_file FROM galleryimage_image_rendition WHERE id_image = ? AND width >= ? ORDER BY width";
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insert( ImageRendition imageRendition )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            int nIndex = 0;
+            daoUtil.setInt( ++nIndex, imageRendition.getIdImage( ) );
+            daoUtil.setInt( ++nIndex, imageRendition.getWidth( ) );
+            daoUtil.setInt( ++nIndex, imageRendition.getHeight( ) );
+            daoUtil.setInt( ++nIndex, imageRendition.getIdFile( ) );
+
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void deleteByImage( int nIdImage )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_BY_IMAGE, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdImage );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<ImageRendition> selectByImage( int nIdImage )
+    {
+        List<ImageRendition> listRenditions = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_IMAGE, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdImage );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listRenditions.add( dataToObject( daoUtil ) );
+            }
+
+            return listRenditions;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<ImageRendition> selectByImages( List<Integer> listIdImages )
+    {
+        List<ImageRendition> listRenditions = new ArrayList<>( );
+
+        if ( listIdImages.isEmpty( ) )
+        {
+            return listRenditions;
+        }
+
+        String strQuery = SQL_QUERY_SELECT_BY_IMAGES + listIdImages.stream( ).map( i -> "?" ).collect( Collectors.joining( "," ) )
+                + SQL_QUERY_SELECT_BY_IMAGES_END;
+
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            for ( int i = 0; i < listIdImages.size( ); i++ )
+            {
+                daoUtil.setInt( i + 1, listIdImages.get( i ) );
+            }
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listRenditions.add( dataToObject( daoUtil ) );
+            }
+
+            return listRenditions;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public ImageRendition selectBestFit( int nIdImage, int nMinWidth )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BEST_FIT, GalleryImagePlugin.getPlugin( ) ) )
+        {
+            daoUtil.setInt( 1, nIdImage );
+            daoUtil.setInt( 2, nMinWidth );
+            daoUtil.executeQuery( );
+
+            ImageRendition imageRendition = null;
+
+            if ( daoUtil.next( ) )
+            {
+                imageRendition = dataToObject( daoUtil );
+            }
+
+            return imageRendition;
+        }
+    }
+
+    /**
+     * Build an ImageRendition from the current row
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @return the ImageRendition
+     */
+    private ImageRendition dataToObject( DAOUtil daoUtil )
+    {
+        int nIndex = 0;
+        ImageRendition imageRendition = new ImageRendition( );
+        imageRendition.setIdImage( daoUtil.getInt( ++nIndex ) );
+        imageRendition.setWidth( daoUtil.getInt( ++nIndex ) );
+        imageRendition.setHeight( daoUtil.getInt( ++nIndex ) );
+        imageRendition.setIdFile( daoUtil.getInt( ++nIndex ) );
+
+        return imageRendition;
+    }
+}
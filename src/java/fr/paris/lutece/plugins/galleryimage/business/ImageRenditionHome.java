@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.business;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import java.util.List;
+
+/**
+ * This class provides instances management methods (create, find, ...) for ImageRendition objects
+ */
+
+public final class ImageRenditionHome
+{
+
+    // Static variable pointed at the DAO instance
+    private static IImageRenditionDAO _dao = (IImageRenditionDAO) SpringContextService.getBean( "galleryimage.imageRenditionDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+
+    private ImageRenditionHome( )
+    {
+    }
+
+    /**
+     * Create an instance of the imageRendition class
+     * 
+     * @param imageRendition
+     *            The instance of the ImageRendition which contains the informations to store
+     * @return The instance of imageRendition which has been created
+     */
+
+    public static ImageRendition create( ImageRendition imageRendition )
+    {
+        _dao.insert( imageRendition );
+
+        return imageRendition;
+    }
+
+    /**
+     * Remove the renditions of an image
+     * 
+     * @param nIdImage
+     *            The image Id
+     */
+
+    public static void removeByImageId( int nIdImage )
+    {
+        _dao.deleteByImage( nIdImage );
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Finders
+
+    /**
+     * Load the renditions of an image, ordered by width
+     * 
+     * @param nIdImage
+     *            The image Id
+     * @return the list of the renditions of the image
+     */
+
+    public static List<ImageRendition> findByImageId( int nIdImage )
+    {
+        return _dao.selectByImage( nIdImage );
+    }
+
+    /**
+     * Load the renditions of a list of images, ordered by image and width
+     * 
+     * @param listIdImages
+     *            The image Ids
+     * @return the list of the renditions of the images
+     */
+
+    public static List<ImageRendition> findByImageIds( List<Integer> listIdImages )
+    {
+        return _dao.selectByImages( listIdImages );
+    }
+
+    /**
+     * Find the smallest rendition of an image that covers the given width
+     * 
+     * @param nIdImage
+     *            The image Id
+     * @param nWidth
+     *            The width to cover
+     * @return the rendition, or null if no rendition is wide enough
+     */
+
+    public static ImageRendition findBestFit( int nIdImage, int nWidth )
+    {
+        return _dao.selectBestFit( nIdImage, nWidth );
+    }
+}
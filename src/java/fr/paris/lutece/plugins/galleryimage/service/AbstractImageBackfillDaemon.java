@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
+import fr.paris.lutece.portal.service.daemon.Daemon;
+import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
+import fr.paris.lutece.portal.service.image.ImageResource;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * AbstractImageBackfillDaemon : computes, from their binary, the data of the images created before this data was computed at upload. The images are
+ * processed by batches, each binary being decoded at a reduced resolution under the decode memory budget, unless the data only needs its header.
+ *
+ */
+public abstract class AbstractImageBackfillDaemon extends Daemon
+{
+    // Width the images are decoded to, wide enough for the data computed from them
+    private static final int DECODE_WIDTH = 256;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final String _strBatchSizeProperty;
+
+    /**
+     * Constructor
+     * 
+     * @param strBatchSizeProperty
+     *            the property of the number of images processed per batch
+     */
+    protected AbstractImageBackfillDaemon( String strBatchSizeProperty )
+    {
+        _strBatchSizeProperty = strBatchSizeProperty;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run( )
+    {
+        int nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( _strBatchSizeProperty, DEFAULT_BATCH_SIZE ) );
+        int nIdImageAfter = 0;
+        int nProcessed = 0;
+        int nFailed = 0;
+        List<Image> listImages;
+        FileImagePublicService.init( );
+
+        do
+        {
+            listImages = getImages( nIdImageAfter, nBatchSize );
+
+            for ( Image image : listImages )
+            {
+                // The images that can't be processed are skipped until the next run
+                nIdImageAfter = image.getIdImage( );
+
+                if ( process( image ) )
+                {
+                    nProcessed++;
+                }
+                else
+                {
+                    nFailed++;
+                }
+            }
+
+            store( listImages );
+        }
+        while ( listImages.size( ) == nBatchSize );
+
+        // The daemons decode under the shared budget : its counters show whether the uploads and the front office had to wait for memory
+        setLastRunLogs( "Images processed : " + nProcessed + ", failed : " + nFailed + complete( ) + "\nDecode memory : "
+                + ImageDecodeLimiter.getInstance( ).getStatus( ) + "\nFront office decode memory : " + ImageDecodeLimiter.getPublicInstance( ).getStatus( ) );
+    }
+
+    /**
+     * Decode the binary of an image at a reduced resolution, and compute its data
+     * 
+     * @param image
+     *            the image
+     * @return true if the data of the image has been computed
+     */
+    private boolean process( Image image )
+    {
+        ImageResource imageResource = FileImagePublicService.getInstance( ).getImageResource( image.getIdFile( ) );
+
+        if ( imageResource == null || imageResource.getImage( ) == null )
+        {
+            return false;
+        }
+
+        try
+        {
+            Dimension dimension = ImageUtils.readDimension( imageResource.getImage( ) );
+
+            if ( dimension == null )
+            {
+                return false;
+            }
+
+            if ( !isDecodingNeeded( ) )
+            {
+                compute( image, imageResource, dimension, null );
+
+                return true;
+            }
+
+            int nSubsampling = Math.max( 1, dimension.width / DECODE_WIDTH );
+            int nDecodedWidth = dimension.width / nSubsampling + 1;
+            int nDecodedHeight = dimension.height / nSubsampling + 1;
+
+            try ( ImageDecodeLimiter.Permit permit = ImageDecodeLimiter.getInstance( ).acquire( ImageDecodeLimiter.estimateBytes( nDecodedWidth, nDecodedHeight ),
+                    nDecodedWidth, nDecodedHeight ) )
+            {
+                BufferedImage decodedImage = ImageUtils.readImage( imageResource.getImage( ), nSubsampling );
+
+                if ( decodedImage == null )
+                {
+                    return false;
+                }
+
+                compute( image, imageResource, dimension, decodedImage );
+                decodedImage.flush( );
+
+                return true;
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "{}:process( ): image {} : {} ", getClass( ).getSimpleName( ), image.getIdImage( ), e.getMessage( ) );
+        }
+
+        return false;
+    }
+
+    /**
+     * Load a batch of the images to process
+     * 
+     * @param nIdImageAfter
+     *            the id after which the images are loaded
+     * @param nLimit
+     *            the maximum number of images
+     * @return the images ordered by id
+     */
+    protected abstract List<Image> getImages( int nIdImageAfter, int nLimit );
+
+    /**
+     * Compute the data of an image and set it on the image
+     * 
+     * @param image
+     *            the image
+     * @param imageResource
+     *            the binary of the image
+     * @param dimension
+     *            the dimensions of the binary
+     * @param decodedImage
+     *            the decoded binary, at a reduced resolution, or null if no decoding is needed
+     * @throws IOException
+     *             if the data can't be computed
+     */
+    protected abstract void compute( Image image, ImageResource imageResource, Dimension dimension, BufferedImage decodedImage ) throws IOException;
+
+    /**
+     * @return true if the data is computed from the decoded binary, false if the header of the binary is enough
+     */
+    protected boolean isDecodingNeeded( )
+    {
+        return true;
+    }
+
+    /**
+     * Store the data computed for a batch of images
+     * 
+     * @param listImages
+     *            the images of the batch, the data of the ones that failed is not set
+     */
+    protected abstract void store( List<Image> listImages );
+
+    /**
+     * Called once all the images are processed
+     * 
+     * @return the complement of the logs of the run
+     */
+    protected String complete( )
+    {
+        return "";
+    }
+}
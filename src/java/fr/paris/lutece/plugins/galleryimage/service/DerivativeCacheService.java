@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * DerivativeCacheService : local disk cache of the resized images, evicted by total size in least recently used order
+ *
+ */
+public final class DerivativeCacheService
+{
+    // PROPERTY
+    private static final String PROPERTY_CACHE_PATH = "galleryimage.transform.cache.path";
+    private static final String PROPERTY_CACHE_MAX_BYTES = "galleryimage.transform.cache.maxBytes";
+
+    // CONSTANTS
+    private static final String DEFAULT_CACHE_DIRECTORY = "galleryimage-derivatives";
+    private static final String PROPERTY_TMP_DIR = "java.io.tmpdir";
+    private static final long DEFAULT_CACHE_MAX_BYTES = 256L * 1024L * 1024L;
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static DerivativeCacheService _singleton;
+
+    private final Path _pathCache;
+    private final long _lMaxBytes;
+    private final Map<String, Long> _mapEntries = new LinkedHashMap<>( 16, 0.75f, true );
+    private long _lTotalBytes;
+
+    /**
+     * Private constructor
+     * 
+     * @param pathCache
+     *            the cache directory
+     * @param lMaxBytes
+     *            the maximum total size of the cached files
+     */
+    private DerivativeCacheService( Path pathCache, long lMaxBytes )
+    {
+        _pathCache = pathCache;
+        _lMaxBytes = lMaxBytes;
+    }
+
+    /**
+     * Returns the unique instance, the cache directory is loaded at the first call
+     * 
+     * @return The unique instance
+     */
+    public static synchronized DerivativeCacheService getInstance( )
+    {
+        if ( _singleton == null )
+        {
+            String strDefaultPath = System.getProperty( PROPERTY_TMP_DIR ) + File.separator + DEFAULT_CACHE_DIRECTORY;
+            Path pathCache = Paths.get( AppPropertiesService.getProperty( PROPERTY_CACHE_PATH, strDefaultPath ) );
+            long lMaxBytes = AppPropertiesService.getPropertyLong( PROPERTY_CACHE_MAX_BYTES, DEFAULT_CACHE_MAX_BYTES );
+
+            _singleton = new DerivativeCacheService( pathCache, lMaxBytes );
+            _singleton.load( );
+        }
+
+        return _singleton;
+    }
+
+    /**
+     * Get a cached file
+     * 
+     * @param strKey
+     *            the key of the derivative, used as file name
+     * @return the path of the cached file, or null if it is not in the cache
+     */
+    public synchronized Path get( String strKey )
+    {
+        if ( _mapEntries.get( strKey ) == null )
+        {
+            return null;
+        }
+
+        Path path = _pathCache.resolve( strKey );
+
+        if ( !Files.exists( path ) )
+        {
+            _lTotalBytes -= _mapEntries.remove( strKey );
+            return null;
+        }
+
+        return path;
+    }
+
+    /**
+     * Put a file in the cache, evicting the least recently used files if the maximum size is exceeded
+     * 
+     * @param strKey
+     *            the key of the derivative, used as file name
+     * @param fileBytes
+     *            the content
+     * @return the path of the cached file
+     * @throws IOException
+     *             if the file can not be written
+     */
+    public Path put( String strKey, byte [ ] fileBytes ) throws IOException
+    {
+        Path path = _pathCache.resolve( strKey );
+
+        // Written outside the lock, then moved atomically so that readers never see a partial file
+        Path pathTmp = Files.createTempFile( _pathCache, strKey, TMP_SUFFIX );
+        Files.write( pathTmp, fileBytes );
+        Files.move( pathTmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+        synchronized( this )
+        {
+            Long lPreviousSize = _mapEntries.put( strKey, (long) fileBytes.length );
+            _lTotalBytes += fileBytes.length - ( lPreviousSize != null ? lPreviousSize : 0L );
+            evict( );
+        }
+
+        return path;
+    }
+
+    /**
+     * @return the total size of the cached files
+     */
+    public synchronized long getTotalBytes( )
+    {
+        return _lTotalBytes;
+    }
+
+    /**
+     * Evict the least recently used files until the total size fits the maximum size
+     */
+    private void evict( )
+    {
+        Iterator<Map.Entry<String, Long>> iterator = _mapEntries.entrySet( ).iterator( );
+
+        while ( _lTotalBytes > _lMaxBytes && iterator.hasNext( ) )
+        {
+            Map.Entry<String, Long> entry = iterator.next( );
+
+            try
+            {
+                Files.deleteIfExists( _pathCache.resolve( entry.getKey( ) ) );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( "DerivativeCacheService:evict( ): {} ", e.getMessage( ), e );
+            }
+
+            _lTotalBytes -= entry.getValue( );
+            iterator.remove( );
+        }
+    }
+
+    /**
+     * Create the cache directory or index the files it already contains, oldest first
+     */
+    private synchronized void load( )
+    {
+        try
+        {
+            Files.createDirectories( _pathCache );
+
+            try ( Stream<Path> stream = Files.list( _pathCache ) )
+            {
+                stream.filter( Files::isRegularFile ).sorted( Comparator.comparingLong( path -> path.toFile( ).lastModified( ) ) ).forEach( path -> {
+                    String strFileName = path.getFileName( ).toString( );
+
+                    if ( strFileName.endsWith( TMP_SUFFIX ) )
+                    {
+                        path.toFile( ).delete( );
+                    }
+                    else
+                    {
+                        long lSize = path.toFile( ).length( );
+                        _mapEntries.put( strFileName, lSize );
+                        _lTotalBytes += lSize;
+                    }
+                } );
+            }
+
+            evict( );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "DerivativeCacheService:load( ): {} ", e.getMessage( ), e );
+        }
+    }
+}
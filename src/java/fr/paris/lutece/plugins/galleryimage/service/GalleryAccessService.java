@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import fr.paris.lutece.api.user.User;
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.GalleryHome;
+import fr.paris.lutece.plugins.galleryimage.business.GalleryImageHome;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.portal.business.rbac.RBAC;
+import fr.paris.lutece.portal.service.admin.AdminUserService;
+import fr.paris.lutece.portal.service.rbac.RBACService;
+import fr.paris.lutece.portal.service.security.SecurityService;
+
+/**
+ * 
+ * GalleryAccessService : who may view the galleries and their images on the front office. The galleries in authenticated mode need the view
+ * permission, and the images not linked to any gallery are only visible from the back office
+ *
+ */
+public final class GalleryAccessService
+{
+    private static final GalleryAccessService _singleton = new GalleryAccessService( );
+
+    /**
+     * Private constructor
+     */
+    private GalleryAccessService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static GalleryAccessService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Check whether the user of a request may view a gallery
+     * 
+     * @param request
+     *            the request
+     * @param gallery
+     *            the gallery
+     * @return true if the gallery is public or the user has the view permission
+     */
+    public boolean canView( HttpServletRequest request, Gallery gallery )
+    {
+        return !gallery.isAuthenticatedMode( ) || isViewAuthorized( request );
+    }
+
+    /**
+     * Get the galleries an image belongs to : the gallery it was uploaded to and the galleries it is linked to
+     * 
+     * @param image
+     *            the image
+     * @return the galleries
+     */
+    public List<Gallery> getGalleries( Image image )
+    {
+        Set<Integer> setIdGalleries = new LinkedHashSet<>( GalleryImageHome.findGalleryIdsByImageId( image.getIdImage( ) ) );
+
+        if ( image.getIdGallery( ) > 0 )
+        {
+            setIdGalleries.add( image.getIdGallery( ) );
+        }
+
+        List<Gallery> listGalleries = new ArrayList<>( );
+
+        for ( Integer nIdGallery : setIdGalleries )
+        {
+            Gallery gallery = GalleryHome.find( nIdGallery );
+
+            if ( gallery != null )
+            {
+                listGalleries.add( gallery );
+            }
+        }
+
+        return listGalleries;
+    }
+
+    /**
+     * Check whether the user of a request may view an image
+     * 
+     * @param request
+     *            the request
+     * @param listGalleries
+     *            the galleries the image belongs to
+     * @return true if the user may view the image
+     */
+    public boolean canView( HttpServletRequest request, List<Gallery> listGalleries )
+    {
+        if ( listGalleries.isEmpty( ) )
+        {
+            return AdminUserService.getAdminUser( request ) != null;
+        }
+
+        return !isPrivate( listGalleries ) || isViewAuthorized( request );
+    }
+
+    /**
+     * Check whether an image must not be stored by the shared caches
+     * 
+     * @param listGalleries
+     *            the galleries the image belongs to
+     * @return true if the image belongs to no gallery or to a gallery in authenticated mode
+     */
+    public boolean isPrivate( List<Gallery> listGalleries )
+    {
+        return listGalleries.isEmpty( ) || listGalleries.stream( ).anyMatch( Gallery::isAuthenticatedMode );
+    }
+
+    /**
+     * Check the view permission of the user of a request
+     * 
+     * @param request
+     *            the request
+     * @return true if the user has the view permission on the galleries
+     */
+    private static boolean isViewAuthorized( HttpServletRequest request )
+    {
+        return RBACService.isAuthorized( Gallery.RESOURCE_TYPE, RBAC.WILDCARD_RESOURCES_ID, Gallery.PERMISSION_VIEW, getUser( request ) );
+    }
+
+    /**
+     * Get user authenticated
+     * @param request
+     * @return user authenticated
+     */
+    private static User getUser ( HttpServletRequest request )
+    {
+        User user = SecurityService.getInstance( ).getRegisteredUser( request );
+        
+        if( user == null )
+        {
+            user = AdminUserService.getAdminUser( request );
+        }
+        return user;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+
+/**
+ * 
+ * GalleryCacheService : in memory cache of the galleries by id and by code, kept up to date by GalleryHome
+ *
+ */
+public final class GalleryCacheService
+{
+    private static final GalleryCacheService _singleton = new GalleryCacheService( );
+
+    private final Map<Integer, Gallery> _mapGalleriesById = new ConcurrentHashMap<>( );
+    private final Map<String, Gallery> _mapGalleriesByCode = new ConcurrentHashMap<>( );
+    private final AtomicLong _lHits = new AtomicLong( );
+    private final AtomicLong _lMisses = new AtomicLong( );
+
+    /**
+     * Private constructor
+     */
+    private GalleryCacheService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static GalleryCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Get a gallery by id
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @return a copy of the cached gallery, or null if it is not in the cache
+     */
+    public Gallery getById( int nIdGallery )
+    {
+        return hitOrMiss( _mapGalleriesById.get( nIdGallery ) );
+    }
+
+    /**
+     * Get a gallery by code
+     * 
+     * @param strCodeGallery
+     *            the gallery code
+     * @return a copy of the cached gallery, or null if it is not in the cache
+     */
+    public Gallery getByCode( String strCodeGallery )
+    {
+        return hitOrMiss( _mapGalleriesByCode.get( strCodeGallery ) );
+    }
+
+    /**
+     * Put a gallery in the cache, replacing the previous version of the same gallery
+     * 
+     * @param gallery
+     *            the gallery
+     */
+    public synchronized void put( Gallery gallery )
+    {
+        Gallery galleryCached = copy( gallery );
+        Gallery galleryPrevious = _mapGalleriesById.put( galleryCached.getIdGallery( ), galleryCached );
+
+        if ( galleryPrevious != null && galleryPrevious.getCodeGallery( ) != null )
+        {
+            _mapGalleriesByCode.remove( galleryPrevious.getCodeGallery( ) );
+        }
+
+        if ( galleryCached.getCodeGallery( ) != null )
+        {
+            _mapGalleriesByCode.put( galleryCached.getCodeGallery( ), galleryCached );
+        }
+    }
+
+    /**
+     * Remove a gallery from the cache
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     */
+    public synchronized void remove( int nIdGallery )
+    {
+        Gallery galleryPrevious = _mapGalleriesById.remove( nIdGallery );
+
+        if ( galleryPrevious != null && galleryPrevious.getCodeGallery( ) != null )
+        {
+            _mapGalleriesByCode.remove( galleryPrevious.getCodeGallery( ) );
+        }
+    }
+
+    /**
+     * Remove all the galleries from the cache and reset the counters
+     */
+    public synchronized void clear( )
+    {
+        _mapGalleriesById.clear( );
+        _mapGalleriesByCode.clear( );
+        _lHits.set( 0 );
+        _lMisses.set( 0 );
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits( )
+    {
+        return _lHits.get( );
+    }
+
+    /**
+     * @return the number of lookups that had to query the database
+     */
+    public long getMisses( )
+    {
+        return _lMisses.get( );
+    }
+
+    /**
+     * @return the number of galleries in the cache
+     */
+    public int getSize( )
+    {
+        return _mapGalleriesById.size( );
+    }
+
+    /**
+     * Count a lookup and copy its result
+     * 
+     * @param gallery
+     *            the cached gallery or null
+     * @return a copy of the gallery or null
+     */
+    private Gallery hitOrMiss( Gallery gallery )
+    {
+        if ( gallery == null )
+        {
+            _lMisses.incrementAndGet( );
+            return null;
+        }
+
+        _lHits.incrementAndGet( );
+
+        return copy( gallery );
+    }
+
+    /**
+     * Copy a gallery, so that the callers can't modify the cached instances
+     * 
+     * @param gallery
+     *            the gallery
+     * @return the copy
+     */
+    private static Gallery copy( Gallery gallery )
+    {
+        return new Gallery( gallery );
+    }
+}
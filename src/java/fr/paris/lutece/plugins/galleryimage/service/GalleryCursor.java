@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 
+ * GalleryCursor : continuation of the infinite scroll of a front gallery. It holds the index of the next page, the position and id of the last image
+ * already displayed and the version of the gallery the page boundaries were computed for. It is sent to the clients as an opaque string
+ *
+ */
+public final class GalleryCursor
+{
+    private static final String SEPARATOR = ":";
+    private static final int VERSION_LENGTH = 16;
+    private static final int FIELDS_COUNT = 4;
+
+    private final int _nIndex;
+    private final int _nPositionAfter;
+    private final int _nIdImageAfter;
+    private final String _strVersion;
+
+    /**
+     * Constructor
+     * 
+     * @param nIndex
+     *            the page index, starting at 1
+     * @param nPositionAfter
+     *            the position of the last image of the previous page, Integer.MIN_VALUE if unknown
+     * @param nIdImageAfter
+     *            the id of the last image of the previous page, 0 if unknown
+     * @param strVersion
+     *            the version of the gallery, empty if unknown
+     */
+    public GalleryCursor( int nIndex, int nPositionAfter, int nIdImageAfter, String strVersion )
+    {
+        _nIndex = nIndex;
+        _nPositionAfter = nPositionAfter;
+        _nIdImageAfter = nIdImageAfter;
+        _strVersion = StringUtils.defaultString( strVersion );
+    }
+
+    /**
+     * @return the page index, starting at 1
+     */
+    public int getIndex( )
+    {
+        return _nIndex;
+    }
+
+    /**
+     * @return the position of the last image of the previous page, Integer.MIN_VALUE if unknown
+     */
+    public int getPositionAfter( )
+    {
+        return _nPositionAfter;
+    }
+
+    /**
+     * @return the id of the last image of the previous page, 0 if unknown
+     */
+    public int getIdImageAfter( )
+    {
+        return _nIdImageAfter;
+    }
+
+    /**
+     * @return the version of the gallery, empty if unknown
+     */
+    public String getVersion( )
+    {
+        return _strVersion;
+    }
+
+    /**
+     * Encode the cursor
+     * 
+     * @return the opaque string of the cursor, safe in urls
+     */
+    public String encode( )
+    {
+        String strCursor = _nIndex + SEPARATOR + _nPositionAfter + SEPARATOR + _nIdImageAfter + SEPARATOR + _strVersion;
+
+        return Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( strCursor.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Decode a cursor
+     * 
+     * @param strCursor
+     *            the opaque string of the cursor
+     * @return the cursor, or null if the string isn't a valid cursor
+     */
+    public static GalleryCursor decode( String strCursor )
+    {
+        if ( StringUtils.isEmpty( strCursor ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            String [ ] fields = new String( Base64.getUrlDecoder( ).decode( strCursor ), StandardCharsets.UTF_8 ).split( SEPARATOR, FIELDS_COUNT );
+
+            if ( fields.length != FIELDS_COUNT )
+            {
+                return null;
+            }
+
+            int nIndex = Integer.parseInt( fields [0] );
+
+            return ( nIndex > 0 ) ? new GalleryCursor( nIndex, Integer.parseInt( fields [1] ), Integer.parseInt( fields [2] ), fields [3] ) : null;
+        }
+        catch( IllegalArgumentException e )
+        {
+            // Base64 and number format errors
+            return null;
+        }
+    }
+
+    /**
+     * Get the version of a gallery
+     * 
+     * @param state
+     *            the state of the gallery
+     * @return the version : the beginning of the fingerprint of the gallery content
+     */
+    public static String getVersion( GalleryState state )
+    {
+        return StringUtils.left( state.getFingerprint( ), VERSION_LENGTH );
+    }
+}
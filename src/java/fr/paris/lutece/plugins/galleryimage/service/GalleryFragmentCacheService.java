@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.Locale;
+
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * GalleryFragmentCacheService : cache of the gallery fragments rendered by the front servlet. The keys carry the version of the gallery they were
+ * rendered from, so that a modified gallery is never served from the fragments of its previous version : these are left to the eviction of the
+ * cache, whose size and time to live are set by the cache configuration of the portal like the other caches.
+ *
+ */
+public final class GalleryFragmentCacheService extends AbstractCacheableService
+{
+    private static final String SERVICE_NAME = "Gallery Image Fragment Cache Service";
+
+    // PROPERTY
+    private static final String PROPERTY_ENABLED = "galleryimage.fragmentCache.enabled";
+
+    // CONSTANTS
+    private static final String KEY_SEPARATOR = "|";
+
+    private static GalleryFragmentCacheService _singleton;
+
+    /**
+     * Private constructor
+     */
+    private GalleryFragmentCacheService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance, the cache is registered in the cache management at the first call
+     * 
+     * @return The unique instance
+     */
+    public static synchronized GalleryFragmentCacheService getInstance( )
+    {
+        if ( _singleton == null )
+        {
+            _singleton = new GalleryFragmentCacheService( );
+            _singleton.initCache( );
+            _singleton.enableCache( AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true ) );
+        }
+
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Build the key of a fragment
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param strVersion
+     *            the version of the gallery content and of its rendering options, as used in the entity tag
+     * @param strFormat
+     *            the format of the fragment
+     * @param cursor
+     *            the cursor of the page
+     * @param locale
+     *            the locale, null if the fragment doesn't depend on it
+     * @param strInputName
+     *            the input name
+     * @param strIdFileSelected
+     *            the selected file id
+     * @return the key
+     */
+    public static String getKey( int nIdGallery, String strVersion, String strFormat, GalleryCursor cursor, Locale locale, String strInputName,
+            String strIdFileSelected )
+    {
+        StringBuilder sbKey = new StringBuilder( );
+        sbKey.append( nIdGallery ).append( KEY_SEPARATOR ).append( strVersion ).append( KEY_SEPARATOR ).append( strFormat ).append( KEY_SEPARATOR )
+                .append( cursor.encode( ) ).append( KEY_SEPARATOR ).append( locale ).append( KEY_SEPARATOR ).append( strInputName ).append( KEY_SEPARATOR )
+                .append( strIdFileSelected );
+
+        return sbKey.toString( );
+    }
+
+    /**
+     * Get a rendered fragment
+     * 
+     * @param strKey
+     *            the key
+     * @return the fragment, or null if it is not in the cache
+     */
+    public String getFragment( String strKey )
+    {
+        return (String) getFromCache( strKey );
+    }
+
+    /**
+     * Put a rendered fragment in the cache
+     * 
+     * @param strKey
+     *            the key
+     * @param strContent
+     *            the fragment
+     */
+    public void putFragment( String strKey, String strContent )
+    {
+        putInCache( strKey, strContent );
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.GalleryHome;
+import fr.paris.lutece.portal.service.daemon.Daemon;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * GalleryImagePositionDaemon : spreads again the positions of the galleries whose gaps are running out, so that the moves rarely have to
+ * renumber a gallery themselves
+ *
+ */
+public class GalleryImagePositionDaemon extends Daemon
+{
+    private static final String PROPERTY_MIN_GAP = "galleryimage.position.renumber.minGap";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run( )
+    {
+        int nMinGap = AppPropertiesService.getPropertyInt( PROPERTY_MIN_GAP, 16 );
+        GalleryImagePositionService positionService = GalleryImagePositionService.getInstance( );
+        int nRenumbered = 0;
+
+        for ( Gallery gallery : GalleryHome.findAll( ) )
+        {
+            if ( positionService.needsRenumbering( gallery.getIdGallery( ), nMinGap ) )
+            {
+                positionService.renumber( gallery.getIdGallery( ) );
+                nRenumbered++;
+            }
+        }
+
+        setLastRunLogs( "Galleries renumbered : " + nRenumbered );
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import fr.paris.lutece.plugins.galleryimage.business.GalleryImage;
+import fr.paris.lutece.plugins.galleryimage.business.GalleryImageHome;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * 
+ * GalleryImagePositionService : order of the images in a gallery. The positions are sparse, so that moving an image only updates its
+ * own row; the gallery is renumbered when there is no gap left between two positions.
+ *
+ */
+public final class GalleryImagePositionService
+{
+    /**
+     * Gap between two positions after a renumbering
+     */
+    public static final int POSITION_GAP = 1024;
+
+    private static final GalleryImagePositionService _singleton = new GalleryImagePositionService( );
+
+    /**
+     * Private constructor
+     */
+    private GalleryImagePositionService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static GalleryImagePositionService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Link an image at the end of a gallery, if it exists and is not already linked
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nIdImage
+     *            the image id
+     * @return true if the image has been linked
+     */
+    public boolean addImage( int nIdGallery, int nIdImage )
+    {
+        return addImages( nIdGallery, Collections.singletonList( nIdImage ) ) > 0;
+    }
+
+    /**
+     * Link several images at the end of a gallery, in their order, with a single batch in a transaction. The images which don't exist or
+     * are already linked are ignored
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param listIdImages
+     *            the image ids
+     * @return the number of images linked
+     */
+    public int addImages( int nIdGallery, List<Integer> listIdImages )
+    {
+        if ( listIdImages.isEmpty( ) )
+        {
+            return 0;
+        }
+
+        List<GalleryImage> listGalleryImages = new ArrayList<>( );
+
+        // The last position is read in the transaction which writes the new ones
+        inTransaction( nIdGallery, ( ) -> {
+            Set<Integer> setLinkedIds = new HashSet<>( ImageHome.getIdsListLinkedToGallery( nIdGallery ) );
+            Set<Integer> setExistingIds = new HashSet<>( );
+
+            for ( Image image : ImageHome.getImagesByIds( listIdImages ) )
+            {
+                setExistingIds.add( image.getIdImage( ) );
+            }
+
+            Integer nMaxPosition = GalleryImageHome.findMaxPosition( nIdGallery );
+
+            if ( nMaxPosition != null && (long) nMaxPosition + (long) POSITION_GAP * ( listIdImages.size( ) + 1 ) > Integer.MAX_VALUE )
+            {
+                GalleryImageHome.renumber( nIdGallery, POSITION_GAP );
+                nMaxPosition = GalleryImageHome.findMaxPosition( nIdGallery );
+            }
+
+            int nPosition = nMaxPosition == null ? 0 : nMaxPosition;
+
+            for ( Integer nIdImage : listIdImages )
+            {
+                // add( ) also removes the duplicates of the list
+                if ( setExistingIds.contains( nIdImage ) && setLinkedIds.add( nIdImage ) )
+                {
+                    nPosition += POSITION_GAP;
+
+                    GalleryImage galleryImage = new GalleryImage( );
+                    galleryImage.setIdGallery( nIdGallery );
+                    galleryImage.setIdImage( nIdImage );
+                    galleryImage.setPosition( nPosition );
+                    listGalleryImages.add( galleryImage );
+                }
+            }
+
+            if ( !listGalleryImages.isEmpty( ) )
+            {
+                GalleryImageHome.createBatch( nIdGallery, listGalleryImages );
+            }
+        } );
+
+        return listGalleryImages.size( );
+    }
+
+    /**
+     * Unlink several images from a gallery, with a single batch in a transaction
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param listIdImages
+     *            the image ids
+     */
+    public void removeImages( int nIdGallery, List<Integer> listIdImages )
+    {
+        if ( !listIdImages.isEmpty( ) )
+        {
+            inTransaction( nIdGallery, ( ) -> GalleryImageHome.removeBatchByGalleryIdAndIdImages( nIdGallery, listIdImages ) );
+        }
+    }
+
+    /**
+     * Move an image one step in a gallery, by updating its position only
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nIdImage
+     *            the image id
+     * @param bUp
+     *            true to move the image before its previous neighbour, false to move it after its next neighbour
+     * @return true if the image has been moved, false if it is not linked to the gallery or already at the end
+     */
+    public boolean move( int nIdGallery, int nIdImage, boolean bUp )
+    {
+        Integer nPosition = GalleryImageHome.findPosition( nIdGallery, nIdImage );
+
+        if ( nPosition == null )
+        {
+            return false;
+        }
+
+        List<Integer> listNeighbours = getNeighbours( nIdGallery, nPosition, bUp );
+
+        if ( listNeighbours.isEmpty( ) )
+        {
+            return false;
+        }
+
+        Integer nNewPosition = computePosition( listNeighbours, bUp );
+
+        if ( nNewPosition == null )
+        {
+            // No gap left between the neighbours : spread the positions again, then the move always finds one
+            renumber( nIdGallery );
+            nPosition = GalleryImageHome.findPosition( nIdGallery, nIdImage );
+            nNewPosition = computePosition( getNeighbours( nIdGallery, nPosition, bUp ), bUp );
+
+            if ( nNewPosition == null )
+            {
+                return false;
+            }
+        }
+
+        GalleryImageHome.updatePosition( nIdGallery, nIdImage, nNewPosition );
+
+        return true;
+    }
+
+    /**
+     * Check if the positions of a gallery must be spread again
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nMinGap
+     *            the minimal gap between two positions
+     * @return true if two positions are closer than the minimal gap, or if the last position is near the maximum
+     */
+    public boolean needsRenumbering( int nIdGallery, int nMinGap )
+    {
+        List<Integer> listPositions = GalleryImageHome.findPositions( nIdGallery );
+
+        for ( int i = 1; i < listPositions.size( ); i++ )
+        {
+            if ( (long) listPositions.get( i ) - listPositions.get( i - 1 ) < nMinGap )
+            {
+                return true;
+            }
+        }
+
+        return !listPositions.isEmpty( ) && listPositions.get( listPositions.size( ) - 1 ) > Integer.MAX_VALUE - POSITION_GAP;
+    }
+
+    /**
+     * Spread the positions of a gallery again with the default gap, in a transaction
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     */
+    public void renumber( int nIdGallery )
+    {
+        inTransaction( nIdGallery, ( ) -> GalleryImageHome.renumber( nIdGallery, POSITION_GAP ) );
+    }
+
+    /**
+     * Run a task on a gallery in a transaction of the plugin pool, then invalidate the caches of the gallery. The caches are only invalidated
+     * once the transaction is committed, so that no concurrent request can cache the gallery as it was before the commit
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param task
+     *            the task
+     */
+    private static void inTransaction( int nIdGallery, Runnable task )
+    {
+        Plugin plugin = GalleryImagePlugin.getPlugin( );
+        TransactionManager.beginTransaction( plugin );
+
+        try
+        {
+            task.run( );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin );
+            throw new AppException( e.getMessage( ), e );
+        }
+
+        GalleryStateService.getInstance( ).invalidate( nIdGallery );
+    }
+
+    /**
+     * Get the two nearest positions in the direction of a move
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     * @param nPosition
+     *            the current position
+     * @param bUp
+     *            the direction
+     * @return the positions, from the nearest
+     */
+    private static List<Integer> getNeighbours( int nIdGallery, int nPosition, boolean bUp )
+    {
+        return bUp ? GalleryImageHome.findPositionsBefore( nIdGallery, nPosition, 2 ) : GalleryImageHome.findPositionsAfter( nIdGallery, nPosition, 2 );
+    }
+
+    /**
+     * Compute the position just beyond the nearest neighbour
+     * 
+     * @param listNeighbours
+     *            the one or two nearest positions in the direction of the move
+     * @param bUp
+     *            the direction
+     * @return the new position, or null if there is no free position
+     */
+    static Integer computePosition( List<Integer> listNeighbours, boolean bUp )
+    {
+        long lNearest = listNeighbours.get( 0 );
+        long lPosition;
+
+        if ( listNeighbours.size( ) < 2 )
+        {
+            lPosition = bUp ? lNearest - POSITION_GAP : lNearest + POSITION_GAP;
+        }
+        else
+        {
+            long lNext = listNeighbours.get( 1 );
+
+            if ( Math.abs( lNearest - lNext ) < 2 )
+            {
+                return null;
+            }
+
+            lPosition = ( lNearest + lNext ) / 2;
+        }
+
+        if ( lPosition <= Integer.MIN_VALUE || lPosition > Integer.MAX_VALUE )
+        {
+            return null;
+        }
+
+        return (int) lPosition;
+    }
+}
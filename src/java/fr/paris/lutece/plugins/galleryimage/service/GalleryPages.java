@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+/**
+ * 
+ * GalleryPages : boundaries of the pages of a gallery, each page being filled up to a byte budget
+ *
+ */
+public class GalleryPages
+{
+    private final String _strFingerprint;
+    private final long _lMaxBytes;
+    private final int [ ] _nOffsets;
+    private final int _nImagesCount;
+
+    /**
+     * Constructor
+     * 
+     * @param strFingerprint
+     *            the fingerprint of the gallery content the pages were computed from
+     * @param lMaxBytes
+     *            the byte budget of a page
+     * @param nOffsets
+     *            the offset of the first image of each page
+     * @param nImagesCount
+     *            the number of images of the gallery
+     */
+    public GalleryPages( String strFingerprint, long lMaxBytes, int [ ] nOffsets, int nImagesCount )
+    {
+        _strFingerprint = strFingerprint;
+        _lMaxBytes = lMaxBytes;
+        _nOffsets = nOffsets;
+        _nImagesCount = nImagesCount;
+    }
+
+    /**
+     * @return the fingerprint of the gallery content the pages were computed from
+     */
+    public String getFingerprint( )
+    {
+        return _strFingerprint;
+    }
+
+    /**
+     * @return the byte budget of a page
+     */
+    public long getMaxBytes( )
+    {
+        return _lMaxBytes;
+    }
+
+    /**
+     * @return the number of pages, at least one
+     */
+    public int getPagesCount( )
+    {
+        return Math.max( _nOffsets.length, 1 );
+    }
+
+    /**
+     * Get the offset of the first image of a page
+     * 
+     * @param nIndex
+     *            the page index, starting at 1
+     * @return the offset of the first image of the page, the number of images if the page doesn't exist
+     */
+    public int getPageOffset( int nIndex )
+    {
+        if ( nIndex < 1 || nIndex > _nOffsets.length )
+        {
+            return _nImagesCount;
+        }
+
+        return _nOffsets [nIndex - 1];
+    }
+
+    /**
+     * Get the number of images of a page
+     * 
+     * @param nIndex
+     *            the page index, starting at 1
+     * @return the number of images of the page, 0 if the page doesn't exist
+     */
+    public int getPageSize( int nIndex )
+    {
+        if ( nIndex < 1 || nIndex > _nOffsets.length )
+        {
+            return 0;
+        }
+
+        return ( ( nIndex < _nOffsets.length ) ? _nOffsets [nIndex] : _nImagesCount ) - _nOffsets [nIndex - 1];
+    }
+}
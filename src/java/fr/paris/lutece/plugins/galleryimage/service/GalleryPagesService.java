@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+
+/**
+ * 
+ * GalleryPagesService : pagination of the front galleries, by number of images or by byte budget. The byte budgeted pages are kept until the
+ * gallery content changes
+ *
+ */
+public final class GalleryPagesService
+{
+    private static final GalleryPagesService _singleton = new GalleryPagesService( );
+
+    private final Map<Integer, GalleryPages> _mapPages = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private GalleryPagesService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static GalleryPagesService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Get a page of a gallery. One more image than the page size is read to know whether a next page exists, so that a page costs a single range
+     * read whatever its depth
+     * 
+     * @param gallery
+     *            the gallery
+     * @param cursor
+     *            the cursor of the page
+     * @param nDefaultItemsPerPage
+     *            the number of images per page
+     * @param lPageMaxBytes
+     *            the byte budget of a page, the pages hold the same number of images if not positive
+     * @return the page, its images without their binary
+     */
+    public GalleryPage getPage( Gallery gallery, GalleryCursor cursor, int nDefaultItemsPerPage, long lPageMaxBytes )
+    {
+        String strVersion = GalleryCursor.getVersion( GalleryStateService.getInstance( ).getState( gallery ) );
+        int nIndex = cursor.getIndex( );
+        int nItemsPerPage = nDefaultItemsPerPage;
+        int nOffset = ( nIndex - 1 ) * nDefaultItemsPerPage;
+
+        // The byte budgeted boundaries only apply to the version of the gallery the cursor was given for
+        if ( isByteBudgeted( cursor, strVersion, lPageMaxBytes ) )
+        {
+            // Byte budgeted pagination : the boundaries of the pages are computed once per version of the gallery
+            GalleryPages pages = getPages( gallery, lPageMaxBytes, nDefaultItemsPerPage );
+
+            if ( pages.getPageSize( nIndex ) > 0 )
+            {
+                nItemsPerPage = pages.getPageSize( nIndex );
+                nOffset = pages.getPageOffset( nIndex );
+            }
+        }
+
+        List<Image> listImages;
+
+        if ( cursor.getIdImageAfter( ) > 0 || nIndex < 2 )
+        {
+            // Keyset pagination : the page starts after the position and id of the last image already displayed
+            listImages = ImageHome.getImagesLinkedToGalleryCodeAfter( gallery.getCodeGallery( ), cursor.getPositionAfter( ), cursor.getIdImageAfter( ),
+                    nItemsPerPage + 1 );
+        }
+        else
+        {
+            listImages = ImageHome.getImagesLinkedToGalleryPage( gallery.getIdGallery( ), nOffset, nItemsPerPage + 1 );
+        }
+
+        GalleryCursor nextCursor = null;
+
+        if ( listImages.size( ) > nItemsPerPage )
+        {
+            listImages = new ArrayList<>( listImages.subList( 0, nItemsPerPage ) );
+            Image imageLast = listImages.get( nItemsPerPage - 1 );
+            nextCursor = new GalleryCursor( nIndex + 1, imageLast.getPosition( ), imageLast.getIdImage( ), strVersion );
+        }
+
+        return new GalleryPage( listImages, nextCursor );
+    }
+
+    /**
+     * Get the pages of a gallery, computed again when the gallery content or the budget changed
+     * 
+     * @param gallery
+     *            the gallery
+     * @param lMaxBytes
+     *            the byte budget of a page
+     * @param nDefaultItemsPerPage
+     *            the number of images per page used to estimate the size of the images whose size is unknown
+     * @return the pages of the gallery
+     */
+    public GalleryPages getPages( Gallery gallery, long lMaxBytes, int nDefaultItemsPerPage )
+    {
+        String strFingerprint = GalleryStateService.getInstance( ).getState( gallery ).getFingerprint( );
+        GalleryPages pages = _mapPages.get( gallery.getIdGallery( ) );
+
+        if ( pages == null || pages.getMaxBytes( ) != lMaxBytes || !pages.getFingerprint( ).equals( strFingerprint ) )
+        {
+            pages = computePages( gallery, strFingerprint, lMaxBytes, nDefaultItemsPerPage );
+            _mapPages.put( gallery.getIdGallery( ), pages );
+        }
+
+        return pages;
+    }
+
+    /**
+     * Forget the pages of a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     */
+    public void invalidate( int nIdGallery )
+    {
+        _mapPages.remove( nIdGallery );
+    }
+
+    /**
+     * Check if a page is split by byte budget
+     * 
+     * @param cursor
+     *            the cursor of the page
+     * @param strVersion
+     *            the current version of the gallery
+     * @param lPageMaxBytes
+     *            the byte budget of a page, the byte budget is disabled if not positive
+     * @return true if the byte budget is enabled and the cursor was given for the current version of the gallery, or for no version
+     */
+    static boolean isByteBudgeted( GalleryCursor cursor, String strVersion, long lPageMaxBytes )
+    {
+        return lPageMaxBytes > 0 && ( cursor.getVersion( ).isEmpty( ) || cursor.getVersion( ).equals( strVersion ) );
+    }
+
+    /**
+     * Split the images of a gallery in pages
+     * 
+     * @param gallery
+     *            the gallery
+     * @param strFingerprint
+     *            the fingerprint of the gallery content
+     * @param lMaxBytes
+     *            the byte budget of a page
+     * @param nDefaultItemsPerPage
+     *            the number of images per page used to estimate the size of the images whose size is unknown
+     * @return the pages of the gallery
+     */
+    private static GalleryPages computePages( Gallery gallery, String strFingerprint, long lMaxBytes, int nDefaultItemsPerPage )
+    {
+        return split( ImageHome.getImagesLinkedToGallery( gallery.getIdGallery( ) ), strFingerprint, lMaxBytes, nDefaultItemsPerPage );
+    }
+
+    /**
+     * Split images in pages : a page is closed before the image which would exceed the budget, and holds at least one image
+     * 
+     * @param listImages
+     *            the images, in the order of the gallery
+     * @param strFingerprint
+     *            the fingerprint of the gallery content
+     * @param lMaxBytes
+     *            the byte budget of a page
+     * @param nDefaultItemsPerPage
+     *            the number of images per page used to estimate the size of the images whose size is unknown
+     * @return the pages
+     */
+    static GalleryPages split( List<Image> listImages, String strFingerprint, long lMaxBytes, int nDefaultItemsPerPage )
+    {
+        // The images not measured yet by the metadata daemon get the share of the budget of a count based page
+        long lDefaultSize = lMaxBytes / Math.max( nDefaultItemsPerPage, 1 );
+        List<Integer> listOffsets = new ArrayList<>( );
+        long lPageBytes = 0;
+
+        for ( int nOffset = 0; nOffset < listImages.size( ); nOffset++ )
+        {
+            Image image = listImages.get( nOffset );
+            long lSize = ( image.getSize( ) > 0 ) ? image.getSize( ) : lDefaultSize;
+
+            if ( listOffsets.isEmpty( ) || lPageBytes + lSize > lMaxBytes )
+            {
+                listOffsets.add( nOffset );
+                lPageBytes = 0;
+            }
+
+            lPageBytes += lSize;
+        }
+
+        return new GalleryPages( strFingerprint, lMaxBytes, listOffsets.stream( ).mapToInt( Integer::intValue ).toArray( ), listImages.size( ) );
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.GalleryImageHome;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.business.ImageRendition;
+
+/**
+ * 
+ * GalleryStateService : computes and keeps the state of the galleries until they are modified
+ *
+ */
+public final class GalleryStateService
+{
+    private static final String SEPARATOR = "|";
+    private static final GalleryStateService _singleton = new GalleryStateService( );
+
+    private final Map<Integer, GalleryState> _mapStates = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private GalleryStateService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static GalleryStateService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Get the state of the gallery, computed from the gallery row and its linked images
+     * 
+     * @param gallery
+     *            the gallery
+     * @return the state of the gallery
+     */
+    public GalleryState getState( Gallery gallery )
+    {
+        return _mapStates.computeIfAbsent( gallery.getIdGallery( ), nIdGallery -> computeState( gallery ) );
+    }
+
+    /**
+     * Forget the state of a gallery
+     * 
+     * @param nIdGallery
+     *            the gallery id
+     */
+    public void invalidate( int nIdGallery )
+    {
+        _mapStates.remove( nIdGallery );
+    }
+
+    /**
+     * Forget the state of several galleries
+     * 
+     * @param collectionIdGalleries
+     *            the gallery ids
+     */
+    public void invalidate( Collection<Integer> collectionIdGalleries )
+    {
+        _mapStates.keySet( ).removeAll( collectionIdGalleries );
+    }
+
+    /**
+     * Forget the state of the galleries an image is linked to
+     * 
+     * @param nIdImage
+     *            the image id
+     */
+    public void invalidateImage( int nIdImage )
+    {
+        // No lookup while no state is kept : this is the common case during the uploads and the daemons runs
+        if ( !_mapStates.isEmpty( ) )
+        {
+            invalidate( GalleryImageHome.findGalleryIdsByImageId( nIdImage ) );
+        }
+    }
+
+    /**
+     * Forget the state of the galleries several images are linked to, with a single lookup
+     * 
+     * @param listImages
+     *            the images
+     */
+    public void invalidateImages( List<Image> listImages )
+    {
+        if ( _mapStates.isEmpty( ) || listImages.isEmpty( ) )
+        {
+            return;
+        }
+
+        List<Integer> listIdImages = new ArrayList<>( listImages.size( ) );
+
+        for ( Image image : listImages )
+        {
+            listIdImages.add( image.getIdImage( ) );
+        }
+
+        invalidate( GalleryImageHome.findGalleryIdsByImageIds( listIdImages ) );
+    }
+
+    /**
+     * Compute the state of a gallery from its row, its linked images and their renditions
+     * 
+     * @param gallery
+     *            the gallery
+     * @return the state of the gallery
+     */
+    private static GalleryState computeState( Gallery gallery )
+    {
+        StringBuilder sbContent = new StringBuilder( );
+        sbContent.append( gallery.getIdGallery( ) ).append( SEPARATOR ).append( gallery.getCodeGallery( ) ).append( SEPARATOR )
+                .append( gallery.getLabel( ) ).append( SEPARATOR ).append( gallery.getGalleryImageType( ) ).append( SEPARATOR )
+                .append( gallery.getHeightGallery( ) ).append( SEPARATOR ).append( gallery.getWidthGallery( ) ).append( SEPARATOR )
+                .append( gallery.isAuthenticatedMode( ) ).append( SEPARATOR ).append( gallery.getLoadBinaryLimit( ) );
+
+        List<Image> listImages = ImageHome.getImagesLinkedToGallery( gallery.getIdGallery( ) );
+        ImageRenditionService.getInstance( ).loadRenditions( listImages );
+
+        for ( Image image : listImages )
+        {
+            sbContent.append( SEPARATOR ).append( image.getIdImage( ) ).append( SEPARATOR ).append( image.getPosition( ) ).append( SEPARATOR )
+                    .append( image.getIdFile( ) ).append( SEPARATOR ).append( image.getSize( ) ).append( SEPARATOR )
+                    .append( image.getWidth( ) ).append( SEPARATOR ).append( image.getHeight( ) ).append( SEPARATOR ).append( image.getPlaceholder( ) ).append( SEPARATOR )
+                    .append( image.getTitle( ) ).append( SEPARATOR ).append( image.getDescription( ) );
+
+            for ( ImageRendition imageRendition : image.getListRenditions( ) )
+            {
+                sbContent.append( SEPARATOR ).append( imageRendition.getWidth( ) );
+            }
+        }
+
+        return new GalleryState( DigestUtils.sha256Hex( sbContent.toString( ) ) );
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.galleryimage.util.ImageDecodeTimeoutException;
+import fr.paris.lutece.plugins.galleryimage.util.ImageTooLargeException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * ImageDecodeLimiter : shares a memory budget between the threads decoding images. The memory a decoding needs is estimated from the dimensions of the
+ * image and reserved before decoding : the decodings wait while the budget is exhausted, and the ones that can't fit in it are rejected. The
+ * decodings of the front office requests have their own smaller budget and don't wait, so that they can't starve the uploads.
+ *
+ */
+public final class ImageDecodeLimiter
+{
+    // PROPERTIES
+    private static final String PROPERTY_BUDGET_MEGABYTES = "galleryimage.decode.budgetMegabytes";
+    private static final String PROPERTY_WAIT_TIMEOUT_SECONDS = "galleryimage.decode.waitTimeoutSeconds";
+    private static final String PROPERTY_PUBLIC_BUDGET_MEGABYTES = "galleryimage.decode.public.budgetMegabytes";
+    private static final String PROPERTY_PUBLIC_WAIT_TIMEOUT_SECONDS = "galleryimage.decode.public.waitTimeoutSeconds";
+
+    // CONSTANTS
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int BYTES_PER_KIB = 1024;
+    private static final int KIB_PER_MIB = 1024;
+    // Share of the maximum heap used as budget when none is configured
+    private static final int DEFAULT_HEAP_DIVISOR = 4;
+    private static final int DEFAULT_WAIT_TIMEOUT_SECONDS = 60;
+    private static final int DEFAULT_PUBLIC_HEAP_DIVISOR = 16;
+    private static final int DEFAULT_PUBLIC_WAIT_TIMEOUT_SECONDS = 0;
+
+    private static ImageDecodeLimiter _singleton;
+    private static ImageDecodeLimiter _singletonPublic;
+
+    private final Semaphore _semaphore;
+    private final int _nBudgetKiB;
+    private final long _lWaitTimeoutSeconds;
+    private final AtomicInteger _nWaiting = new AtomicInteger( );
+    private final AtomicLong _lAcquired = new AtomicLong( );
+    private final AtomicLong _lRejected = new AtomicLong( );
+    private final AtomicLong _lTimeouts = new AtomicLong( );
+    private final AtomicLong _lTotalWaitMillis = new AtomicLong( );
+    private final AtomicLong _lMaxWaitMillis = new AtomicLong( );
+
+    /**
+     * Private constructor
+     * 
+     * @param nBudgetMegabytes
+     *            the budget in MB, a share of the maximum heap if not positive
+     * @param nDefaultHeapDivisor
+     *            the share of the maximum heap used as default budget
+     * @param nWaitTimeoutSeconds
+     *            how long a decoding waits for its memory, 0 to fail at once
+     */
+    private ImageDecodeLimiter( int nBudgetMegabytes, int nDefaultHeapDivisor, int nWaitTimeoutSeconds )
+    {
+        long lBudgetKiB = (long) nBudgetMegabytes * KIB_PER_MIB;
+
+        if ( lBudgetKiB <= 0 )
+        {
+            lBudgetKiB = Runtime.getRuntime( ).maxMemory( ) / nDefaultHeapDivisor / BYTES_PER_KIB;
+        }
+
+        _nBudgetKiB = (int) Math.min( Integer.MAX_VALUE, lBudgetKiB );
+        _semaphore = new Semaphore( _nBudgetKiB, true );
+        _lWaitTimeoutSeconds = Math.max( nWaitTimeoutSeconds, 0 );
+    }
+
+    /**
+     * Returns the unique instance shared by the uploads, the renditions and the daemons
+     * 
+     * @return The unique instance
+     */
+    public static synchronized ImageDecodeLimiter getInstance( )
+    {
+        if ( _singleton == null )
+        {
+            _singleton = new ImageDecodeLimiter( AppPropertiesService.getPropertyInt( PROPERTY_BUDGET_MEGABYTES, 0 ), DEFAULT_HEAP_DIVISOR,
+                    AppPropertiesService.getPropertyInt( PROPERTY_WAIT_TIMEOUT_SECONDS, DEFAULT_WAIT_TIMEOUT_SECONDS ) );
+        }
+
+        return _singleton;
+    }
+
+    /**
+     * Returns the instance of the decodings triggered by the front office requests
+     * 
+     * @return The unique instance
+     */
+    public static synchronized ImageDecodeLimiter getPublicInstance( )
+    {
+        if ( _singletonPublic == null )
+        {
+            _singletonPublic = new ImageDecodeLimiter( AppPropertiesService.getPropertyInt( PROPERTY_PUBLIC_BUDGET_MEGABYTES, 0 ), DEFAULT_PUBLIC_HEAP_DIVISOR,
+                    AppPropertiesService.getPropertyInt( PROPERTY_PUBLIC_WAIT_TIMEOUT_SECONDS, DEFAULT_PUBLIC_WAIT_TIMEOUT_SECONDS ) );
+        }
+
+        return _singletonPublic;
+    }
+
+    /**
+     * Estimate the memory of a decoded image
+     * 
+     * @param nWidth
+     *            the width
+     * @param nHeight
+     *            the height
+     * @return the estimated memory, in bytes
+     */
+    public static long estimateBytes( int nWidth, int nHeight )
+    {
+        return (long) Math.max( 0, nWidth ) * Math.max( 0, nHeight ) * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Reserve memory before decoding, waiting while the budget is exhausted
+     * 
+     * @param lBytes
+     *            the memory to reserve, in bytes
+     * @param nWidth
+     *            the width of the image, for the error message
+     * @param nHeight
+     *            the height of the image, for the error message
+     * @return the permit to close once the decoded images are released
+     * @throws ImageTooLargeException
+     *             if the memory exceeds the whole budget
+     * @throws ImageDecodeTimeoutException
+     *             if the memory could not be reserved before the timeout
+     */
+    public Permit acquire( long lBytes, int nWidth, int nHeight ) throws ImageTooLargeException, ImageDecodeTimeoutException
+    {
+        long lKiB = ( lBytes + BYTES_PER_KIB - 1 ) / BYTES_PER_KIB;
+
+        if ( lKiB > _nBudgetKiB )
+        {
+            _lRejected.incrementAndGet( );
+            AppLogService.error( "ImageDecodeLimiter:acquire( ): {} KiB exceed the decode budget of {} KiB", lKiB, _nBudgetKiB );
+            throw new ImageTooLargeException( nWidth, nHeight );
+        }
+
+        int nKiB = (int) lKiB;
+        long lStart = System.currentTimeMillis( );
+        boolean bAcquired = false;
+
+        _nWaiting.incrementAndGet( );
+
+        try
+        {
+            bAcquired = _semaphore.tryAcquire( nKiB, _lWaitTimeoutSeconds, TimeUnit.SECONDS );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+        finally
+        {
+            _nWaiting.decrementAndGet( );
+        }
+
+        long lWaitMillis = System.currentTimeMillis( ) - lStart;
+        _lTotalWaitMillis.addAndGet( lWaitMillis );
+        _lMaxWaitMillis.accumulateAndGet( lWaitMillis, Math::max );
+
+        if ( !bAcquired )
+        {
+            _lTimeouts.incrementAndGet( );
+            AppLogService.error( "ImageDecodeLimiter:acquire( ): {} KiB could not be reserved after {} ms", nKiB, lWaitMillis );
+            throw new ImageDecodeTimeoutException( lBytes );
+        }
+
+        _lAcquired.incrementAndGet( );
+
+        return new Permit( nKiB );
+    }
+
+    /**
+     * @return the budget, in KiB
+     */
+    public int getBudgetKiB( )
+    {
+        return _nBudgetKiB;
+    }
+
+    /**
+     * @return the part of the budget not reserved, in KiB
+     */
+    public int getAvailableKiB( )
+    {
+        return _semaphore.availablePermits( );
+    }
+
+    /**
+     * @return the number of threads waiting for memory
+     */
+    public int getWaitingCount( )
+    {
+        return _nWaiting.get( );
+    }
+
+    /**
+     * @return the number of reservations granted
+     */
+    public long getAcquiredCount( )
+    {
+        return _lAcquired.get( );
+    }
+
+    /**
+     * @return the number of reservations rejected because they exceed the budget
+     */
+    public long getRejectedCount( )
+    {
+        return _lRejected.get( );
+    }
+
+    /**
+     * @return the number of reservations that timed out
+     */
+    public long getTimeoutCount( )
+    {
+        return _lTimeouts.get( );
+    }
+
+    /**
+     * @return the total time spent waiting for memory, in milliseconds
+     */
+    public long getTotalWaitMillis( )
+    {
+        return _lTotalWaitMillis.get( );
+    }
+
+    /**
+     * @return the longest time spent waiting for memory, in milliseconds
+     */
+    public long getMaxWaitMillis( )
+    {
+        return _lMaxWaitMillis.get( );
+    }
+
+    /**
+     * Describe the state and the counters of the budget, as reported in the logs of the daemons
+     * 
+     * @return the description
+     */
+    public String getStatus( )
+    {
+        return "budget : " + getBudgetKiB( ) + " KiB, available : " + getAvailableKiB( ) + " KiB, waiting : " + getWaitingCount( ) + ", acquired : "
+                + getAcquiredCount( ) + ", rejected : " + getRejectedCount( ) + ", timeouts : " + getTimeoutCount( ) + ", total wait : "
+                + getTotalWaitMillis( ) + " ms, max wait : " + getMaxWaitMillis( ) + " ms";
+    }
+
+    /**
+     * A reservation of memory, released when closed
+     */
+    public final class Permit implements AutoCloseable
+    {
+        private final AtomicInteger _nKiB;
+
+        /**
+         * Constructor
+         * 
+         * @param nKiB
+         *            the reserved memory, in KiB
+         */
+        private Permit( int nKiB )
+        {
+            _nKiB = new AtomicInteger( nKiB );
+        }
+
+        /**
+         * Release the reserved memory. Releasing twice has no effect.
+         */
+        @Override
+        public void close( )
+        {
+            int nKiB = _nKiB.getAndSet( 0 );
+
+            if ( nKiB > 0 )
+            {
+                _semaphore.release( nKiB );
+            }
+        }
+    }
+}
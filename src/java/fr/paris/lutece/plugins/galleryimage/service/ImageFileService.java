@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.fileupload.FileItem;
+
+import fr.paris.lutece.plugins.galleryimage.business.ImageFile;
+import fr.paris.lutece.plugins.galleryimage.business.ImageFileHome;
+import fr.paris.lutece.portal.service.file.FileService;
+import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
+import fr.paris.lutece.portal.service.util.AppException;
+
+/**
+ * 
+ * ImageFileService : stores the image binaries once per content. The files are indexed by the SHA-256 of their content and shared by the images with
+ * the same content ; a file is deleted when the last image using it releases it.
+ *
+ */
+public final class ImageFileService
+{
+    // CONSTANTS
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String HASH_FORMAT = "%064x";
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ImageFileService _singleton = new ImageFileService( );
+
+    private final Object _lock = new Object( );
+
+    /**
+     * Private constructor
+     */
+    private ImageFileService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static ImageFileService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Store an image binary, or reuse the stored file with the same content
+     * 
+     * @param fileItem
+     *            the binary to store
+     * @return the file id
+     */
+    public int store( FileItem fileItem )
+    {
+        String strHash = hash( fileItem );
+        Integer nIdSharedFile = reference( strHash );
+
+        if ( nIdSharedFile != null )
+        {
+            return nIdSharedFile;
+        }
+
+        FileImagePublicService.init( );
+        int nIdFile = Integer.parseInt( FileImagePublicService.getInstance( ).addImageResource( fileItem ) );
+
+        synchronized( _lock )
+        {
+            // The same content may have been stored while this one was
+            nIdSharedFile = reference( strHash );
+
+            if ( nIdSharedFile == null )
+            {
+                ImageFile imageFile = new ImageFile( );
+                imageFile.setIdFile( nIdFile );
+                imageFile.setHash( strHash );
+                imageFile.setRefCount( 1 );
+
+                try
+                {
+                    ImageFileHome.create( imageFile );
+
+                    return nIdFile;
+                }
+                catch( AppException e )
+                {
+                    // Stored at the same time by another node : the unique index on the hash rejected this one
+                    nIdSharedFile = reference( strHash );
+
+                    if ( nIdSharedFile == null )
+                    {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        deleteFile( nIdFile );
+
+        return nIdSharedFile;
+    }
+
+    /**
+     * Release a file used by an image. The file is deleted if no other image uses it.
+     * 
+     * @param nIdFile
+     *            the file id
+     */
+    public void release( int nIdFile )
+    {
+        if ( ImageFileHome.findByPrimaryKey( nIdFile ) == null )
+        {
+            // File stored before the deduplication, used by a single image
+            deleteFile( nIdFile );
+
+            return;
+        }
+
+        ImageFileHome.decrementRefCount( nIdFile );
+
+        if ( ImageFileHome.removeIfUnreferenced( nIdFile ) )
+        {
+            deleteFile( nIdFile );
+        }
+    }
+
+    /**
+     * Add a reference to the stored file with a given content
+     * 
+     * @param strHash
+     *            the hash of the content
+     * @return the file id, or null if no file has this content
+     */
+    private static Integer reference( String strHash )
+    {
+        ImageFile imageFile = ImageFileHome.findByHash( strHash );
+
+        // The reference fails if the file has been released in the meantime
+        if ( imageFile != null && ImageFileHome.incrementRefCount( imageFile.getIdFile( ) ) )
+        {
+            return imageFile.getIdFile( );
+        }
+
+        return null;
+    }
+
+    /**
+     * Compute the SHA-256 of the content of a file
+     * 
+     * @param fileItem
+     *            the file
+     * @return the hash, in hexadecimal
+     */
+    private static String hash( FileItem fileItem )
+    {
+        try ( InputStream inputStream = fileItem.getInputStream( ) )
+        {
+            MessageDigest messageDigest = MessageDigest.getInstance( HASH_ALGORITHM );
+            byte [ ] buffer = new byte [ BUFFER_SIZE ];
+            int nRead;
+
+            while ( ( nRead = inputStream.read( buffer ) ) != -1 )
+            {
+                messageDigest.update( buffer, 0, nRead );
+            }
+
+            return String.format( HASH_FORMAT, new BigInteger( 1, messageDigest.digest( ) ) );
+        }
+        catch( IOException | NoSuchAlgorithmException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Delete a file from the file store
+     * 
+     * @param nIdFile
+     *            the file id
+     */
+    private static void deleteFile( int nIdFile )
+    {
+        FileService.getInstance( ).getFileStoreServiceProvider( ).delete( String.valueOf( nIdFile ) );
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.imgscalr.Scalr;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageRendition;
+import fr.paris.lutece.plugins.galleryimage.business.ImageRenditionHome;
+import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+import fr.paris.lutece.portal.service.file.FileService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * ImageRenditionService : generates and selects the resized copies of the images
+ *
+ */
+public final class ImageRenditionService
+{
+    // PROPERTY
+    private static final String PROPERTY_RENDITION_WIDTHS = "galleryimage.rendition.widths";
+
+    // CONSTANTS
+    private static final String DEFAULT_RENDITION_WIDTHS = "120,240,480,960,1920";
+    private static final String WIDTHS_SEPARATOR = ",";
+    private static final String RENDITION_FILE_NAME = "rendition_%d_%d";
+
+    private static final ImageRenditionService _singleton = new ImageRenditionService( );
+
+    /**
+     * Private constructor
+     */
+    private ImageRenditionService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static ImageRenditionService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Generate and store the renditions of an image from its stored binary
+     * 
+     * @param image
+     *            the image, already created
+     * @param imageBytes
+     *            the stored binary of the image
+     */
+    public void createRenditions( Image image, byte [ ] imageBytes )
+    {
+        Dimension dimension;
+
+        try
+        {
+            dimension = ImageUtils.readDimension( imageBytes );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "ImageRenditionService:createRenditions( ): {} ", e.getMessage( ), e );
+            return;
+        }
+
+        if ( dimension == null )
+        {
+            AppLogService.error( "ImageRenditionService:createRenditions( ): unsupported format for image {}", image.getIdImage( ) );
+            return;
+        }
+
+        // The source and the widest rendition are held at once
+        long lBytes = 2 * ImageDecodeLimiter.estimateBytes( dimension.width, dimension.height );
+
+        try ( ImageDecodeLimiter.Permit permit = ImageDecodeLimiter.getInstance( ).acquire( lBytes, dimension.width, dimension.height ) )
+        {
+            BufferedImage source = ImageUtils.readImage( imageBytes );
+
+            if ( source == null )
+            {
+                AppLogService.error( "ImageRenditionService:createRenditions( ): unsupported format for image {}", image.getIdImage( ) );
+                return;
+            }
+
+            createRenditions( image, source );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "ImageRenditionService:createRenditions( ): {} ", e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Generate and store the renditions of an image already decoded. Each rendition is resized from the previous, wider, one. No rendition wider than
+     * the original is generated. The state of the galleries showing the image is left to the caller, which invalidates it once for all its images.
+     * 
+     * @param image
+     *            the image, already created
+     * @param sourceImage
+     *            the decoded image
+     */
+    public void createRenditions( Image image, BufferedImage sourceImage )
+    {
+        try
+        {
+            BufferedImage source = sourceImage;
+            List<Integer> listWidths = getRenditionWidths( );
+            Collections.sort( listWidths, Collections.reverseOrder( ) );
+
+            for ( int nWidth : listWidths )
+            {
+                if ( nWidth >= source.getWidth( ) )
+                {
+                    continue;
+                }
+
+                BufferedImage resizedImage = Scalr.resize( source, Scalr.Method.QUALITY, Scalr.Mode.FIT_TO_WIDTH, nWidth );
+                byte [ ] renditionBytes = ImageUtils.writeImage( resizedImage );
+
+                ImageRendition imageRendition = new ImageRendition( );
+                imageRendition.setIdImage( image.getIdImage( ) );
+                imageRendition.setWidth( resizedImage.getWidth( ) );
+                imageRendition.setHeight( resizedImage.getHeight( ) );
+                imageRendition.setIdFile( storeFile( renditionBytes, ImageUtils.getOutputMimeType( resizedImage ),
+                        String.format( RENDITION_FILE_NAME, image.getIdImage( ), nWidth ) ) );
+                ImageRenditionHome.create( imageRendition );
+
+                if ( source != sourceImage )
+                {
+                    source.flush( );
+                }
+                source = resizedImage;
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "ImageRenditionService:createRenditions( ): {} ", e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Remove the renditions of an image and their files. The state of the galleries showing the image is left to the caller
+     * 
+     * @param nIdImage
+     *            the image id
+     */
+    public void removeRenditions( int nIdImage )
+    {
+        for ( ImageRendition imageRendition : ImageRenditionHome.findByImageId( nIdImage ) )
+        {
+            FileService.getInstance( ).getFileStoreServiceProvider( ).delete( String.valueOf( imageRendition.getIdFile( ) ) );
+        }
+        ImageRenditionHome.removeByImageId( nIdImage );
+    }
+
+    /**
+     * Load the renditions of a list of images in one query and attach them to their image
+     * 
+     * @param listImages
+     *            the images
+     */
+    public void loadRenditions( List<Image> listImages )
+    {
+        Map<Integer, Image> mapImages = new HashMap<>( );
+
+        for ( Image image : listImages )
+        {
+            image.setListRenditions( new ArrayList<>( ) );
+            mapImages.put( image.getIdImage( ), image );
+        }
+
+        for ( ImageRendition imageRendition : ImageRenditionHome.findByImageIds( new ArrayList<>( mapImages.keySet( ) ) ) )
+        {
+            mapImages.get( imageRendition.getIdImage( ) ).getListRenditions( ).add( imageRendition );
+        }
+    }
+
+    /**
+     * Get the file to serve for an image displayed with a given width : the smallest rendition that covers the width, or the original
+     * 
+     * @param image
+     *            the image
+     * @param nWidth
+     *            the displayed width, the original is returned if not positive
+     * @return the file id
+     */
+    public int getIdFile( Image image, int nWidth )
+    {
+        // No rendition is wider than the original : the original is served when its known width doesn't exceed the displayed width
+        if ( nWidth > 0 && ( image.getWidth( ) <= 0 || image.getWidth( ) > nWidth ) )
+        {
+            ImageRendition imageRendition = ImageRenditionHome.findBestFit( image.getIdImage( ), nWidth );
+
+            if ( imageRendition != null )
+            {
+                return imageRendition.getIdFile( );
+            }
+        }
+
+        return image.getIdFile( );
+    }
+
+    /**
+     * Get the configured rendition widths
+     * 
+     * @return the list of widths
+     */
+    public static List<Integer> getRenditionWidths( )
+    {
+        List<Integer> listWidths = new ArrayList<>( );
+
+        for ( String strWidth : AppPropertiesService.getProperty( PROPERTY_RENDITION_WIDTHS, DEFAULT_RENDITION_WIDTHS ).split( WIDTHS_SEPARATOR ) )
+        {
+            String strTrimmedWidth = strWidth.trim( );
+
+            if ( StringUtils.isNumeric( strTrimmedWidth ) && !strTrimmedWidth.isEmpty( ) && !listWidths.contains( Integer.parseInt( strTrimmedWidth ) ) )
+            {
+                listWidths.add( Integer.parseInt( strTrimmedWidth ) );
+            }
+        }
+
+        return listWidths;
+    }
+
+    /**
+     * Store a binary in the file store
+     * 
+     * @param fileBytes
+     *            the binary
+     * @param strMimeType
+     *            the mime type
+     * @param strFileName
+     *            the file name
+     * @return the file id
+     */
+    private static int storeFile( byte [ ] fileBytes, String strMimeType, String strFileName )
+    {
+        File file = new File( );
+        file.setTitle( strFileName );
+        file.setMimeType( strMimeType );
+        file.setSize( fileBytes.length );
+
+        PhysicalFile physicalFile = new PhysicalFile( );
+        physicalFile.setValue( fileBytes );
+        file.setPhysicalFile( physicalFile );
+
+        return Integer.parseInt( FileService.getInstance( ).getFileStoreServiceProvider( ).storeFile( file ) );
+    }
+}
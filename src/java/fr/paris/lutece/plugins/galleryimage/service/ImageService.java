@@ -66,6 +66,7 @@ public class ImageService implements IImageService
     public void remove( int nImageId )
     {
         ImageHome.remove( nImageId );
+        PerceptualHashService.getInstance( ).remove( nImageId );
     }
 
     @Override
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
+import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
+import fr.paris.lutece.portal.service.image.ImageResource;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * ImageTransformService : resizes the images on demand. The requested dimensions are snapped to a fixed set of buckets so that the number of derivatives
+ * of an image is bounded, and the derivatives are kept in the disk cache.
+ *
+ */
+public final class ImageTransformService
+{
+    // PROPERTY
+    private static final String PROPERTY_BUCKETS = "galleryimage.transform.buckets";
+
+    // CONSTANTS
+    private static final String DEFAULT_BUCKETS = "120,240,360,480,720,960,1280,1920";
+    private static final String BUCKETS_SEPARATOR = ",";
+    private static final String KEY_PATTERN = "%d_%d_%d.%s";
+    private static final String EXTENSION_JPG = "jpg";
+    private static final String EXTENSION_PNG = "png";
+    private static final String MIME_TYPE_PNG = "image/png";
+    private static final String MIME_TYPE_JPG = "image/jpeg";
+
+    private static final ImageTransformService _singleton = new ImageTransformService( );
+
+    /**
+     * Private constructor
+     */
+    private ImageTransformService( )
+    {
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static ImageTransformService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Snap a requested dimension to the smallest bucket that covers it, or to the largest bucket
+     * 
+     * @param nSize
+     *            the requested dimension
+     * @return the bucket, or 0 if the dimension is not positive
+     */
+    public int snapToBucket( int nSize )
+    {
+        if ( nSize <= 0 )
+        {
+            return 0;
+        }
+
+        List<Integer> listBuckets = getBuckets( );
+        int nBucket = 0;
+
+        for ( int nCandidate : listBuckets )
+        {
+            nBucket = nCandidate;
+
+            if ( nCandidate >= nSize )
+            {
+                break;
+            }
+        }
+
+        return nBucket;
+    }
+
+    /**
+     * Get the image resized to fit the given bucketed dimensions. The source is the smallest rendition that covers the width, and the image is never
+     * enlarged.
+     * 
+     * @param image
+     *            the image
+     * @param nWidth
+     *            the bucketed width, ignored if not positive
+     * @param nHeight
+     *            the bucketed height, ignored if not positive
+     * @return the resized image, or null if the source file can not be read
+     * @throws IOException
+     *             if the image can not be decoded or encoded
+     */
+    public ImageResource getTransformedImage( Image image, int nWidth, int nHeight ) throws IOException
+    {
+        int nIdFile = ImageRenditionService.getInstance( ).getIdFile( image, nWidth );
+        DerivativeCacheService cache = DerivativeCacheService.getInstance( );
+
+        for ( String strExtension : new String [ ] {
+                EXTENSION_JPG, EXTENSION_PNG
+        } )
+        {
+            ImageResource imageResource = readCachedFile( cache, String.format( KEY_PATTERN, nIdFile, nWidth, nHeight, strExtension ) );
+
+            if ( imageResource != null )
+            {
+                return imageResource;
+            }
+        }
+
+        FileImagePublicService.init( );
+        ImageResource sourceResource = FileImagePublicService.getInstance( ).getImageResource( nIdFile );
+
+        if ( sourceResource == null || sourceResource.getImage( ) == null )
+        {
+            return null;
+        }
+
+        Dimension dimension = ImageUtils.readDimension( sourceResource.getImage( ) );
+
+        if ( dimension == null )
+        {
+            return null;
+        }
+
+        BufferedImage resizedImage;
+        byte [ ] resizedBytes;
+
+        // The source and its resized copy, at most as large, are held at once. The transformations are requested by the front office : they don't
+        // share the budget of the uploads
+        try ( ImageDecodeLimiter.Permit permit = ImageDecodeLimiter.getPublicInstance( ).acquire(
+                2 * ImageDecodeLimiter.estimateBytes( dimension.width, dimension.height ), dimension.width, dimension.height ) )
+        {
+            BufferedImage source = ImageUtils.readImage( sourceResource.getImage( ) );
+
+            if ( source == null )
+            {
+                return null;
+            }
+
+            int nTargetWidth = nWidth > 0 && nWidth < source.getWidth( ) ? nWidth : 0;
+            int nTargetHeight = nHeight > 0 && nHeight < source.getHeight( ) ? nHeight : 0;
+            resizedImage = ImageUtils.resizeImage( source, nTargetWidth, nTargetHeight );
+            resizedBytes = ImageUtils.writeImage( resizedImage );
+        }
+
+        String strKey = String.format( KEY_PATTERN, nIdFile, nWidth, nHeight, ImageUtils.getOutputFormat( resizedImage ) );
+        cache.put( strKey, resizedBytes );
+
+        ImageResource imageResource = new ImageResource( );
+        imageResource.setImage( resizedBytes );
+        imageResource.setMimeType( ImageUtils.getOutputMimeType( resizedImage ) );
+
+        return imageResource;
+    }
+
+    /**
+     * Read a derivative from the disk cache
+     * 
+     * @param cache
+     *            the disk cache
+     * @param strKey
+     *            the key of the derivative
+     * @return the derivative, or null if it is not cached
+     * @throws IOException
+     *             if the file can not be read
+     */
+    private static ImageResource readCachedFile( DerivativeCacheService cache, String strKey ) throws IOException
+    {
+        Path path = cache.get( strKey );
+
+        if ( path == null )
+        {
+            return null;
+        }
+
+        ImageResource imageResource = new ImageResource( );
+
+        try
+        {
+            imageResource.setImage( Files.readAllBytes( path ) );
+        }
+        catch( NoSuchFileException e )
+        {
+            // Evicted meanwhile
+            return null;
+        }
+        imageResource.setMimeType( strKey.endsWith( EXTENSION_PNG ) ? MIME_TYPE_PNG : MIME_TYPE_JPG );
+
+        return imageResource;
+    }
+
+    /**
+     * Get the configured buckets, in ascending order
+     * 
+     * @return the list of buckets
+     */
+    private static List<Integer> getBuckets( )
+    {
+        List<Integer> listBuckets = new ArrayList<>( );
+
+        for ( String strBucket : AppPropertiesService.getProperty( PROPERTY_BUCKETS, DEFAULT_BUCKETS ).split( BUCKETS_SEPARATOR ) )
+        {
+            String strTrimmedBucket = strBucket.trim( );
+
+            if ( StringUtils.isNumeric( strTrimmedBucket ) && !strTrimmedBucket.isEmpty( ) )
+            {
+                listBuckets.add( Integer.parseInt( strTrimmedBucket ) );
+            }
+        }
+        Collections.sort( listBuckets );
+
+        return listBuckets;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.fileupload.FileItem;
+
+/**
+ * 
+ * ImageUploadJob : a bulk upload processed in the background
+ *
+ */
+public class ImageUploadJob
+{
+    /**
+     * Status of a job
+     */
+    public enum Status
+    {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final String _strId;
+    private final int _nIdUser;
+    private final int _nIdGallery;
+    private final int _nWidth;
+    private final List<ImageUploadResult> _listResults = new CopyOnWriteArrayList<>( );
+    private volatile List<FileItem> _listFileItems;
+    private volatile Status _status = Status.PENDING;
+    private volatile long _lEndTime;
+
+    /**
+     * Constructor
+     * 
+     * @param strId
+     *            the job id
+     * @param nIdUser
+     *            the id of the admin user who uploaded the files
+     * @param listFileItems
+     *            the stored raw files
+     * @param nIdGallery
+     *            the gallery of the images, or 0
+     * @param nWidth
+     *            the width the images are resized to, ignored if not positive
+     */
+    public ImageUploadJob( String strId, int nIdUser, List<FileItem> listFileItems, int nIdGallery, int nWidth )
+    {
+        _strId = strId;
+        _nIdUser = nIdUser;
+        _listFileItems = new ArrayList<>( listFileItems );
+        _nIdGallery = nIdGallery;
+        _nWidth = nWidth;
+    }
+
+    /**
+     * @return the job id
+     */
+    public String getId( )
+    {
+        return _strId;
+    }
+
+    /**
+     * @return the id of the admin user who uploaded the files
+     */
+    public int getIdUser( )
+    {
+        return _nIdUser;
+    }
+
+    /**
+     * @return the gallery of the images, or 0
+     */
+    public int getIdGallery( )
+    {
+        return _nIdGallery;
+    }
+
+    /**
+     * @return the width the images are resized to
+     */
+    public int getWidth( )
+    {
+        return _nWidth;
+    }
+
+    /**
+     * @return the stored raw files, empty once the job is over
+     */
+    public List<FileItem> getFileItems( )
+    {
+        return _listFileItems;
+    }
+
+    /**
+     * Release the stored raw files
+     */
+    public void clearFileItems( )
+    {
+        for ( FileItem fileItem : _listFileItems )
+        {
+            fileItem.delete( );
+        }
+        _listFileItems = new ArrayList<>( );
+    }
+
+    /**
+     * @return the results of the files processed so far
+     */
+    public List<ImageUploadResult> getResults( )
+    {
+        return _listResults;
+    }
+
+    /**
+     * @return the status
+     */
+    public Status getStatus( )
+    {
+        return _status;
+    }
+
+    /**
+     * @param status
+     *            the status to set
+     */
+    public void setStatus( Status status )
+    {
+        _status = status;
+
+        if ( status == Status.DONE || status == Status.FAILED )
+        {
+            _lEndTime = System.currentTimeMillis( );
+        }
+    }
+
+    /**
+     * @return true if the job is over
+     */
+    public boolean isOver( )
+    {
+        return _status == Status.DONE || _status == Status.FAILED;
+    }
+
+    /**
+     * @return the time the job ended, or 0 if it is not over
+     */
+    public long getEndTime( )
+    {
+        return _lEndTime;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.io.IOUtils;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * ImageUploadJobService : stores the raw files of a bulk upload and processes them in the background. A bounded number of jobs run at once, the others
+ * wait in a bounded queue.
+ *
+ */
+public final class ImageUploadJobService
+{
+    // PROPERTIES
+    private static final String PROPERTY_THREADS = "galleryimage.upload.jobs.threads";
+    private static final String PROPERTY_QUEUE_CAPACITY = "galleryimage.upload.jobs.queueCapacity";
+    private static final String PROPERTY_RETENTION_SECONDS = "galleryimage.upload.jobs.retentionSeconds";
+
+    // CONSTANTS
+    private static final int DEFAULT_THREADS = 1;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10;
+    private static final int DEFAULT_RETENTION_SECONDS = 3600;
+    private static final String THREAD_NAME_PREFIX = "galleryimage-upload-job-";
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private static ImageUploadJobService _singleton;
+
+    private final ThreadPoolExecutor _executor;
+    private final Map<String, ImageUploadJob> _mapJobs = new ConcurrentHashMap<>( );
+    private final DiskFileItemFactory _fileItemFactory = new DiskFileItemFactory( 0, null );
+    private final long _lRetentionMillis;
+
+    /**
+     * Private constructor
+     */
+    private ImageUploadJobService( )
+    {
+        int nThreads = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_THREADS, DEFAULT_THREADS ) );
+        int nQueueCapacity = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY ) );
+        AtomicInteger nThreadCount = new AtomicInteger( );
+
+        _executor = new ThreadPoolExecutor( nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>( nQueueCapacity ), runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + nThreadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+
+            return thread;
+        } );
+        _lRetentionMillis = TimeUnit.SECONDS.toMillis( AppPropertiesService.getPropertyInt( PROPERTY_RETENTION_SECONDS, DEFAULT_RETENTION_SECONDS ) );
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static synchronized ImageUploadJobService getInstance( )
+    {
+        if ( _singleton == null )
+        {
+            _singleton = new ImageUploadJobService( );
+        }
+
+        return _singleton;
+    }
+
+    /**
+     * Stop the jobs, if the service has been started, and delete the files they have stored
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _singleton != null )
+        {
+            _singleton.stop( );
+        }
+    }
+
+    /**
+     * Stop the executor : the waiting jobs are dropped and the running ones are interrupted
+     */
+    private void stop( )
+    {
+        _executor.shutdownNow( );
+
+        try
+        {
+            if ( !_executor.awaitTermination( SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                AppLogService.error( "ImageUploadJobService:stop( ): the upload jobs didn't stop in time" );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+
+        _mapJobs.values( ).forEach( ImageUploadJob::clearFileItems );
+        _mapJobs.clear( );
+    }
+
+    /**
+     * Store the raw uploaded files and queue their processing
+     * 
+     * @param nIdUser
+     *            the id of the admin user who uploaded the files
+     * @param listFileItems
+     *            the uploaded files, images or ZIP archives of images
+     * @param nIdGallery
+     *            the gallery of the images, or 0
+     * @param nWidth
+     *            the width the images are resized to, ignored if not positive
+     * @return the job, or null if the files can't be stored or if the queue is full
+     */
+    public ImageUploadJob submit( int nIdUser, List<FileItem> listFileItems, int nIdGallery, int nWidth )
+    {
+        purge( );
+
+        List<FileItem> listStoredFileItems = new ArrayList<>( );
+
+        try
+        {
+            for ( FileItem fileItem : listFileItems )
+            {
+                if ( fileItem != null && fileItem.getSize( ) > 0 )
+                {
+                    listStoredFileItems.add( store( fileItem ) );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "ImageUploadJobService:submit( ): {} ", e.getMessage( ), e );
+            listStoredFileItems.forEach( FileItem::delete );
+
+            return null;
+        }
+
+        ImageUploadJob job = new ImageUploadJob( UUID.randomUUID( ).toString( ), nIdUser, listStoredFileItems, nIdGallery, nWidth );
+
+        try
+        {
+            _mapJobs.put( job.getId( ), job );
+            _executor.execute( ( ) -> run( job ) );
+        }
+        catch( RejectedExecutionException e )
+        {
+            AppLogService.error( "ImageUploadJobService:submit( ): the queue of the upload jobs is full" );
+            _mapJobs.remove( job.getId( ) );
+            job.clearFileItems( );
+
+            return null;
+        }
+
+        return job;
+    }
+
+    /**
+     * Get a job of a user
+     * 
+     * @param strIdJob
+     *            the job id
+     * @param nIdUser
+     *            the id of the admin user
+     * @return the job, or null if it doesn't exist or belongs to another user
+     */
+    public ImageUploadJob getJob( String strIdJob, int nIdUser )
+    {
+        ImageUploadJob job = ( strIdJob != null ) ? _mapJobs.get( strIdJob ) : null;
+
+        return ( job != null && job.getIdUser( ) == nIdUser ) ? job : null;
+    }
+
+    /**
+     * Process a job. Runs in the executor.
+     * 
+     * @param job
+     *            the job
+     */
+    private static void run( ImageUploadJob job )
+    {
+        job.setStatus( ImageUploadJob.Status.RUNNING );
+
+        try
+        {
+            ImageUploadService.getInstance( ).upload( job.getFileItems( ), job.getIdGallery( ), job.getWidth( ), job.getResults( ) );
+            job.setStatus( ImageUploadJob.Status.DONE );
+        }
+        catch( RuntimeException e )
+        {
+            AppLogService.error( "ImageUploadJobService:run( ): {} ", e.getMessage( ), e );
+            job.setStatus( ImageUploadJob.Status.FAILED );
+        }
+        finally
+        {
+            job.clearFileItems( );
+        }
+    }
+
+    /**
+     * Copy an uploaded file to a temporary file that outlives the request
+     * 
+     * @param fileItem
+     *            the uploaded file
+     * @return the copy
+     * @throws IOException
+     *             if the file can't be copied
+     */
+    private FileItem store( FileItem fileItem ) throws IOException
+    {
+        FileItem storedFileItem = _fileItemFactory.createItem( fileItem.getFieldName( ), fileItem.getContentType( ), false, fileItem.getName( ) );
+
+        try ( InputStream in = fileItem.getInputStream( ); OutputStream out = storedFileItem.getOutputStream( ) )
+        {
+            IOUtils.copy( in, out );
+        }
+
+        return storedFileItem;
+    }
+
+    /**
+     * Forget the jobs that ended before the retention delay
+     */
+    private void purge( )
+    {
+        long lLimit = System.currentTimeMillis( ) - _lRetentionMillis;
+
+        _mapJobs.values( ).removeIf( job -> job.isOver( ) && job.getEndTime( ) < lLimit );
+    }
+}
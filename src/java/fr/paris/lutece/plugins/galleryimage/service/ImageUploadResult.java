@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * ImageUploadResult : outcome of the upload of one file of a bulk upload
+ *
+ */
+public class ImageUploadResult implements Serializable
+{
+    private static final long serialVersionUID = 4530187965216387041L;
+
+    /**
+     * Status of an uploaded file
+     */
+    public enum Status
+    {
+        CREATED,
+        REJECTED,
+        FAILED
+    }
+
+    private String _strFileName;
+    private volatile Status _status;
+    private volatile String _strMessageKey;
+    private volatile int _nIdImage;
+    private volatile List<Integer> _listSimilarImages = new ArrayList<>( );
+
+    /**
+     * Constructor
+     * 
+     * @param strFileName
+     *            the name of the uploaded file
+     */
+    public ImageUploadResult( String strFileName )
+    {
+        _strFileName = strFileName;
+    }
+
+    /**
+     * @return the file name
+     */
+    public String getFileName( )
+    {
+        return _strFileName;
+    }
+
+    /**
+     * @param strFileName
+     *            the file name to set
+     */
+    public void setFileName( String strFileName )
+    {
+        _strFileName = strFileName;
+    }
+
+    /**
+     * @return the status
+     */
+    public Status getStatus( )
+    {
+        return _status;
+    }
+
+    /**
+     * @param status
+     *            the status to set
+     */
+    public void setStatus( Status status )
+    {
+        _status = status;
+    }
+
+    /**
+     * @return the i18n key of the message explaining the status
+     */
+    public String getMessageKey( )
+    {
+        return _strMessageKey;
+    }
+
+    /**
+     * @param strMessageKey
+     *            the i18n key of the message to set
+     */
+    public void setMessageKey( String strMessageKey )
+    {
+        _strMessageKey = strMessageKey;
+    }
+
+    /**
+     * @return the id of the created image
+     */
+    public int getIdImage( )
+    {
+        return _nIdImage;
+    }
+
+    /**
+     * @param nIdImage
+     *            the id of the created image to set
+     */
+    public void setIdImage( int nIdImage )
+    {
+        _nIdImage = nIdImage;
+    }
+
+    /**
+     * @return the ids of the images of the library similar to the created image
+     */
+    public List<Integer> getSimilarImages( )
+    {
+        return _listSimilarImages;
+    }
+
+    /**
+     * @param listSimilarImages
+     *            the ids of the similar images to set
+     */
+    public void setSimilarImages( List<Integer> listSimilarImages )
+    {
+        _listSimilarImages = listSimilarImages;
+    }
+
+    /**
+     * @return true if the image has been created
+     */
+    public boolean isCreated( )
+    {
+        return _status == Status.CREATED;
+    }
+}
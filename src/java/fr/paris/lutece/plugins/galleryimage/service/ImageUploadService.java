@@ -0,0 +1,754 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.util.ImageDecodeTimeoutException;
+import fr.paris.lutece.plugins.galleryimage.util.ImagePipeline;
+import fr.paris.lutece.plugins.galleryimage.util.ImageTooLargeException;
+import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
+import fr.paris.lutece.plugins.galleryimage.util.ProcessedImage;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * 
+ * ImageUploadService : creates images from several uploaded files or ZIP archives. The files are sanitized, resized and stored by a bounded pool of
+ * workers, and the images are created in batches.
+ *
+ */
+public final class ImageUploadService
+{
+    // PROPERTIES
+    private static final String PROPERTY_THREADS = "galleryimage.upload.threads";
+    private static final String PROPERTY_MAX_IN_FLIGHT = "galleryimage.upload.maxInFlight";
+    private static final String PROPERTY_BATCH_SIZE = "galleryimage.upload.batchSize";
+    private static final String PROPERTY_MAX_FILES = "galleryimage.upload.maxFiles";
+    private static final String PROPERTY_MAX_ENTRY_SIZE = "galleryimage.upload.maxEntrySize";
+
+    // MESSAGES
+    private static final String MESSAGE_NOT_SAFE = "galleryimage.error.file_not_safe";
+    private static final String MESSAGE_TOO_LARGE = "galleryimage.upload.error.too_large";
+    private static final String MESSAGE_TOO_MANY_PIXELS = "galleryimage.upload.error.too_many_pixels";
+    private static final String MESSAGE_TOO_MANY_FILES = "galleryimage.upload.error.too_many_files";
+    private static final String MESSAGE_INVALID_ARCHIVE = "galleryimage.upload.error.invalid_archive";
+    private static final String MESSAGE_FAILED = "galleryimage.upload.error.failed";
+    private static final String MESSAGE_BUSY = "galleryimage.upload.error.busy";
+
+    // CONSTANTS
+    private static final int DEFAULT_THREADS = 4;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_MAX_FILES = 1000;
+    private static final int DEFAULT_MAX_ENTRY_SIZE = 20971520;
+    private static final int BUFFER_SIZE = 8192;
+    private static final String ZIP_EXTENSION = "zip";
+    private static final String [ ] ZIP_MIME_TYPES = {
+            "application/zip", "application/x-zip-compressed"
+    };
+    private static final String ZIP_METADATA_DIRECTORY = "__MACOSX/";
+    private static final String HIDDEN_FILE_PREFIX = ".";
+    private static final String THREAD_NAME_PREFIX = "galleryimage-upload-";
+
+    private static ImageUploadService _singleton;
+
+    private final ExecutorService _executor;
+    private final Set<FileItem> _setTemporaryFiles = ConcurrentHashMap.newKeySet( );
+    private final int _nMaxInFlight;
+    private final int _nBatchSize;
+    private final int _nMaxFiles;
+    private final int _nMaxEntrySize;
+
+    /**
+     * Private constructor
+     */
+    private ImageUploadService( )
+    {
+        int nThreads = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_THREADS, DEFAULT_THREADS ) );
+        AtomicInteger nThreadCount = new AtomicInteger( );
+
+        _executor = Executors.newFixedThreadPool( nThreads, runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + nThreadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+
+            return thread;
+        } );
+        _nMaxInFlight = Math.max( nThreads, AppPropertiesService.getPropertyInt( PROPERTY_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT ) );
+        _nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+        _nMaxFiles = AppPropertiesService.getPropertyInt( PROPERTY_MAX_FILES, DEFAULT_MAX_FILES );
+        _nMaxEntrySize = AppPropertiesService.getPropertyInt( PROPERTY_MAX_ENTRY_SIZE, DEFAULT_MAX_ENTRY_SIZE );
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static synchronized ImageUploadService getInstance( )
+    {
+        if ( _singleton == null )
+        {
+            _singleton = new ImageUploadService( );
+        }
+
+        return _singleton;
+    }
+
+    /**
+     * Stop the pool, if it has been started, and delete the temporary files of the uploads in progress
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _singleton != null )
+        {
+            _singleton.stop( );
+        }
+    }
+
+    /**
+     * Stop the pool : the waiting tasks are cancelled and the running ones are interrupted
+     */
+    private void stop( )
+    {
+        for ( Runnable task : _executor.shutdownNow( ) )
+        {
+            // The uploads waiting for a cancelled task go on
+            ( (Future<?>) task ).cancel( false );
+        }
+
+        try
+        {
+            if ( !_executor.awaitTermination( SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                AppLogService.error( "ImageUploadService:stop( ): the upload pool didn't stop in time" );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+
+        for ( FileItem fileItem : _setTemporaryFiles )
+        {
+            fileItem.delete( );
+        }
+        _setTemporaryFiles.clear( );
+    }
+
+    /**
+     * Create the images of a bulk upload. The ZIP archives are read entry by entry, without being extracted. The method returns once every file has been
+     * processed.
+     * 
+     * @param listFileItems
+     *            the uploaded files, images or ZIP archives of images
+     * @param nIdGallery
+     *            the gallery of the images, or 0
+     * @param nWidth
+     *            the width the images are resized to, ignored if not positive
+     * @return the result of each file, in the order of the upload
+     */
+    public List<ImageUploadResult> upload( List<FileItem> listFileItems, int nIdGallery, int nWidth )
+    {
+        return upload( listFileItems, nIdGallery, nWidth, new ArrayList<>( ) );
+    }
+
+    /**
+     * Create the images of a bulk upload, adding the result of each file to a given list as soon as the file is read. The statuses of the results are
+     * set once the files are processed.
+     * 
+     * @param listFileItems
+     *            the uploaded files, images or ZIP archives of images
+     * @param nIdGallery
+     *            the gallery of the images, or 0
+     * @param nWidth
+     *            the width the images are resized to, ignored if not positive
+     * @param listResults
+     *            the list the results are added to, in the order of the upload
+     * @return the list of the results
+     */
+    public List<ImageUploadResult> upload( List<FileItem> listFileItems, int nIdGallery, int nWidth, List<ImageUploadResult> listResults )
+    {
+        UploadRun run = new UploadRun( nIdGallery, nWidth, listResults );
+
+        for ( FileItem fileItem : listFileItems )
+        {
+            if ( fileItem == null || fileItem.getSize( ) == 0 )
+            {
+                continue;
+            }
+
+            if ( isArchive( fileItem ) )
+            {
+                run.submitArchive( fileItem );
+            }
+            else
+            {
+                run.submit( FilenameUtils.getName( fileItem.getName( ) ), fileItem, false );
+            }
+        }
+
+        return run.finish( );
+    }
+
+    /**
+     * Check if an uploaded file is a ZIP archive
+     * 
+     * @param fileItem
+     *            the uploaded file
+     * @return true if the file is a ZIP archive
+     */
+    private static boolean isArchive( FileItem fileItem )
+    {
+        return ZIP_EXTENSION.equalsIgnoreCase( FilenameUtils.getExtension( fileItem.getName( ) ) )
+                || StringUtils.equalsAnyIgnoreCase( fileItem.getContentType( ), ZIP_MIME_TYPES );
+    }
+
+    /**
+     * An image of an upload, from its file to its creation
+     */
+    private static final class PendingImage
+    {
+        private final ImageUploadResult _result;
+        private boolean _bTemporaryFile;
+        private FileItem _fileItem;
+        private Image _image;
+        private Future<?> _future;
+
+        /**
+         * Constructor
+         * 
+         * @param result
+         *            the result reported for the file
+         * @param fileItem
+         *            the file
+         * @param bTemporaryFile
+         *            true if the file has been created by the upload and has to be deleted
+         */
+        private PendingImage( ImageUploadResult result, FileItem fileItem, boolean bTemporaryFile )
+        {
+            _result = result;
+            _fileItem = fileItem;
+            _bTemporaryFile = bTemporaryFile;
+        }
+    }
+
+    /**
+     * A bulk upload : keeps at most a bounded number of files in the pool, and gathers the prepared images in batches
+     */
+    private final class UploadRun
+    {
+        private final int _nIdGallery;
+        private final int _nWidth;
+        private final List<ImageUploadResult> _listResults;
+        private final Deque<PendingImage> _queuePending = new ArrayDeque<>( );
+        private final List<PendingImage> _listBatch = new ArrayList<>( );
+        private final Deque<Future<?>> _queueRenditions = new ArrayDeque<>( );
+        private final List<Image> _listCreatedImages = new ArrayList<>( );
+
+        /**
+         * Constructor
+         * 
+         * @param nIdGallery
+         *            the gallery of the images, or 0
+         * @param nWidth
+         *            the width the images are resized to, ignored if not positive
+         * @param listResults
+         *            the list the results are added to
+         */
+        private UploadRun( int nIdGallery, int nWidth, List<ImageUploadResult> listResults )
+        {
+            _nIdGallery = nIdGallery;
+            _nWidth = nWidth;
+            _listResults = listResults;
+        }
+
+        /**
+         * Submit each image of a ZIP archive, reading it entry by entry
+         * 
+         * @param fileItem
+         *            the archive
+         */
+        private void submitArchive( FileItem fileItem )
+        {
+            try ( ZipInputStream zipInputStream = new ZipInputStream( fileItem.getInputStream( ) ) )
+            {
+                ZipEntry zipEntry;
+
+                while ( ( zipEntry = zipInputStream.getNextEntry( ) ) != null )
+                {
+                    String strFileName = FilenameUtils.getName( zipEntry.getName( ) );
+
+                    if ( zipEntry.isDirectory( ) || zipEntry.getName( ).startsWith( ZIP_METADATA_DIRECTORY ) || strFileName.startsWith( HIDDEN_FILE_PREFIX ) )
+                    {
+                        continue;
+                    }
+
+                    byte [ ] content = readEntry( zipInputStream );
+
+                    if ( content == null )
+                    {
+                        report( strFileName, ImageUploadResult.Status.REJECTED, MESSAGE_TOO_LARGE );
+                    }
+                    else
+                    {
+                        submit( strFileName,
+                                ImageUtils.createFileItem( content, fileItem.getFieldName( ), URLConnection.guessContentTypeFromName( strFileName ), strFileName ),
+                                true );
+                    }
+                }
+            }
+            catch( IOException | IllegalArgumentException e )
+            {
+                AppLogService.error( "ImageUploadService:submitArchive( ): {} ", e.getMessage( ), e );
+                report( FilenameUtils.getName( fileItem.getName( ) ), ImageUploadResult.Status.FAILED, MESSAGE_INVALID_ARCHIVE );
+            }
+        }
+
+        /**
+         * Read the current entry of an archive
+         * 
+         * @param inputStream
+         *            the archive, positioned on the entry
+         * @return the content of the entry, or null if it exceeds the maximum size
+         * @throws IOException
+         *             if the archive can't be read
+         */
+        private byte [ ] readEntry( InputStream inputStream ) throws IOException
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream( );
+            byte [ ] buffer = new byte [ BUFFER_SIZE ];
+            int nRead;
+
+            while ( ( nRead = inputStream.read( buffer ) ) != -1 )
+            {
+                if ( out.size( ) + nRead > _nMaxEntrySize )
+                {
+                    return null;
+                }
+                out.write( buffer, 0, nRead );
+            }
+
+            return out.toByteArray( );
+        }
+
+        /**
+         * Submit a file to the pool, once the number of files in progress is under the limit
+         * 
+         * @param strFileName
+         *            the file name
+         * @param fileItem
+         *            the file
+         * @param bTemporaryFile
+         *            true if the file has been created by the upload and has to be deleted
+         */
+        private void submit( String strFileName, FileItem fileItem, boolean bTemporaryFile )
+        {
+            ImageUploadResult result = report( strFileName, null, null );
+
+            if ( _listResults.size( ) > _nMaxFiles )
+            {
+                result.setStatus( ImageUploadResult.Status.REJECTED );
+                result.setMessageKey( MESSAGE_TOO_MANY_FILES );
+                deleteTemporaryFile( fileItem, bTemporaryFile );
+
+                return;
+            }
+
+            if ( bTemporaryFile )
+            {
+                _setTemporaryFiles.add( fileItem );
+            }
+
+            PendingImage pendingImage = new PendingImage( result, fileItem, bTemporaryFile );
+
+            try
+            {
+                pendingImage._future = _executor.submit( ( ) -> prepare( pendingImage ) );
+            }
+            catch( RejectedExecutionException e )
+            {
+                // The pool is stopped
+                result.setStatus( ImageUploadResult.Status.FAILED );
+                result.setMessageKey( MESSAGE_FAILED );
+                deleteTemporaryFile( fileItem, bTemporaryFile );
+
+                return;
+            }
+            _queuePending.add( pendingImage );
+
+            drain( false );
+        }
+
+        /**
+         * Add a result to the report
+         * 
+         * @param strFileName
+         *            the file name
+         * @param status
+         *            the status
+         * @param strMessageKey
+         *            the message key
+         * @return the result
+         */
+        private ImageUploadResult report( String strFileName, ImageUploadResult.Status status, String strMessageKey )
+        {
+            ImageUploadResult result = new ImageUploadResult( strFileName );
+            result.setStatus( status );
+            result.setMessageKey( strMessageKey );
+            _listResults.add( result );
+
+            return result;
+        }
+
+        /**
+         * Sanitize, resize and store the file of an image. Runs in the pool.
+         * 
+         * @param pendingImage
+         *            the image
+         */
+        private void prepare( PendingImage pendingImage )
+        {
+            FileItem fileItem = pendingImage._fileItem;
+            ProcessedImage processedImage;
+
+            try
+            {
+                processedImage = ImagePipeline.process( fileItem, _nWidth );
+            }
+            catch( ImageDecodeTimeoutException e )
+            {
+                AppLogService.error( "ImageUploadService:prepare( ): {} ", e.getMessage( ) );
+                pendingImage._result.setStatus( ImageUploadResult.Status.FAILED );
+                pendingImage._result.setMessageKey( MESSAGE_BUSY );
+                deleteTemporaryFile( fileItem, pendingImage._bTemporaryFile );
+
+                return;
+            }
+            catch( ImageTooLargeException e )
+            {
+                AppLogService.error( "ImageUploadService:prepare( ): {} ", e.getMessage( ) );
+                pendingImage._result.setStatus( ImageUploadResult.Status.REJECTED );
+                pendingImage._result.setMessageKey( MESSAGE_TOO_MANY_PIXELS );
+                deleteTemporaryFile( fileItem, pendingImage._bTemporaryFile );
+
+                return;
+            }
+            catch( IOException | RuntimeException e )
+            {
+                AppLogService.error( "Error during Image file processing ! {}", e.getMessage( ), e );
+                pendingImage._result.setStatus( ImageUploadResult.Status.REJECTED );
+                pendingImage._result.setMessageKey( MESSAGE_NOT_SAFE );
+                deleteTemporaryFile( fileItem, pendingImage._bTemporaryFile );
+
+                return;
+            }
+
+            // The decode memory is held until the hash and the placeholder are computed from the sanitized image
+            try
+            {
+                // Only the sanitized image is stored, the uploaded file is released as soon as possible
+                deleteTemporaryFile( fileItem, pendingImage._bTemporaryFile );
+                fileItem = processedImage.toFileItem( fileItem );
+                _setTemporaryFiles.add( fileItem );
+                pendingImage._fileItem = fileItem;
+                pendingImage._bTemporaryFile = true;
+
+                Image image = new Image( );
+                image.setTitle( FilenameUtils.getBaseName( pendingImage._result.getFileName( ) ) );
+                image.setDescription( StringUtils.EMPTY );
+                image.setIdGallery( _nIdGallery );
+                image.setPerceptualHash( ImageUtils.perceptualHash( processedImage.getImage( ) ) );
+                image.setPlaceholder( processedImage.createPlaceholder( ) );
+                image.setMetadata( processedImage );
+                image.setIdFile( ImageFileService.getInstance( ).store( fileItem ) );
+
+                pendingImage._image = image;
+            }
+            finally
+            {
+                processedImage.close( );
+            }
+        }
+
+        /**
+         * Collect the images whose preparation is over, in the order of submission. Waits for the oldest ones while too many files are in progress.
+         * 
+         * @param bAll
+         *            true to wait for all the files
+         */
+        private void drain( boolean bAll )
+        {
+            while ( !_queuePending.isEmpty( ) && ( bAll || _queuePending.size( ) > _nMaxInFlight || _queuePending.peek( )._future.isDone( ) ) )
+            {
+                collect( _queuePending.poll( ) );
+            }
+
+            while ( !_queueRenditions.isEmpty( ) && ( bAll || _queueRenditions.size( ) > _nMaxInFlight || _queueRenditions.peek( ).isDone( ) ) )
+            {
+                await( _queueRenditions.poll( ) );
+            }
+        }
+
+        /**
+         * Wait for the preparation of an image, and add it to the current batch
+         * 
+         * @param pendingImage
+         *            the image
+         */
+        private void collect( PendingImage pendingImage )
+        {
+            if ( !await( pendingImage._future ) )
+            {
+                pendingImage._result.setStatus( ImageUploadResult.Status.FAILED );
+                pendingImage._result.setMessageKey( MESSAGE_FAILED );
+                deleteTemporaryFile( pendingImage._fileItem, pendingImage._bTemporaryFile );
+
+                return;
+            }
+
+            if ( pendingImage._image != null )
+            {
+                _listBatch.add( pendingImage );
+
+                if ( _listBatch.size( ) >= _nBatchSize )
+                {
+                    flush( );
+                }
+            }
+        }
+
+        /**
+         * Create the images of the current batch, and submit the generation of their renditions to the pool. If the batch can't be created, its stored
+         * files are released and its images are reported as failed, the next batches go on.
+         */
+        private void flush( )
+        {
+            if ( _listBatch.isEmpty( ) )
+            {
+                return;
+            }
+
+            List<Image> listImages = new ArrayList<>( );
+
+            for ( PendingImage pendingImage : _listBatch )
+            {
+                listImages.add( pendingImage._image );
+            }
+
+            if ( !createBatch( listImages ) )
+            {
+                for ( PendingImage pendingImage : _listBatch )
+                {
+                    releaseFile( pendingImage._image.getIdFile( ) );
+                    pendingImage._result.setStatus( ImageUploadResult.Status.FAILED );
+                    pendingImage._result.setMessageKey( MESSAGE_FAILED );
+                    deleteTemporaryFile( pendingImage._fileItem, pendingImage._bTemporaryFile );
+                }
+
+                _listBatch.clear( );
+
+                return;
+            }
+
+            for ( PendingImage pendingImage : _listBatch )
+            {
+                pendingImage._result.setSimilarImages( PerceptualHashService.getInstance( ).findSimilar( pendingImage._image.getIdImage( ) ) );
+                pendingImage._result.setStatus( ImageUploadResult.Status.CREATED );
+                pendingImage._result.setIdImage( pendingImage._image.getIdImage( ) );
+                _listCreatedImages.add( pendingImage._image );
+
+                try
+                {
+                    _queueRenditions.add( _executor.submit( ( ) -> {
+                        try
+                        {
+                            ImageRenditionService.getInstance( ).createRenditions( pendingImage._image, pendingImage._fileItem.get( ) );
+                        }
+                        finally
+                        {
+                            deleteTemporaryFile( pendingImage._fileItem, pendingImage._bTemporaryFile );
+                        }
+                    } ) );
+                }
+                catch( RejectedExecutionException e )
+                {
+                    // The pool is stopped : the image is created, without renditions
+                    deleteTemporaryFile( pendingImage._fileItem, pendingImage._bTemporaryFile );
+                }
+            }
+
+            _listBatch.clear( );
+        }
+
+        /**
+         * Create the images of a batch and store their perceptual hashes in a transaction, so that a failed batch leaves no image behind
+         * 
+         * @param listImages
+         *            the images
+         * @return true if the images have been created
+         */
+        private boolean createBatch( List<Image> listImages )
+        {
+            Plugin plugin = GalleryImagePlugin.getPlugin( );
+            TransactionManager.beginTransaction( plugin );
+
+            try
+            {
+                ImageHome.createBatch( listImages );
+                ImageHome.updatePerceptualHashes( listImages );
+                TransactionManager.commitTransaction( plugin );
+            }
+            catch( Exception e )
+            {
+                TransactionManager.rollBack( plugin );
+                AppLogService.error( "ImageUploadService:createBatch( ): {} ", e.getMessage( ), e );
+
+                return false;
+            }
+
+            // Indexed once committed, so that a rolled back batch leaves no id in the index
+            PerceptualHashService.getInstance( ).index( listImages );
+
+            return true;
+        }
+
+        /**
+         * Release the stored file of an image that couldn't be created
+         * 
+         * @param nIdFile
+         *            the file id
+         */
+        private void releaseFile( int nIdFile )
+        {
+            try
+            {
+                ImageFileService.getInstance( ).release( nIdFile );
+            }
+            catch( RuntimeException e )
+            {
+                AppLogService.error( "ImageUploadService:releaseFile( ): {} ", e.getMessage( ), e );
+            }
+        }
+
+        /**
+         * Wait for all the files, and create the last batch
+         * 
+         * @return the result of each file
+         */
+        private List<ImageUploadResult> finish( )
+        {
+            drain( true );
+            flush( );
+            drain( true );
+
+            // Once for the whole upload, the galleries the new images may have been linked to meanwhile get their renditions
+            GalleryStateService.getInstance( ).invalidateImages( _listCreatedImages );
+
+            return _listResults;
+        }
+    }
+
+    /**
+     * Wait for a task of the pool
+     * 
+     * @param future
+     *            the task
+     * @return true if the task succeeded
+     */
+    private static boolean await( Future<?> future )
+    {
+        try
+        {
+            future.get( );
+
+            return true;
+        }
+        catch( ExecutionException e )
+        {
+            AppLogService.error( "ImageUploadService:await( ): {} ", e.getMessage( ), e );
+        }
+        catch( InterruptedException e )
+        {
+            AppLogService.error( "ImageUploadService:await( ): interrupted", e );
+            Thread.currentThread( ).interrupt( );
+        }
+
+        return false;
+    }
+
+    /**
+     * Delete the file created by the upload
+     * 
+     * @param fileItem
+     *            the file
+     * @param bTemporaryFile
+     *            true if the file has been created by the upload
+     */
+    private void deleteTemporaryFile( FileItem fileItem, boolean bTemporaryFile )
+    {
+        if ( bTemporaryFile && fileItem != null )
+        {
+            fileItem.delete( );
+            _setTemporaryFiles.remove( fileItem );
+        }
+    }
+}
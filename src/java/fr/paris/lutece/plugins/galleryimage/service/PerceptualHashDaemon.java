@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
+import fr.paris.lutece.portal.service.image.ImageResource;
+
+/**
+ * 
+ * PerceptualHashDaemon : computes the perceptual hash of the images created before the hashes were computed at upload, then loads the index of the
+ * hashes again
+ *
+ */
+public class PerceptualHashDaemon extends AbstractImageBackfillDaemon
+{
+    private static final String PROPERTY_BATCH_SIZE = "galleryimage.perceptualHash.daemon.batchSize";
+
+    /**
+     * Constructor
+     */
+    public PerceptualHashDaemon( )
+    {
+        super( PROPERTY_BATCH_SIZE );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Image> getImages( int nIdImageAfter, int nLimit )
+    {
+        return ImageHome.getImagesWithoutPerceptualHash( nIdImageAfter, nLimit );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute( Image image, ImageResource imageResource, Dimension dimension, BufferedImage decodedImage )
+    {
+        image.setPerceptualHash( ImageUtils.perceptualHash( decodedImage ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void store( List<Image> listImages )
+    {
+        ImageHome.updatePerceptualHashes( listImages );
+        PerceptualHashService.getInstance( ).index( listImages );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String complete( )
+    {
+        // The removed images leave no trace in the index once it is loaded again
+        PerceptualHashService.getInstance( ).reload( );
+
+        return ", indexed : " + PerceptualHashService.getInstance( ).getIndexedCount( );
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * PerceptualHashService : finds the near-duplicates of an image by comparing the perceptual hashes of the images. The hashes are kept in memory, in a
+ * multi-index table : the 64 bits are split in 8 bytes, and each byte indexes the images by its value. Two hashes differing by less than 8 bits share
+ * at least one byte, so that only the images sharing a byte with the searched hash are compared.
+ *
+ */
+public final class PerceptualHashService
+{
+    // PROPERTIES
+    private static final String PROPERTY_MAX_DISTANCE = "galleryimage.perceptualHash.maxDistance";
+    private static final String PROPERTY_MAX_RESULTS = "galleryimage.perceptualHash.maxResults";
+
+    // CONSTANTS
+    private static final int DEFAULT_MAX_DISTANCE = 6;
+    private static final int DEFAULT_MAX_RESULTS = 20;
+    private static final int SEGMENTS = 8;
+    private static final int SEGMENT_BITS = 8;
+    private static final int SEGMENT_VALUES = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_VALUES - 1;
+
+    private static PerceptualHashService _singleton;
+
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock( );
+    private final int _nMaxDistance;
+    private final int _nMaxResults;
+    private HashIndex _index;
+
+    /**
+     * Private constructor
+     */
+    private PerceptualHashService( )
+    {
+        _nMaxDistance = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_MAX_DISTANCE, DEFAULT_MAX_DISTANCE ) );
+        _nMaxResults = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_MAX_RESULTS, DEFAULT_MAX_RESULTS ) );
+    }
+
+    /**
+     * Returns the unique instance
+     * 
+     * @return The unique instance
+     */
+    public static synchronized PerceptualHashService getInstance( )
+    {
+        if ( _singleton == null )
+        {
+            _singleton = new PerceptualHashService( );
+        }
+
+        return _singleton;
+    }
+
+    /**
+     * Get the number of differing bits between two hashes
+     * 
+     * @param lHash1
+     *            the first hash
+     * @param lHash2
+     *            the second hash
+     * @return the distance, from 0 to 64
+     */
+    public static int distance( long lHash1, long lHash2 )
+    {
+        return Long.bitCount( lHash1 ^ lHash2 );
+    }
+
+    /**
+     * Store the perceptual hash of an image and index it. Must not be called within a transaction : the index would keep the hash of a rolled back
+     * image.
+     * 
+     * @param nIdImage
+     *            the image id
+     * @param lHash
+     *            the perceptual hash of the image
+     */
+    public void store( int nIdImage, long lHash )
+    {
+        ImageHome.updatePerceptualHash( nIdImage, lHash );
+        index( nIdImage, lHash );
+    }
+
+    /**
+     * Index the hashes of several images once they are committed. The images without hash are ignored.
+     * 
+     * @param listImages
+     *            the images
+     */
+    public void index( List<Image> listImages )
+    {
+        for ( Image image : listImages )
+        {
+            if ( image.getPerceptualHash( ) != null )
+            {
+                index( image.getIdImage( ), image.getPerceptualHash( ) );
+            }
+        }
+    }
+
+    /**
+     * Index the hash of an image, replacing its previous hash. Nothing is done while the index is not loaded : it is loaded from the database.
+     * 
+     * @param nIdImage
+     *            the image id
+     * @param lHash
+     *            the perceptual hash of the image
+     */
+    public void index( int nIdImage, long lHash )
+    {
+        _lock.writeLock( ).lock( );
+
+        try
+        {
+            if ( _index != null )
+            {
+                _index.put( nIdImage, lHash );
+            }
+        }
+        finally
+        {
+            _lock.writeLock( ).unlock( );
+        }
+    }
+
+    /**
+     * Remove an image from the index
+     * 
+     * @param nIdImage
+     *            the image id
+     */
+    public void remove( int nIdImage )
+    {
+        _lock.writeLock( ).lock( );
+
+        try
+        {
+            if ( _index != null )
+            {
+                _index.remove( nIdImage );
+            }
+        }
+        finally
+        {
+            _lock.writeLock( ).unlock( );
+        }
+    }
+
+    /**
+     * Find the images close to a given image
+     * 
+     * @param nIdImage
+     *            the image id
+     * @return the ids of the similar images, the closest first, or an empty list if the image has no hash
+     */
+    public List<Integer> findSimilar( int nIdImage )
+    {
+        _lock.readLock( ).lock( );
+
+        try
+        {
+            HashIndex index = getIndex( );
+            Long lHash = index.getHash( nIdImage );
+
+            return ( lHash != null ) ? index.find( lHash, _nMaxDistance, nIdImage, _nMaxResults ) : new ArrayList<>( );
+        }
+        finally
+        {
+            _lock.readLock( ).unlock( );
+        }
+    }
+
+    /**
+     * Find the images close to a given hash
+     * 
+     * @param lHash
+     *            the perceptual hash
+     * @param nIdImageExcluded
+     *            the image to exclude from the result, or 0
+     * @return the ids of the similar images, the closest first
+     */
+    public List<Integer> findSimilar( long lHash, int nIdImageExcluded )
+    {
+        _lock.readLock( ).lock( );
+
+        try
+        {
+            return getIndex( ).find( lHash, _nMaxDistance, nIdImageExcluded, _nMaxResults );
+        }
+        finally
+        {
+            _lock.readLock( ).unlock( );
+        }
+    }
+
+    /**
+     * Load the index again from the database
+     */
+    public void reload( )
+    {
+        _lock.writeLock( ).lock( );
+
+        try
+        {
+            _index = load( );
+        }
+        finally
+        {
+            _lock.writeLock( ).unlock( );
+        }
+    }
+
+    /**
+     * @return the number of indexed images, or 0 if the index is not loaded
+     */
+    public int getIndexedCount( )
+    {
+        _lock.readLock( ).lock( );
+
+        try
+        {
+            return ( _index != null ) ? _index.size( ) : 0;
+        }
+        finally
+        {
+            _lock.readLock( ).unlock( );
+        }
+    }
+
+    /**
+     * Get the index, loading it on first use. Must be called with the read lock held.
+     * 
+     * @return the index
+     */
+    private HashIndex getIndex( )
+    {
+        if ( _index == null )
+        {
+            // The read lock can't be upgraded : it is released while the index is loaded
+            _lock.readLock( ).unlock( );
+            _lock.writeLock( ).lock( );
+
+            try
+            {
+                if ( _index == null )
+                {
+                    _index = load( );
+                }
+            }
+            finally
+            {
+                _lock.readLock( ).lock( );
+                _lock.writeLock( ).unlock( );
+            }
+        }
+
+        return _index;
+    }
+
+    /**
+     * Load the hashes of the images from the database
+     * 
+     * @return the index
+     */
+    private static HashIndex load( )
+    {
+        HashIndex index = new HashIndex( );
+
+        for ( Map.Entry<Integer, Long> entry : ImageHome.getPerceptualHashes( ).entrySet( ) )
+        {
+            index.put( entry.getKey( ), entry.getValue( ) );
+        }
+
+        return index;
+    }
+
+    /**
+     * The hashes of the images, indexed by each of their bytes. Not thread safe.
+     */
+    static final class HashIndex
+    {
+        private final Map<Integer, Long> _mapHashes = new HashMap<>( );
+        private final List<List<Integer>> _listBuckets = new ArrayList<>( SEGMENTS * SEGMENT_VALUES );
+
+        /**
+         * Constructor
+         */
+        HashIndex( )
+        {
+            for ( int i = 0; i < SEGMENTS * SEGMENT_VALUES; i++ )
+            {
+                _listBuckets.add( new ArrayList<>( ) );
+            }
+        }
+
+        /**
+         * Get the bucket of the images whose hash has a given value for a byte
+         * 
+         * @param lHash
+         *            the hash
+         * @param nSegment
+         *            the byte of the hash
+         * @return the bucket
+         */
+        private List<Integer> getBucket( long lHash, int nSegment )
+        {
+            return _listBuckets.get( nSegment * SEGMENT_VALUES + (int) ( ( lHash >>> ( nSegment * SEGMENT_BITS ) ) & SEGMENT_MASK ) );
+        }
+
+        /**
+         * Index the hash of an image, replacing its previous hash
+         * 
+         * @param nIdImage
+         *            the image id
+         * @param lHash
+         *            the hash
+         */
+        void put( int nIdImage, long lHash )
+        {
+            Long lPreviousHash = _mapHashes.get( nIdImage );
+
+            if ( lPreviousHash != null && lPreviousHash == lHash )
+            {
+                return;
+            }
+
+            remove( nIdImage );
+            _mapHashes.put( nIdImage, lHash );
+
+            for ( int nSegment = 0; nSegment < SEGMENTS; nSegment++ )
+            {
+                getBucket( lHash, nSegment ).add( nIdImage );
+            }
+        }
+
+        /**
+         * Remove an image
+         * 
+         * @param nIdImage
+         *            the image id
+         */
+        private void remove( int nIdImage )
+        {
+            Long lHash = _mapHashes.remove( nIdImage );
+
+            if ( lHash != null )
+            {
+                for ( int nSegment = 0; nSegment < SEGMENTS; nSegment++ )
+                {
+                    getBucket( lHash, nSegment ).remove( Integer.valueOf( nIdImage ) );
+                }
+            }
+        }
+
+        /**
+         * @param nIdImage
+         *            the image id
+         * @return the hash of the image, or null if the image is not indexed
+         */
+        private Long getHash( int nIdImage )
+        {
+            return _mapHashes.get( nIdImage );
+        }
+
+        /**
+         * @return the number of indexed images
+         */
+        private int size( )
+        {
+            return _mapHashes.size( );
+        }
+
+        /**
+         * Find the images whose hash is close to a given hash
+         * 
+         * @param lHash
+         *            the hash
+         * @param nMaxDistance
+         *            the maximum number of differing bits
+         * @param nIdImageExcluded
+         *            the image to exclude
+         * @param nMaxResults
+         *            the maximum number of images
+         * @return the ids of the images, the closest first
+         */
+        List<Integer> find( long lHash, int nMaxDistance, int nIdImageExcluded, int nMaxResults )
+        {
+            Map<Integer, Integer> mapDistances = new HashMap<>( );
+
+            if ( nMaxDistance < SEGMENTS )
+            {
+                Set<Integer> setCompared = new HashSet<>( );
+
+                for ( int nSegment = 0; nSegment < SEGMENTS; nSegment++ )
+                {
+                    for ( Integer nIdImage : getBucket( lHash, nSegment ) )
+                    {
+                        if ( setCompared.add( nIdImage ) )
+                        {
+                            compare( nIdImage, _mapHashes.get( nIdImage ), lHash, nMaxDistance, nIdImageExcluded, mapDistances );
+                        }
+                    }
+                }
+            }
+            else
+            {
+                // The images within the distance may share no byte with the hash : all the images are compared
+                for ( Map.Entry<Integer, Long> entry : _mapHashes.entrySet( ) )
+                {
+                    compare( entry.getKey( ), entry.getValue( ), lHash, nMaxDistance, nIdImageExcluded, mapDistances );
+                }
+            }
+
+            return mapDistances.entrySet( ).stream( )
+                    .sorted( Map.Entry.<Integer, Integer> comparingByValue( ).thenComparing( Map.Entry.comparingByKey( ) ) )
+                    .limit( nMaxResults ).map( Map.Entry::getKey ).collect( Collectors.toList( ) );
+        }
+
+        /**
+         * Compare the hash of an image to the searched hash, and keep the image if it is close enough
+         * 
+         * @param nIdImage
+         *            the image id
+         * @param lImageHash
+         *            the hash of the image
+         * @param lHash
+         *            the searched hash
+         * @param nMaxDistance
+         *            the maximum number of differing bits
+         * @param nIdImageExcluded
+         *            the image to exclude
+         * @param mapDistances
+         *            the distances of the kept images
+         */
+        private static void compare( int nIdImage, long lImageHash, long lHash, int nMaxDistance, int nIdImageExcluded, Map<Integer, Integer> mapDistances )
+        {
+            int nDistance = distance( lImageHash, lHash );
+
+            if ( nIdImage != nIdImageExcluded && nDistance <= nMaxDistance )
+            {
+                mapDistances.put( nIdImage, nDistance );
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.util;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Utility class for the HTTP conditional requests
+ */
+public final class HttpCacheUtils
+{
+    // HEADERS
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    // CONSTANTS
+    private static final String CACHE_CONTROL_PUBLIC = "public, max-age=";
+    private static final String CACHE_CONTROL_PRIVATE = "private, max-age=";
+    private static final String ETAG_WILDCARD = "*";
+    private static final String ETAG_WEAK_PREFIX = "W/";
+    private static final String ETAG_SEPARATOR = ",";
+    private static final String QUOTE = "\"";
+
+    /**
+     * Private constructor
+     */
+    private HttpCacheUtils( )
+    {
+    }
+
+    /**
+     * Build a strong entity tag from a value
+     * 
+     * @param strValue
+     *            the value
+     * @return the quoted entity tag
+     */
+    public static String buildETag( String strValue )
+    {
+        return QUOTE + strValue + QUOTE;
+    }
+
+    /**
+     * Set the validators and the cache directives of the response
+     * 
+     * @param response
+     *            the response
+     * @param strETag
+     *            the entity tag
+     * @param lLastModified
+     *            the last modification date in milliseconds, ignored if not positive
+     * @param bPrivate
+     *            true if the response must not be stored by shared caches
+     * @param nMaxAge
+     *            the max age in seconds
+     */
+    public static void setCacheHeaders( HttpServletResponse response, String strETag, long lLastModified, boolean bPrivate, int nMaxAge )
+    {
+        response.setHeader( HEADER_ETAG, strETag );
+
+        if ( lLastModified > 0 )
+        {
+            response.setDateHeader( HEADER_LAST_MODIFIED, lLastModified );
+        }
+
+        response.setHeader( HEADER_CACHE_CONTROL, ( bPrivate ? CACHE_CONTROL_PRIVATE : CACHE_CONTROL_PUBLIC ) + nMaxAge );
+    }
+
+    /**
+     * Check the conditional headers of the request. If-Modified-Since is only evaluated when there is no If-None-Match header.
+     * 
+     * @param request
+     *            the request
+     * @param strETag
+     *            the current entity tag
+     * @param lLastModified
+     *            the last modification date in milliseconds, ignored if not positive
+     * @return true if the client representation is still valid
+     */
+    public static boolean isNotModified( HttpServletRequest request, String strETag, long lLastModified )
+    {
+        String strIfNoneMatch = request.getHeader( HEADER_IF_NONE_MATCH );
+
+        if ( strIfNoneMatch != null )
+        {
+            return matchETag( strIfNoneMatch, strETag );
+        }
+
+        if ( lLastModified > 0 )
+        {
+            long lIfModifiedSince;
+            try
+            {
+                lIfModifiedSince = request.getDateHeader( HEADER_IF_MODIFIED_SINCE );
+            }
+            catch( IllegalArgumentException e )
+            {
+                return false;
+            }
+
+            return lIfModifiedSince >= 0 && lLastModified <= lIfModifiedSince;
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if an If-None-Match header matches the entity tag
+     * 
+     * @param strIfNoneMatch
+     *            the If-None-Match header value
+     * @param strETag
+     *            the entity tag
+     * @return true if one of the listed tags matches
+     */
+    private static boolean matchETag( String strIfNoneMatch, String strETag )
+    {
+        for ( String strCandidate : strIfNoneMatch.split( ETAG_SEPARATOR ) )
+        {
+            String strTag = StringUtils.removeStart( strCandidate.trim( ), ETAG_WEAK_PREFIX );
+
+            if ( ETAG_WILDCARD.equals( strTag ) || strTag.equals( strETag ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.imaging.ImageInfo;
+import org.apache.commons.imaging.ImageParser;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.ImageWriteException;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.bmp.BmpImageParser;
+import org.apache.commons.imaging.formats.dcx.DcxImageParser;
+import org.apache.commons.imaging.formats.gif.GifImageParser;
+import org.apache.commons.imaging.formats.pcx.PcxImageParser;
+import org.apache.commons.imaging.formats.png.PngImageParser;
+import org.apache.commons.imaging.formats.tiff.TiffImageParser;
+import org.apache.commons.imaging.formats.wbmp.WbmpImageParser;
+import org.apache.commons.imaging.formats.xbm.XbmImageParser;
+import org.apache.commons.imaging.formats.xpm.XpmImageParser;
+
+import fr.paris.lutece.plugins.galleryimage.service.ImageDecodeLimiter;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Upload pipeline : decodes an image once, sanitizes it by redrawing its pixels in a new image, optionally resizes it, and encodes it once. The encoded
+ * image is the one to store : nothing hidden in the uploaded file survives the pipeline.
+ */
+public final class ImagePipeline
+{
+    // PROPERTIES
+    private static final String PROPERTY_MAX_MEGAPIXELS = "galleryimage.upload.maxMegapixels";
+
+    // CONSTANTS
+    private static final int DEFAULT_MAX_MEGAPIXELS = 50;
+    private static final long PIXELS_PER_MEGAPIXEL = 1000000L;
+    // Subsampling keeps at least this ratio between the decoded width and the target width, for the resize to smooth the result
+    private static final int SUBSAMPLING_MARGIN = 2;
+
+    /**
+     * Private constructor
+     */
+    private ImagePipeline( )
+    {
+    }
+
+    /**
+     * Process an uploaded image. The dimensions are read from the header before decoding : an image with more pixels than the budget is rejected, and an
+     * image much wider than the target width is decoded at a reduced resolution.
+     * 
+     * @param fileItem
+     *            the uploaded file
+     * @param nWidth
+     *            the width the image is resized to, ignored if not positive
+     * @return the processed image, holding its decode memory until it is closed
+     * @throws IOException
+     *             if the file is not a supported image
+     * @throws ImageTooLargeException
+     *             if the image exceeds the pixel budget or the decode memory budget
+     * @throws ImageDecodeTimeoutException
+     *             if the decode memory could not be reserved in time
+     */
+    public static ProcessedImage process( FileItem fileItem, int nWidth ) throws IOException
+    {
+        if ( fileItem == null || fileItem.getSize( ) == 0 )
+        {
+            throw new IOException( "No image to process !" );
+        }
+
+        String strFormatName;
+        String strMimeType;
+        BufferedImage source;
+        boolean bFallbackOnApacheCommonsImaging;
+        ImageDecodeLimiter.Permit permit = null;
+
+        try
+        {
+            try ( InputStream inputStream = fileItem.getInputStream( ); ImageInputStream iis = ImageIO.createImageInputStream( inputStream ) )
+            {
+                Iterator<ImageReader> imageReaderIterator = ImageIO.getImageReaders( iis );
+
+                if ( imageReaderIterator.hasNext( ) )
+                {
+                    ImageReader reader = imageReaderIterator.next( );
+
+                    try
+                    {
+                        reader.setInput( iis, true, true );
+                        strFormatName = reader.getFormatName( );
+                        strMimeType = reader.getOriginatingProvider( ).getMIMETypes( ) [0];
+
+                        ImageReadParam param = reader.getDefaultReadParam( );
+                        int nSubsampling = getSubsampling( reader.getWidth( 0 ), nWidth );
+                        int nDecodedWidth = reader.getWidth( 0 ) / nSubsampling;
+                        int nDecodedHeight = reader.getHeight( 0 ) / nSubsampling;
+                        checkPixelBudget( nDecodedWidth, nDecodedHeight );
+                        permit = reserve( nDecodedWidth, nDecodedHeight, nWidth );
+
+                        if ( nSubsampling > 1 )
+                        {
+                            param.setSourceSubsampling( nSubsampling, nSubsampling, 0, 0 );
+                        }
+                        source = reader.read( 0, param );
+                    }
+                    finally
+                    {
+                        reader.dispose( );
+                    }
+                    bFallbackOnApacheCommonsImaging = false;
+                }
+                else
+                {
+                    // The format is not supported by the Java built-in API
+                    byte [ ] content = fileItem.get( );
+                    ImageInfo imageInfo = Imaging.getImageInfo( content );
+
+                    if ( imageInfo == null || imageInfo.getFormat( ) == null || imageInfo.getFormat( ).getName( ) == null )
+                    {
+                        throw new IOException( "Format of the original image is not supported for read operation !" );
+                    }
+                    checkPixelBudget( imageInfo.getWidth( ), imageInfo.getHeight( ) );
+                    permit = reserve( imageInfo.getWidth( ), imageInfo.getHeight( ), nWidth );
+                    strFormatName = imageInfo.getFormat( ).getName( );
+                    strMimeType = imageInfo.getMimeType( );
+                    source = Imaging.getBufferedImage( content );
+                    bFallbackOnApacheCommonsImaging = true;
+                }
+            }
+            catch( ImageReadException e )
+            {
+                throw new IOException( e.getMessage( ), e );
+            }
+
+            if ( source == null )
+            {
+                throw new IOException( "Cannot load the original image !" );
+            }
+
+            BufferedImage sanitizedImage = ( nWidth > 0 ) ? ImageUtils.resizeImage( source, nWidth, 0 ) : redraw( source );
+            source.flush( );
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream( );
+
+            if ( bFallbackOnApacheCommonsImaging )
+            {
+                writeWithApacheCommonsImaging( sanitizedImage, strFormatName, out );
+            }
+            else
+                if ( !ImageIO.write( sanitizedImage, strFormatName, out ) )
+                {
+                    // No writer for the format or for the color model of the image
+                    out.reset( );
+                    strFormatName = ImageUtils.getOutputFormat( sanitizedImage );
+                    strMimeType = ImageUtils.getOutputMimeType( sanitizedImage );
+                    ImageIO.write( sanitizedImage, strFormatName, out );
+                }
+
+            // The reservation covers the source and its sanitized copy : it still covers the sanitized image and its widest rendition
+            ProcessedImage processedImage = new ProcessedImage( sanitizedImage, out.toByteArray( ), strFormatName, strMimeType, permit );
+            permit = null;
+
+            return processedImage;
+        }
+        finally
+        {
+            if ( permit != null )
+            {
+                permit.close( );
+            }
+        }
+    }
+
+    /**
+     * Reserve the memory to decode an image and to draw its sanitized copy
+     * 
+     * @param nDecodedWidth
+     *            the decoded width
+     * @param nDecodedHeight
+     *            the decoded height
+     * @param nWidth
+     *            the width the image is resized to, ignored if not positive
+     * @return the permit to close once the sanitized image is no longer used
+     * @throws IOException
+     *             if the memory can't be reserved
+     */
+    private static ImageDecodeLimiter.Permit reserve( int nDecodedWidth, int nDecodedHeight, int nWidth ) throws IOException
+    {
+        long lBytes = ImageDecodeLimiter.estimateBytes( nDecodedWidth, nDecodedHeight );
+
+        if ( nWidth > 0 && nDecodedWidth > 0 )
+        {
+            lBytes += ImageDecodeLimiter.estimateBytes( nWidth, (int) ( (long) nDecodedHeight * nWidth / nDecodedWidth ) );
+        }
+        else
+        {
+            lBytes *= 2;
+        }
+
+        return ImageDecodeLimiter.getInstance( ).acquire( lBytes, nDecodedWidth, nDecodedHeight );
+    }
+
+    /**
+     * Get the subsampling factor to decode an image directly at a resolution close to the target width
+     * 
+     * @param nSourceWidth
+     *            the width of the image
+     * @param nWidth
+     *            the target width, ignored if not positive
+     * @return the subsampling factor, 1 to decode every pixel
+     */
+    private static int getSubsampling( int nSourceWidth, int nWidth )
+    {
+        if ( nWidth <= 0 )
+        {
+            return 1;
+        }
+
+        return Math.max( 1, nSourceWidth / ( nWidth * SUBSAMPLING_MARGIN ) );
+    }
+
+    /**
+     * Check that the decoded image fits in the pixel budget
+     * 
+     * @param nWidth
+     *            the decoded width
+     * @param nHeight
+     *            the decoded height
+     * @throws ImageTooLargeException
+     *             if the image exceeds the budget
+     */
+    private static void checkPixelBudget( int nWidth, int nHeight ) throws ImageTooLargeException
+    {
+        long lMaxPixels = AppPropertiesService.getPropertyInt( PROPERTY_MAX_MEGAPIXELS, DEFAULT_MAX_MEGAPIXELS ) * PIXELS_PER_MEGAPIXEL;
+
+        if ( nWidth <= 0 || nHeight <= 0 || (long) nWidth * nHeight > lMaxPixels )
+        {
+            throw new ImageTooLargeException( nWidth, nHeight );
+        }
+    }
+
+    /**
+     * Draw the pixels of an image in a new image
+     * 
+     * @param source
+     *            the image
+     * @return the new image
+     */
+    private static BufferedImage redraw( BufferedImage source )
+    {
+        int nType = source.getColorModel( ).hasAlpha( ) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage image = new BufferedImage( source.getWidth( ), source.getHeight( ), nType );
+        Graphics2D graphics = image.createGraphics( );
+        graphics.drawImage( source, 0, 0, null );
+        graphics.dispose( );
+
+        return image;
+    }
+
+    /**
+     * Encode an image with Apache Commons Imaging, for the formats it can write but the Java built-in API can't
+     * 
+     * @param image
+     *            the image
+     * @param strFormatName
+     *            the format name
+     * @param out
+     *            the output stream
+     * @throws IOException
+     *             if the format is not supported for write operation
+     */
+    private static void writeWithApacheCommonsImaging( BufferedImage image, String strFormatName, ByteArrayOutputStream out ) throws IOException
+    {
+        ImageParser imageParser;
+        // Handle only formats for which Apache Commons Imaging can successfully write the image format
+        switch( strFormatName )
+        {
+            case "TIFF":
+            {
+                imageParser = new TiffImageParser( );
+                break;
+            }
+            case "PCX":
+            {
+                imageParser = new PcxImageParser( );
+                break;
+            }
+            case "DCX":
+            {
+                imageParser = new DcxImageParser( );
+                break;
+            }
+            case "BMP":
+            {
+                imageParser = new BmpImageParser( );
+                break;
+            }
+            case "GIF":
+            {
+                imageParser = new GifImageParser( );
+                break;
+            }
+            case "PNG":
+            {
+                imageParser = new PngImageParser( );
+                break;
+            }
+            case "WBMP":
+            {
+                imageParser = new WbmpImageParser( );
+                break;
+            }
+            case "XBM":
+            {
+                imageParser = new XbmImageParser( );
+                break;
+            }
+            case "XPM":
+            {
+                imageParser = new XpmImageParser( );
+                break;
+            }
+            default:
+            {
+                throw new IOException( "Format of the original image is not supported for write operation !" );
+            }
+        }
+
+        try
+        {
+            imageParser.writeImage( image, out, null );
+        }
+        catch( ImageWriteException e )
+        {
+            throw new IOException( e.getMessage( ), e );
+        }
+    }
+}
@@ -36,37 +36,32 @@ package fr.paris.lutece.plugins.galleryimage.util;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemFactory;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
-import org.apache.commons.imaging.ImageInfo;
-import org.apache.commons.imaging.ImageParser;
-import org.apache.commons.imaging.Imaging;
-import org.apache.commons.imaging.formats.bmp.BmpImageParser;
-import org.apache.commons.imaging.formats.dcx.DcxImageParser;
-import org.apache.commons.imaging.formats.gif.GifImageParser;
-import org.apache.commons.imaging.formats.pcx.PcxImageParser;
-import org.apache.commons.imaging.formats.png.PngImageParser;
-import org.apache.commons.imaging.formats.tiff.TiffImageParser;
-import org.apache.commons.imaging.formats.wbmp.WbmpImageParser;
-import org.apache.commons.imaging.formats.xbm.XbmImageParser;
-import org.apache.commons.imaging.formats.xpm.XpmImageParser;
 import org.apache.commons.lang3.StringUtils;
 import org.imgscalr.Scalr;
 
 import fr.paris.lutece.portal.service.image.ImageResource;
 import fr.paris.lutece.portal.service.util.AppLogService;
 
-import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Base64;
 import java.util.Iterator;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 /**
  * Image utils class
@@ -75,6 +70,23 @@ public final class ImageUtils
 {
     /** Parameter JPG */
     private static final String PARAMETER_JPG = "jpg";
+    /** Parameter PNG */
+    private static final String PARAMETER_PNG = "png";
+    /** Mime type JPG */
+    private static final String MIME_TYPE_JPG = "image/jpeg";
+    /** Mime type PNG */
+    private static final String MIME_TYPE_PNG = "image/png";
+
+    // Grid of the difference hash : each row compares 9 cells, giving 8 bits
+    private static final int HASH_GRID_WIDTH = 9;
+    private static final int HASH_GRID_HEIGHT = 8;
+    // Width the image is shrunk to before its luminance is averaged over the grid
+    private static final int HASH_SAMPLE_WIDTH = 144;
+
+    // Placeholder : the image fits in a 16x16 box, encoded as a low quality JPEG data URI
+    private static final int PLACEHOLDER_SIZE = 16;
+    private static final float PLACEHOLDER_QUALITY = 0.5f;
+    private static final String PLACEHOLDER_DATA_URI_PREFIX = "data:image/jpeg;base64,";
 
     /**
      * Private constructor
@@ -84,210 +96,311 @@ public final class ImageUtils
     }
 
     /**
-     * resizeImage
+     * Resize an image, keeping its ratio. If both dimensions are given, the image fits in the box.
      * 
-     * @param fileItem
-     * @param width
-     * @return fileItem
+     * @param image
+     *            the image
+     * @param nWidth
+     *            the target width, ignored if not positive
+     * @param nHeight
+     *            the target height, ignored if not positive
+     * @return the resized image, or the image itself if no dimension is given
      */
-    public static FileItem resizeImage( FileItem fileItem, int width )
+    public static BufferedImage resizeImage( BufferedImage image, int nWidth, int nHeight )
     {
-        // Crop image if needed
-        try
+        if ( nWidth > 0 && nHeight > 0 )
         {
-            ByteArrayOutputStream out = new ByteArrayOutputStream( );
-            BufferedImage image = ImageIO.read( fileItem.getInputStream( ) );
-            BufferedImage resizedImage = Scalr.resize( image, Scalr.Mode.FIT_TO_WIDTH, width );
-            ImageIO.write( resizedImage, PARAMETER_JPG, out );
+            // Constrain the side that would overflow the box
+            boolean bFitToWidth = (long) image.getWidth( ) * nHeight >= (long) image.getHeight( ) * nWidth;
 
-            return createFileItem( out.toByteArray( ), fileItem.getFieldName( ), fileItem.getContentType( ), fileItem.getName( ) );
+            return bFitToWidth ? Scalr.resize( image, Scalr.Mode.FIT_TO_WIDTH, nWidth ) : Scalr.resize( image, Scalr.Mode.FIT_TO_HEIGHT, nHeight );
+        }
+        if ( nWidth > 0 )
+        {
+            return Scalr.resize( image, Scalr.Mode.FIT_TO_WIDTH, nWidth );
         }
-        catch( Exception e )
+        if ( nHeight > 0 )
         {
-            AppLogService.error( "ImageUtils:resizeImage( ): {} ", e.getMessage( ), e );
+            return Scalr.resize( image, Scalr.Mode.FIT_TO_HEIGHT, nHeight );
         }
-        return fileItem;
+
+        return image;
     }
 
     /**
-     * Create a FileItem with the specfied content bytes.
+     * Decode an image
+     * 
+     * @param imageBytes
+     *            the encoded image
+     * @return the decoded image, or null if the format is not supported
+     * @throws IOException
+     *             if the image can not be read
      */
-    private static FileItem createFileItem( byte [ ] contentBytes, String strFieldName, String strContentType, String strFileName )
+    public static BufferedImage readImage( byte [ ] imageBytes ) throws IOException
     {
-        FileItemFactory factory = new DiskFileItemFactory( );
-        FileItem item = factory.createItem( strFieldName, strContentType, false, strFileName );
+        return ImageIO.read( new ByteArrayInputStream( imageBytes ) );
+    }
 
-        try
+    /**
+     * Decode an image, reading only one pixel out of each block of nSubsampling x nSubsampling pixels
+     * 
+     * @param imageBytes
+     *            the encoded image
+     * @param nSubsampling
+     *            the subsampling factor, 1 to decode every pixel
+     * @return the decoded image, or null if the format is not supported
+     * @throws IOException
+     *             if the image can not be read
+     */
+    public static BufferedImage readImage( byte [ ] imageBytes, int nSubsampling ) throws IOException
+    {
+        try ( ImageInputStream iis = ImageIO.createImageInputStream( new ByteArrayInputStream( imageBytes ) ) )
         {
-            OutputStream os = item.getOutputStream( );
-            os.write( contentBytes );
-            os.close( );
+            Iterator<ImageReader> imageReaderIterator = ImageIO.getImageReaders( iis );
+
+            if ( !imageReaderIterator.hasNext( ) )
+            {
+                return null;
+            }
+
+            ImageReader reader = imageReaderIterator.next( );
+
+            try
+            {
+                reader.setInput( iis, true, true );
+                ImageReadParam param = reader.getDefaultReadParam( );
+
+                if ( nSubsampling > 1 )
+                {
+                    param.setSourceSubsampling( nSubsampling, nSubsampling, 0, 0 );
+                }
+
+                return reader.read( 0, param );
+            }
+            finally
+            {
+                reader.dispose( );
+            }
         }
-        catch( IOException e )
+    }
+
+    /**
+     * Read the dimensions of an image from its header, without decoding its pixels
+     * 
+     * @param imageBytes
+     *            the encoded image
+     * @return the dimensions, or null if the format is not supported
+     * @throws IOException
+     *             if the image can not be read
+     */
+    public static Dimension readDimension( byte [ ] imageBytes ) throws IOException
+    {
+        try ( ImageInputStream iis = ImageIO.createImageInputStream( new ByteArrayInputStream( imageBytes ) ) )
         {
-            AppLogService.error( "ImageUtils:createFileItem( ): {} ", e.getMessage( ), e );
+            Iterator<ImageReader> imageReaderIterator = ImageIO.getImageReaders( iis );
+
+            if ( !imageReaderIterator.hasNext( ) )
+            {
+                return null;
+            }
+
+            ImageReader reader = imageReaderIterator.next( );
+
+            try
+            {
+                reader.setInput( iis, true, true );
+
+                return new Dimension( reader.getWidth( 0 ), reader.getHeight( 0 ) );
+            }
+            finally
+            {
+                reader.dispose( );
+            }
         }
-        return item;
     }
 
     /**
-     * Check if the parameter fileItem is safe
+     * Compute the difference hash of an image : the image is reduced to a 9x8 grid of luminances, and each bit tells whether a cell is brighter than
+     * its right neighbour. The hash does not change when the image is resized or compressed again, so that close images have hashes differing by a few
+     * bits.
      * 
-     * @param fileItem
-     * @return true if file is safe
+     * @param image
+     *            the image
+     * @return the 64 bits hash
      */
-    public static boolean safeImage( FileItem fileItem )
+    public static long perceptualHash( BufferedImage image )
     {
-        boolean safeState = false;
-        boolean fallbackOnApacheCommonsImaging;
-        try
+        BufferedImage sample = ( image.getWidth( ) > HASH_SAMPLE_WIDTH ) ? Scalr.resize( image, Scalr.Mode.FIT_TO_WIDTH, HASH_SAMPLE_WIDTH ) : image;
+        int nWidth = sample.getWidth( );
+        int nHeight = sample.getHeight( );
+        int [ ] pixels = sample.getRGB( 0, 0, nWidth, nHeight, null, 0, nWidth );
+        double [ ] [ ] grid = new double [ HASH_GRID_HEIGHT ] [ HASH_GRID_WIDTH ];
+
+        for ( int nRow = 0; nRow < HASH_GRID_HEIGHT; nRow++ )
         {
-            if ( fileItem != null )
+            int nTop = nRow * nHeight / HASH_GRID_HEIGHT;
+            int nBottom = Math.max( nTop + 1, ( nRow + 1 ) * nHeight / HASH_GRID_HEIGHT );
+
+            for ( int nColumn = 0; nColumn < HASH_GRID_WIDTH; nColumn++ )
             {
-                // Get the image format
-                String formatName;
-                try ( ImageInputStream iis = ImageIO.createImageInputStream( fileItem.getInputStream( ) ) )
+                int nLeft = nColumn * nWidth / HASH_GRID_WIDTH;
+                int nRight = Math.max( nLeft + 1, ( nColumn + 1 ) * nWidth / HASH_GRID_WIDTH );
+                double dSum = 0;
+                int nCount = 0;
+
+                for ( int y = nTop; y < Math.min( nBottom, nHeight ); y++ )
                 {
-                    Iterator<ImageReader> imageReaderIterator = ImageIO.getImageReaders( iis );
-                    // If there not ImageReader instance found so it's means that the current
-                    // format is not supported by the Java built-in API
-                    if ( !imageReaderIterator.hasNext( ) )
-                    {
-                        ImageInfo imageInfo = Imaging.getImageInfo( fileItem.get( ) );
-                        if ( imageInfo != null && imageInfo.getFormat( ) != null && imageInfo.getFormat( ).getName( ) != null )
-                        {
-                            formatName = imageInfo.getFormat( ).getName( );
-                            fallbackOnApacheCommonsImaging = true;
-                        }
-                        else
-                        {
-                            throw new IOException( "Format of the original image is " + "not supported for read operation !" );
-                        }
-                    }
-                    else
+                    for ( int x = nLeft; x < Math.min( nRight, nWidth ); x++ )
                     {
-                        ImageReader reader = imageReaderIterator.next( );
-                        formatName = reader.getFormatName( );
-                        fallbackOnApacheCommonsImaging = false;
+                        int nRgb = pixels [y * nWidth + x];
+                        dSum += 0.299 * ( ( nRgb >> 16 ) & 0xFF ) + 0.587 * ( ( nRgb >> 8 ) & 0xFF ) + 0.114 * ( nRgb & 0xFF );
+                        nCount++;
                     }
                 }
+                grid [nRow] [nColumn] = ( nCount > 0 ) ? dSum / nCount : 0;
+            }
+        }
 
-                // Load the image
-                BufferedImage originalImage;
-                if ( !fallbackOnApacheCommonsImaging )
-                {
-                    originalImage = ImageIO.read( fileItem.getInputStream( ) );
-                }
-                else
-                {
-                    originalImage = Imaging.getBufferedImage( fileItem.getInputStream( ) );
-                }
+        if ( sample != image )
+        {
+            sample.flush( );
+        }
 
-                // Check that image has been successfully loaded
-                if ( originalImage == null )
+        long lHash = 0;
+
+        for ( int nRow = 0; nRow < HASH_GRID_HEIGHT; nRow++ )
+        {
+            for ( int nColumn = 0; nColumn < HASH_GRID_WIDTH - 1; nColumn++ )
+            {
+                lHash <<= 1;
+
+                if ( grid [nRow] [nColumn] < grid [nRow] [nColumn + 1] )
                 {
-                    throw new IOException( "Cannot load the original image !" );
+                    lHash |= 1;
                 }
+            }
+        }
 
-                // Get current Width and Height of the image
-                int originalWidth = originalImage.getWidth( null );
-                int originalHeight = originalImage.getHeight( null );
+        return lHash;
+    }
 
-                // Resize the image by removing 1px on Width and Height
-                Image resizedImage = originalImage.getScaledInstance( originalWidth - 1, originalHeight - 1, Image.SCALE_SMOOTH );
+    /**
+     * Create the placeholder of an image : a tiny version of the image, blurry once stretched to the size of the image, small enough to be inlined in
+     * the page while the image itself loads
+     * 
+     * @param image
+     *            the image
+     * @return the placeholder, as a data URI
+     * @throws IOException
+     *             if the placeholder can not be written
+     */
+    public static String placeholder( BufferedImage image ) throws IOException
+    {
+        BufferedImage resizedImage = resizeImage( image, PLACEHOLDER_SIZE, PLACEHOLDER_SIZE );
+        BufferedImage placeholderImage = new BufferedImage( resizedImage.getWidth( ), resizedImage.getHeight( ), BufferedImage.TYPE_INT_RGB );
+        Graphics2D graphics = placeholderImage.createGraphics( );
 
-                // Resize the resized image by adding 1px on Width and Height
-                // In fact set image to is initial size
-                Image initialSizedImage = resizedImage.getScaledInstance( originalWidth, originalHeight, Image.SCALE_SMOOTH );
+        try
+        {
+            // JPEG has no transparency : the transparent pixels are drawn on white
+            graphics.setColor( Color.WHITE );
+            graphics.fillRect( 0, 0, placeholderImage.getWidth( ), placeholderImage.getHeight( ) );
+            graphics.drawImage( resizedImage, 0, 0, null );
+        }
+        finally
+        {
+            graphics.dispose( );
+        }
 
-                // Save image by overwriting the provided source file content
-                BufferedImage sanitizedImage = new BufferedImage( initialSizedImage.getWidth( null ), initialSizedImage.getHeight( null ),
-                        BufferedImage.TYPE_INT_RGB );
-                Graphics bg = sanitizedImage.getGraphics( );
-                bg.drawImage( initialSizedImage, 0, 0, null );
-                bg.dispose( );
+        ImageWriter writer = ImageIO.getImageWritersByFormatName( PARAMETER_JPG ).next( );
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
 
-                try ( OutputStream fos = new ByteArrayOutputStream( ) )
-                {
-                    if ( !fallbackOnApacheCommonsImaging )
-                    {
-                        ImageIO.write( sanitizedImage, formatName, fos );
-                    }
-                    else
-                    {
-                        ImageParser imageParser;
-                        // Handle only formats for which Apache Commons Imaging can successfully write
-                        // (YES in Write column of the reference link) the image format
-                        // See reference link in the class header
-                        switch( formatName )
-                        {
-                            case "TIFF":
-                            {
-                                imageParser = new TiffImageParser( );
-                                break;
-                            }
-                            case "PCX":
-                            {
-                                imageParser = new PcxImageParser( );
-                                break;
-                            }
-                            case "DCX":
-                            {
-                                imageParser = new DcxImageParser( );
-                                break;
-                            }
-                            case "BMP":
-                            {
-                                imageParser = new BmpImageParser( );
-                                break;
-                            }
-                            case "GIF":
-                            {
-                                imageParser = new GifImageParser( );
-                                break;
-                            }
-                            case "PNG":
-                            {
-                                imageParser = new PngImageParser( );
-                                break;
-                            }
-                            case "WBMP":
-                            {
-                                imageParser = new WbmpImageParser( );
-                                break;
-                            }
-                            case "XBM":
-                            {
-                                imageParser = new XbmImageParser( );
-                                break;
-                            }
-                            case "XPM":
-                            {
-                                imageParser = new XpmImageParser( );
-                                break;
-                            }
-                            default:
-                            {
-                                throw new IOException( "Format of the original image is not" + " supported for write operation !" );
-                            }
-
-                        }
-                        imageParser.writeImage( sanitizedImage, fos, null );
-                    }
+        try ( ImageOutputStream ios = ImageIO.createImageOutputStream( out ) )
+        {
+            ImageWriteParam param = writer.getDefaultWriteParam( );
+            param.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+            param.setCompressionQuality( PLACEHOLDER_QUALITY );
+            writer.setOutput( ios );
+            writer.write( null, new IIOImage( placeholderImage, null, null ), param );
+        }
+        finally
+        {
+            writer.dispose( );
+        }
 
-                }
+        return PLACEHOLDER_DATA_URI_PREFIX + Base64.getEncoder( ).encodeToString( out.toByteArray( ) );
+    }
 
-                // Set state flag
-                safeState = true;
-            }
+    /**
+     * Encode an image in the format returned by {@link #getOutputFormat(BufferedImage)}
+     * 
+     * @param image
+     *            the image
+     * @return the encoded image
+     * @throws IOException
+     *             if the image can not be written
+     */
+    public static byte [ ] writeImage( BufferedImage image ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        ImageIO.write( image, getOutputFormat( image ), out );
+
+        return out.toByteArray( );
+    }
+
+    /**
+     * Get the format used to encode an image : png if the image has transparency, jpg otherwise
+     * 
+     * @param image
+     *            the image
+     * @return the format name
+     */
+    public static String getOutputFormat( BufferedImage image )
+    {
+        return image.getColorModel( ).hasAlpha( ) ? PARAMETER_PNG : PARAMETER_JPG;
+    }
+
+    /**
+     * Get the mime type of the format used to encode an image
+     * 
+     * @param image
+     *            the image
+     * @return the mime type
+     */
+    public static String getOutputMimeType( BufferedImage image )
+    {
+        return image.getColorModel( ).hasAlpha( ) ? MIME_TYPE_PNG : MIME_TYPE_JPG;
+    }
+
+    /**
+     * Create a FileItem with the specfied content bytes.
+     * 
+     * @param contentBytes
+     *            the content
+     * @param strFieldName
+     *            the field name
+     * @param strContentType
+     *            the content type
+     * @param strFileName
+     *            the file name
+     * @return the file item
+     */
+    public static FileItem createFileItem( byte [ ] contentBytes, String strFieldName, String strContentType, String strFileName )
+    {
+        FileItemFactory factory = new DiskFileItemFactory( );
+        FileItem item = factory.createItem( strFieldName, strContentType, false, strFileName );
+
+        try
+        {
+            OutputStream os = item.getOutputStream( );
+            os.write( contentBytes );
+            os.close( );
         }
-        catch( Exception e )
+        catch( IOException e )
         {
-            safeState = false;
-            AppLogService.error( "Error during Image file processing ! {}", e.getMessage( ), e );
+            AppLogService.error( "ImageUtils:createFileItem( ): {} ", e.getMessage( ), e );
         }
-
-        return safeState;
+        return item;
     }
 
     /**
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.apache.commons.fileupload.FileItem;
+
+import fr.paris.lutece.plugins.galleryimage.service.ImageDecodeLimiter;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * An image decoded, sanitized and encoded again by the {@link ImagePipeline}. The decode memory reserved by the pipeline is held until the processed
+ * image is closed, so that the renditions and the hashes computed from the sanitized image stay within the budget.
+ */
+public class ProcessedImage implements AutoCloseable
+{
+    private final BufferedImage _image;
+    private final byte [ ] _content;
+    private final String _strFormatName;
+    private final String _strMimeType;
+    private final ImageDecodeLimiter.Permit _permit;
+
+    /**
+     * Constructor
+     * 
+     * @param image
+     *            the sanitized image
+     * @param content
+     *            the encoded image
+     * @param strFormatName
+     *            the format of the encoded image
+     * @param strMimeType
+     *            the mime type of the encoded image
+     * @param permit
+     *            the decode memory reserved for the image, released when the processed image is closed, or null
+     */
+    public ProcessedImage( BufferedImage image, byte [ ] content, String strFormatName, String strMimeType, ImageDecodeLimiter.Permit permit )
+    {
+        _image = image;
+        _content = content;
+        _strFormatName = strFormatName;
+        _strMimeType = strMimeType;
+        _permit = permit;
+    }
+
+    /**
+     * Release the decoded image and its decode memory. The encoded image remains available. Closing twice has no effect.
+     */
+    @Override
+    public void close( )
+    {
+        _image.flush( );
+
+        if ( _permit != null )
+        {
+            _permit.close( );
+        }
+    }
+
+    /**
+     * @return the sanitized image
+     */
+    public BufferedImage getImage( )
+    {
+        return _image;
+    }
+
+    /**
+     * @return the encoded image
+     */
+    public byte [ ] getContent( )
+    {
+        return _content;
+    }
+
+    /**
+     * @return the format of the encoded image
+     */
+    public String getFormatName( )
+    {
+        return _strFormatName;
+    }
+
+    /**
+     * @return the mime type of the encoded image
+     */
+    public String getMimeType( )
+    {
+        return _strMimeType;
+    }
+
+    /**
+     * @return the width of the image
+     */
+    public int getWidth( )
+    {
+        return _image.getWidth( );
+    }
+
+    /**
+     * @return the height of the image
+     */
+    public int getHeight( )
+    {
+        return _image.getHeight( );
+    }
+
+    /**
+     * Create the placeholder of the image
+     * 
+     * @return the placeholder as a data URI, or null if it can't be created
+     * @see ImageUtils#placeholder(BufferedImage)
+     */
+    public String createPlaceholder( )
+    {
+        try
+        {
+            return ImageUtils.placeholder( _image );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "ProcessedImage:createPlaceholder( ): {} ", e.getMessage( ), e );
+        }
+
+        return null;
+    }
+
+    /**
+     * Create a file item holding the encoded image, to be stored in place of the uploaded file
+     * 
+     * @param uploadedFileItem
+     *            the uploaded file
+     * @return the file item
+     */
+    public FileItem toFileItem( FileItem uploadedFileItem )
+    {
+        return ImageUtils.createFileItem( _content, uploadedFileItem.getFieldName( ), _strMimeType, uploadedFileItem.getName( ) );
+    }
+}
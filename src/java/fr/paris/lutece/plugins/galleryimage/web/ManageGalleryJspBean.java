@@ -34,6 +34,7 @@
 package fr.paris.lutece.plugins.galleryimage.web;
 
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -50,10 +51,10 @@ import com.rometools.rome.io.impl.Base64;
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.galleryimage.business.Gallery;
 import fr.paris.lutece.plugins.galleryimage.business.GalleryHome;
-import fr.paris.lutece.plugins.galleryimage.business.GalleryImage;
 import fr.paris.lutece.plugins.galleryimage.business.GalleryImageHome;
 import fr.paris.lutece.plugins.galleryimage.business.Image;
 import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryImagePositionService;
 import fr.paris.lutece.plugins.galleryimage.util.EnumGalleryImageType;
 import fr.paris.lutece.portal.business.rbac.RBAC;
 import fr.paris.lutece.portal.service.admin.AccessDeniedException;
@@ -66,7 +67,7 @@ import fr.paris.lutece.portal.util.mvc.admin.MVCAdminJspBean;
 import fr.paris.lutece.portal.util.mvc.admin.annotations.Controller;
 import fr.paris.lutece.portal.util.mvc.commons.annotations.Action;
 import fr.paris.lutece.portal.util.mvc.commons.annotations.View;
-import fr.paris.lutece.portal.web.util.LocalizedPaginator;
+import fr.paris.lutece.portal.web.util.LocalizedDelegatePaginator;
 import fr.paris.lutece.util.ReferenceList;
 import fr.paris.lutece.util.html.AbstractPaginator;
 import fr.paris.lutece.util.html.HtmlTemplate;
@@ -96,6 +97,9 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
     private static final String ACTION_DELETE_GALLERY_IMAGE         = "deleteGalleryImage";
     private static final String ACTION_ADD_IMAGE_TO_GALLERY         = "addImageToGallery";
     private static final String ACTION_DELETE_IMAGE_TO_GALLERY      = "deleteImageToGallery";
+    private static final String ACTION_MOVE_IMAGE_IN_GALLERY        = "moveImageInGallery";
+    private static final String ACTION_ADD_IMAGES_TO_GALLERY        = "addImagesToGallery";
+    private static final String ACTION_DELETE_IMAGES_TO_GALLERY     = "deleteImagesToGallery";
 
     // MARKS
     private static final String MARK_LIST_GALLERY_TYPE              = "refListGallerytype";
@@ -114,6 +118,7 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
     // PARAMETER
     private static final String PARAMETER_ID                        = "id";
     private static final String PARAMETER_ID_IMAGE                  = "idImage";
+    private static final String PARAMETER_DIRECTION                 = "direction";
     private static final String PROPERTY_NUMBER_OF_DEMAND_PER_PAGE  = "galleryimage.paginator.image_gallery.numberOfItemsPerPage";
 
     // CONSTANTS
@@ -121,6 +126,7 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
     private static final String CURRENT_PAGE_INDEX_GALLERY_IMAGE    = "current_page_index_gallery_image";
     private static final String CURRENT_PAGE_INDEX_IMAGE_OF_GALLERY = "current_page_index_image_of_gallery";
     private static final String UNAUTHORIZED                        = "Unauthorized";
+    private static final String DIRECTION_UP                        = "up";
 
     /**
      * 
@@ -267,17 +273,35 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
                 throw new AccessDeniedException( ManageGalleryJspBean.UNAUTHORIZED );
             }
 
-            List<Integer> listIdsSelected = ImageHome.getIdsListLinkedToGallery( config.getIdGallery( ) );
-            List<Integer> listIdsAvailable = ImageHome.getIdsList( );
-            List<Integer> listIdsAvailableOnlyGallery = ImageHome.getIdsList( config.getIdGallery( ) );
-            
-            LocalizedPaginator<Integer> paginatorImageSelected = getPaginator( request, listIdsSelected, CURRENT_PAGE_INDEX_GALLERY_IMAGE, strIdGallery );
-            LocalizedPaginator<Integer> paginatorImageAvailable = getPaginator( request, listIdsAvailable, CURRENT_PAGE_INDEX_IMAGE, strIdGallery );
-            LocalizedPaginator<Integer> paginatorImageAvailableOnlyGallery = getPaginator( request, listIdsAvailableOnlyGallery, CURRENT_PAGE_INDEX_IMAGE_OF_GALLERY, strIdGallery );
-
-            model.put( MARK_LIST_IMAGE_AVAILABLE, ImageHome.getImagesByIdsWithBinary( paginatorImageAvailable.getPageItems( ) ) );
-            model.put( MARK_LIST_IMAGE_SELECTED, ImageHome.getImagesByIdsWithBinary( paginatorImageSelected.getPageItems( ) ) );
-            model.put( MARK_LIST_IMAGE_OF_GALLERY, ImageHome.getImagesByIdsWithBinary( paginatorImageAvailableOnlyGallery.getPageItems( ) ));
+            int nIdGallery = config.getIdGallery( );
+            int nItemsPerPage = AppPropertiesService.getPropertyInt( PROPERTY_NUMBER_OF_DEMAND_PER_PAGE, 5 );
+
+            int nCountSelected = ImageHome.countImagesLinkedToGallery( nIdGallery );
+            int nPageSelected = getPageIndex( request, CURRENT_PAGE_INDEX_GALLERY_IMAGE, nCountSelected, nItemsPerPage );
+            List<Image> listImageSelected = ImageHome.getImagesLinkedToGalleryPage( nIdGallery, ( nPageSelected - 1 ) * nItemsPerPage, nItemsPerPage );
+
+            int nCountAvailable = ImageHome.countImages( );
+            int nPageAvailable = getPageIndex( request, CURRENT_PAGE_INDEX_IMAGE, nCountAvailable, nItemsPerPage );
+            List<Image> listImageAvailable = ImageHome.getImagesPage( ( nPageAvailable - 1 ) * nItemsPerPage, nItemsPerPage );
+
+            int nCountOfGallery = ImageHome.countImagesByGallery( nIdGallery );
+            int nPageOfGallery = getPageIndex( request, CURRENT_PAGE_INDEX_IMAGE_OF_GALLERY, nCountOfGallery, nItemsPerPage );
+            List<Image> listImageOfGallery = ImageHome.getImagesByGalleryPage( nIdGallery, ( nPageOfGallery - 1 ) * nItemsPerPage, nItemsPerPage );
+
+            ImageHome.loadBinaries( listImageSelected, 0 );
+            ImageHome.loadBinaries( listImageAvailable, 0 );
+            ImageHome.loadBinaries( listImageOfGallery, 0 );
+
+            LocalizedDelegatePaginator<Image> paginatorImageSelected = getPaginator( request, listImageSelected, nCountSelected, CURRENT_PAGE_INDEX_GALLERY_IMAGE,
+                    nPageSelected, strIdGallery );
+            LocalizedDelegatePaginator<Image> paginatorImageAvailable = getPaginator( request, listImageAvailable, nCountAvailable, CURRENT_PAGE_INDEX_IMAGE,
+                    nPageAvailable, strIdGallery );
+            LocalizedDelegatePaginator<Image> paginatorImageAvailableOnlyGallery = getPaginator( request, listImageOfGallery, nCountOfGallery,
+                    CURRENT_PAGE_INDEX_IMAGE_OF_GALLERY, nPageOfGallery, strIdGallery );
+
+            model.put( MARK_LIST_IMAGE_AVAILABLE, listImageAvailable );
+            model.put( MARK_LIST_IMAGE_SELECTED, listImageSelected );
+            model.put( MARK_LIST_IMAGE_OF_GALLERY, listImageOfGallery );
             model.put( MARK_ID_GALLERY, strIdGallery );
             model.put( MARK_PAGINATOR_IMAGE, paginatorImageAvailable );
             model.put( MARK_PAGINATOR_IMAGE_SELECTED, paginatorImageSelected );
@@ -318,12 +342,7 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
 
             if ( image != null )
             {
-                GalleryImageHome.removeByGalleryIdAndIdImage( config.getIdGallery( ), image.getIdImage( ) );               
-                GalleryImage galleryImage = new GalleryImage( );
-                galleryImage.setIdGallery( config.getIdGallery( ) );
-                galleryImage.setIdImage( image.getIdImage( ) );
-
-                GalleryImageHome.create( galleryImage );
+                GalleryImagePositionService.getInstance( ).addImage( config.getIdGallery( ), image.getIdImage( ) );
                 return getListImagesGallery( request );
             }
         }
@@ -363,6 +382,123 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
         return getHomeUrl( request );
     }
 
+    /**
+     * doAddImagesToGallery : links all the selected images to the gallery at once
+     * 
+     * @param request
+     * @return
+     * @throws AccessDeniedException
+     */
+    @Action( ACTION_ADD_IMAGES_TO_GALLERY )
+    public String doAddImagesToGallery( HttpServletRequest request ) throws AccessDeniedException
+    {
+        Gallery gallery = getManagedGallery( request );
+
+        if ( gallery != null )
+        {
+            GalleryImagePositionService.getInstance( ).addImages( gallery.getIdGallery( ), getSelectedImageIds( request ) );
+            return getListImagesGallery( request );
+        }
+
+        return getHomeUrl( request );
+    }
+
+    /**
+     * doDeleteImagesToGallery : unlinks all the selected images from the gallery at once
+     * 
+     * @param request
+     * @return
+     * @throws AccessDeniedException
+     */
+    @Action( ACTION_DELETE_IMAGES_TO_GALLERY )
+    public String doDeleteImagesToGallery( HttpServletRequest request ) throws AccessDeniedException
+    {
+        Gallery gallery = getManagedGallery( request );
+
+        if ( gallery != null )
+        {
+            GalleryImagePositionService.getInstance( ).removeImages( gallery.getIdGallery( ), getSelectedImageIds( request ) );
+            return getListImagesGallery( request );
+        }
+
+        return getHomeUrl( request );
+    }
+
+    /**
+     * Get the gallery of the request, checking that the user can manage its images
+     * 
+     * @param request
+     * @return the gallery, or null if the request has no valid gallery id
+     * @throws AccessDeniedException
+     */
+    private Gallery getManagedGallery( HttpServletRequest request ) throws AccessDeniedException
+    {
+        String strIdGallery = request.getParameter( PARAMETER_ID );
+
+        if ( !StringUtils.isNumeric( strIdGallery ) || StringUtils.isEmpty( strIdGallery ) )
+        {
+            return null;
+        }
+
+        Gallery gallery = GalleryHome.find( Integer.parseInt( strIdGallery ) );
+
+        if ( gallery != null
+                && !RBACService.isAuthorized( Gallery.RESOURCE_TYPE, gallery.getCodeGallery( ), Gallery.PERMISSION_MANAGE_GALLERY_IMAGE, ( User ) getUser( ) ) )
+        {
+            throw new AccessDeniedException( ManageGalleryJspBean.UNAUTHORIZED );
+        }
+
+        return gallery;
+    }
+
+    /**
+     * Get the ids of the selected images
+     * 
+     * @param request
+     * @return the image ids
+     */
+    private static List<Integer> getSelectedImageIds( HttpServletRequest request )
+    {
+        List<Integer> listIdImages = new ArrayList<>( );
+        String [ ] strIdImages = request.getParameterValues( PARAMETER_ID_IMAGE );
+
+        if ( strIdImages != null )
+        {
+            for ( String strIdImage : strIdImages )
+            {
+                if ( StringUtils.isNumeric( strIdImage ) && StringUtils.isNotEmpty( strIdImage ) )
+                {
+                    listIdImages.add( Integer.parseInt( strIdImage ) );
+                }
+            }
+        }
+
+        return listIdImages;
+    }
+
+    /**
+     * doMoveImageInGallery : moves an image one step up or down in the gallery
+     * 
+     * @param request
+     * @return
+     * @throws AccessDeniedException
+     */
+    @Action( ACTION_MOVE_IMAGE_IN_GALLERY )
+    public String doMoveImageInGallery( HttpServletRequest request ) throws AccessDeniedException
+    {
+        Gallery gallery = getManagedGallery( request );
+        String strIdImage = request.getParameter( PARAMETER_ID_IMAGE );
+
+        if ( gallery != null && StringUtils.isNumeric( strIdImage ) && StringUtils.isNotEmpty( strIdImage ) )
+        {
+            GalleryImagePositionService.getInstance( ).move( gallery.getIdGallery( ), Integer.parseInt( strIdImage ),
+                    DIRECTION_UP.equals( request.getParameter( PARAMETER_DIRECTION ) ) );
+            return getListImagesGallery( request );
+        }
+
+        return getHomeUrl( request );
+    }
+
     @View( VIEW_SELECT_LIST_GALLERY )
     public String getListGallery( HttpServletRequest request )
     {
@@ -381,16 +517,19 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
     }
 
     /**
-     * Paginator
+     * Get the current page index of a list, kept in session and bounded by the number of pages
      * 
-     * @param <T>
      * @param request
-     * @param listItems
+     *            the request
      * @param strAttrCurrentPageIndex
-     * @param strIdGallery
-     * @return
+     *            the page index parameter and session attribute name
+     * @param nItemsCount
+     *            the number of items of the list
+     * @param nItemsPerPage
+     *            the number of items per page
+     * @return the page index, starting at 1
      */
-    private static <T> LocalizedPaginator<T> getPaginator( HttpServletRequest request, List<T> listItems, String strAttrCurrentPageIndex, String strIdGallery )
+    private static int getPageIndex( HttpServletRequest request, String strAttrCurrentPageIndex, int nItemsCount, int nItemsPerPage )
     {
         HttpSession session = request.getSession( true );
 
@@ -399,11 +538,33 @@ public class ManageGalleryJspBean extends MVCAdminJspBean
         strCurrentPageIndex = AbstractPaginator.getPageIndex( request, strAttrCurrentPageIndex, strCurrentPageIndex );
         session.setAttribute( strAttrCurrentPageIndex, strCurrentPageIndex );
 
+        int nPageIndex = StringUtils.isNumeric( strCurrentPageIndex ) && StringUtils.isNotEmpty( strCurrentPageIndex ) ? Integer.parseInt( strCurrentPageIndex ) : 1;
+        int nPagesCount = Math.max( 1, ( nItemsCount + nItemsPerPage - 1 ) / nItemsPerPage );
+
+        return Math.min( Math.max( nPageIndex, 1 ), nPagesCount );
+    }
+
+    /**
+     * Paginator of a page loaded by the database
+     * 
+     * @param <T>
+     * @param request
+     * @param listPageItems
+     * @param nItemsCount
+     * @param strAttrCurrentPageIndex
+     * @param nPageIndex
+     * @param strIdGallery
+     * @return
+     */
+    private static <T> LocalizedDelegatePaginator<T> getPaginator( HttpServletRequest request, List<T> listPageItems, int nItemsCount,
+            String strAttrCurrentPageIndex, int nPageIndex, String strIdGallery )
+    {
         int nDefaultItemsPerPage = AppPropertiesService.getPropertyInt( PROPERTY_NUMBER_OF_DEMAND_PER_PAGE, 5 );
 
         String strUrl = AppPathService.getBaseUrl( request ) + "jsp/admin/plugins/galleryimage/ManageGallery.jsp?view=listImagesGallery" + "&id=" + strIdGallery;
 
         // PAGINATOR
-        return new LocalizedPaginator<>( listItems, nDefaultItemsPerPage, strUrl, strAttrCurrentPageIndex, strCurrentPageIndex, request.getLocale( ) );
+        return new LocalizedDelegatePaginator<>( listPageItems, nDefaultItemsPerPage, strUrl, strAttrCurrentPageIndex, String.valueOf( nPageIndex ), nItemsCount,
+                request.getLocale( ) );
     }
 }
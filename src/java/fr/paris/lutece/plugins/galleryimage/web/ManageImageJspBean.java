@@ -33,29 +33,46 @@
  */
 package fr.paris.lutece.plugins.galleryimage.web;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.galleryimage.business.GalleryImageHome;
 import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryStateService;
 import fr.paris.lutece.plugins.galleryimage.service.IImageService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageFileService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageRenditionService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageUploadJob;
+import fr.paris.lutece.plugins.galleryimage.service.ImageUploadJobService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageUploadResult;
+import fr.paris.lutece.plugins.galleryimage.service.PerceptualHashService;
+import fr.paris.lutece.plugins.galleryimage.util.ImagePipeline;
 import fr.paris.lutece.plugins.galleryimage.util.ImageUtils;
+import fr.paris.lutece.plugins.galleryimage.util.ProcessedImage;
 import fr.paris.lutece.portal.business.rbac.RBAC;
-import fr.paris.lutece.portal.service.file.FileService;
-import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.message.AdminMessage;
 import fr.paris.lutece.portal.service.message.AdminMessageService;
 import fr.paris.lutece.portal.service.rbac.RBACService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.template.AppTemplateService;
+import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPathService;
 import fr.paris.lutece.portal.web.admin.PluginAdminPageJspBean;
 import fr.paris.lutece.portal.web.upload.MultipartHttpServletRequest;
@@ -69,11 +86,14 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
     // JSP
     private static final String JSP_LIST_IMAGE = "/jsp/admin/plugins/galleryimage/GetListImage.jsp";
     private static final String JSP_MANAGE_IMAGE_OF_GALLERY = "jsp/admin/plugins/galleryimage/ManageGallery.jsp?view=listImagesGallery&id=";
+    private static final String JSP_CREATE_IMAGES = "jsp/admin/plugins/galleryimage/GetCreateImages.jsp?idGallery=";
+    private static final String JSP_PARAMETER_JOB = "&job=";
     
     // TEMPLATE
     private static final String TEMPLATE_SAVE_IMAGE = "admin/plugins/galleryimage/manageimage/save_image.html";
     private static final String TEMPLATE_LIST_IMAGE = "admin/plugins/galleryimage/manageimage/list_image.html";
     private static final String TEMPLATE_MODIFY_IMAGE = "admin/plugins/galleryimage/manageimage/modify_image.html";
+    private static final String TEMPLATE_SAVE_IMAGES = "admin/plugins/galleryimage/manageimage/save_images.html";
 
     // MARKS
     private static final String MARK_IMAGE = "image";
@@ -81,14 +101,31 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
     private static final String MARK_IMAGE_WIDTH = "image_width";
     private static final String MARK_IMAGE_CROPPABLE = "image_croppable";
     private static final String MARK_ID_GALLERY = "idGallery";
+    private static final String MARK_IMAGES = "images";
+    private static final String MARK_ID_JOB = "idJob";
+    private static final String MARK_SIMILAR_IMAGES = "similarImages";
+
+    // JSON
+    private static final String JSON_ID = "id";
+    private static final String JSON_STATUS = "status";
+    private static final String JSON_PROCESSED = "processed";
+    private static final String JSON_RESULTS = "results";
+    private static final String JSON_FILE_NAME = "fileName";
+    private static final String JSON_MESSAGE = "message";
+    private static final String JSON_ID_IMAGE = "idImage";
+    private static final String JSON_SIMILAR = "similar";
 
     // PARAMETERS
     private static final String PARAMETER_ID = "id";
     private static final String PARAMETER_ID_GALLERY = "idGallery";
+    private static final String PARAMETER_ID_GALLERY_FORM = "id_gallery";
+    private static final String PARAMETER_JOB = "job";
     
     // PROPERIES
     private static final String PROPERTY_ERROR_SAFE_IMAGE = "galleryimage.error.file_not_safe";
     private static final String PROPERTY_ERROR_UNAUTHORIZED = "galleryimage.rbac.error.unauthorized";
+    private static final String PROPERTY_ERROR_UPLOAD_QUEUE_FULL = "galleryimage.upload.error.queue_full";
+    private static final String PROPERTY_WARNING_SIMILAR_IMAGES = "galleryimage.upload.warning.similar_images";
     
     // SERVICES
     private IImageService _imageService = SpringContextService.getBean( IImageService.BEAN_NAME );
@@ -144,29 +181,164 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
 
         FileItem fileParameterBinaryValue = multipartRequest.getFile( MARK_IMAGE );
 
-        if ( !ImageUtils.safeImage( fileParameterBinaryValue ) )
-        {
-            return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_SAFE_IMAGE, AdminMessage.TYPE_ERROR );
-        }
-
-        if ( fileParameterBinaryValue != null && fileParameterBinaryValue.getSize( ) > 0 )
+        // The decode memory is held until the renditions and the hash are computed from the sanitized image
+        try ( ProcessedImage processedImage = processImage( fileParameterBinaryValue, strImageCroppable, strImageWidth ) )
         {
-            if ( "on".equals( strImageCroppable ) && StringUtils.isNumeric( strImageWidth ) )
+            if ( processedImage == null )
             {
-                fileParameterBinaryValue = ImageUtils.resizeImage( fileParameterBinaryValue, Integer.parseInt( strImageWidth ) );
+                return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_SAFE_IMAGE, AdminMessage.TYPE_ERROR );
             }
 
-            FileImagePublicService.init( );
-            image.setIdFile( Integer.parseInt( FileImagePublicService.getInstance( ).addImageResource( fileParameterBinaryValue ) ) );
+            image.setIdFile( ImageFileService.getInstance( ).store( processedImage.toFileItem( fileParameterBinaryValue ) ) );
+            image.setPlaceholder( processedImage.createPlaceholder( ) );
+            image.setMetadata( processedImage );
             _imageService.create( image );
+            ImageRenditionService.getInstance( ).createRenditions( image, processedImage.getImage( ) );
+            PerceptualHashService.getInstance( ).store( image.getIdImage( ), ImageUtils.perceptualHash( processedImage.getImage( ) ) );
         }
 
+        String strUrl;
+
         if( image.getIdGallery( ) > 0 )
         {
-            return AppPathService.getBaseUrl( request ) + JSP_MANAGE_IMAGE_OF_GALLERY + image.getIdGallery( );
+            strUrl = AppPathService.getBaseUrl( request ) + JSP_MANAGE_IMAGE_OF_GALLERY + image.getIdGallery( );
         } else
         {
-            return AppPathService.getBaseUrl( request ) + JSP_LIST_IMAGE;
+            strUrl = AppPathService.getBaseUrl( request ) + JSP_LIST_IMAGE;
+        }
+
+        List<Integer> listSimilarImages = PerceptualHashService.getInstance( ).findSimilar( image.getIdImage( ) );
+
+        if ( !listSimilarImages.isEmpty( ) )
+        {
+            Object [ ] messageArgs = {
+                    listSimilarImages.size( ), listSimilarImages.stream( ).map( String::valueOf ).collect( Collectors.joining( ", " ) )
+            };
+
+            return AdminMessageService.getMessageUrl( request, PROPERTY_WARNING_SIMILAR_IMAGES, messageArgs, strUrl, AdminMessage.TYPE_WARNING );
+        }
+
+        return strUrl;
+    }
+
+    /**
+     * getCreateImages : the form of the bulk upload, following the progress of the submitted job
+     * 
+     * @param request
+     * @return
+     */
+    public String getCreateImages( HttpServletRequest request )
+    {
+        if ( !RBACService.isAuthorized( Image.RESOURCE_TYPE, RBAC.WILDCARD_RESOURCES_ID, Image.PERMISSION_CREATE, (User) getUser( ) ) )
+        {
+            return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_UNAUTHORIZED, AdminMessage.TYPE_ERROR );
+        }
+
+        Locale locale = getLocale( );
+        Map<String, Object> model = new HashMap<>( );
+
+        model.put( MARK_ID_GALLERY, request.getParameter( PARAMETER_ID_GALLERY ) );
+
+        ImageUploadJob job = ImageUploadJobService.getInstance( ).getJob( request.getParameter( PARAMETER_JOB ), getUser( ).getUserId( ) );
+
+        if ( job != null )
+        {
+            model.put( MARK_ID_JOB, job.getId( ) );
+        }
+
+        HtmlTemplate html = AppTemplateService.getTemplate( TEMPLATE_SAVE_IMAGES, locale, model );
+
+        return html.getHtml( );
+    }
+
+    /**
+     * doCreateImages : store the uploaded files and queue the creation of an image from each file, or from each entry of the uploaded ZIP archives
+     * 
+     * @param request
+     * @return
+     */
+    public String doCreateImages( HttpServletRequest request )
+    {
+        if ( !RBACService.isAuthorized( Image.RESOURCE_TYPE, RBAC.WILDCARD_RESOURCES_ID, Image.PERMISSION_CREATE, (User) getUser( ) ) )
+        {
+            return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_UNAUTHORIZED, AdminMessage.TYPE_ERROR );
+        }
+
+        String strImageWidth = request.getParameter( MARK_IMAGE_WIDTH );
+        int nIdGallery = NumberUtils.toInt( request.getParameter( PARAMETER_ID_GALLERY_FORM ) );
+        int nWidth = 0;
+
+        if ( "on".equals( request.getParameter( MARK_IMAGE_CROPPABLE ) ) && StringUtils.isNumeric( strImageWidth ) )
+        {
+            nWidth = Integer.parseInt( strImageWidth );
+        }
+
+        MultipartHttpServletRequest multipartRequest = (MultipartHttpServletRequest) request;
+
+        ImageUploadJob job = ImageUploadJobService.getInstance( ).submit( getUser( ).getUserId( ), multipartRequest.getFileList( MARK_IMAGES ), nIdGallery,
+                nWidth );
+
+        if ( job == null )
+        {
+            return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_UPLOAD_QUEUE_FULL, AdminMessage.TYPE_ERROR );
+        }
+
+        return AppPathService.getBaseUrl( request ) + JSP_CREATE_IMAGES + nIdGallery + JSP_PARAMETER_JOB + job.getId( );
+    }
+
+    /**
+     * getUploadJobStatus : the progress of a bulk upload job, in JSON
+     * 
+     * @param request
+     * @return the JSON status, or an empty object if the job is unknown
+     */
+    public String getUploadJobStatus( HttpServletRequest request )
+    {
+        Map<String, Object> mapStatus = new HashMap<>( );
+        ImageUploadJob job = ImageUploadJobService.getInstance( ).getJob( request.getParameter( PARAMETER_JOB ), getUser( ).getUserId( ) );
+
+        if ( job != null && RBACService.isAuthorized( Image.RESOURCE_TYPE, RBAC.WILDCARD_RESOURCES_ID, Image.PERMISSION_CREATE, (User) getUser( ) ) )
+        {
+            Locale locale = getLocale( );
+            List<Map<String, Object>> listResults = new ArrayList<>( );
+            int nProcessed = 0;
+
+            for ( ImageUploadResult result : job.getResults( ) )
+            {
+                if ( result.getStatus( ) == null )
+                {
+                    continue;
+                }
+
+                Map<String, Object> mapResult = new HashMap<>( );
+                mapResult.put( JSON_FILE_NAME, result.getFileName( ) );
+                mapResult.put( JSON_STATUS, result.getStatus( ).name( ) );
+                mapResult.put( JSON_ID_IMAGE, result.getIdImage( ) );
+                mapResult.put( JSON_SIMILAR, result.getSimilarImages( ) );
+
+                if ( result.getMessageKey( ) != null )
+                {
+                    mapResult.put( JSON_MESSAGE, I18nService.getLocalizedString( result.getMessageKey( ), locale ) );
+                }
+                listResults.add( mapResult );
+                nProcessed++;
+            }
+
+            mapStatus.put( JSON_ID, job.getId( ) );
+            mapStatus.put( JSON_STATUS, job.getStatus( ).name( ) );
+            mapStatus.put( JSON_PROCESSED, nProcessed );
+            mapStatus.put( JSON_RESULTS, listResults );
+        }
+
+        try
+        {
+            return new ObjectMapper( ).writeValueAsString( mapStatus );
+        }
+        catch( JsonProcessingException e )
+        {
+            AppLogService.error( "ManageImageJspBean:getUploadJobStatus( ): {} ", e.getMessage( ), e );
+
+            return "{}";
         }
     }
 
@@ -215,8 +387,10 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
         if ( StringUtils.isNumeric( strIdImage ) )
         {
             Image image = _imageService.findImageWithBinary( Integer.parseInt( strIdImage ) );
+            List<Integer> listSimilarImages = PerceptualHashService.getInstance( ).findSimilar( Integer.parseInt( strIdImage ) );
 
             model.put( MARK_IMAGE, image );
+            model.put( MARK_SIMILAR_IMAGES, listSimilarImages.isEmpty( ) ? new ArrayList<>( ) : ImageHome.getImagesByIds( listSimilarImages ) );
         }
 
         HtmlTemplate html = AppTemplateService.getTemplate( TEMPLATE_MODIFY_IMAGE, locale, model );
@@ -243,34 +417,71 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
 
         MultipartHttpServletRequest multipartRequest = (MultipartHttpServletRequest) request;
         FileItem fileParameterBinaryValue = multipartRequest.getFile( MARK_IMAGE );
+        boolean bNewFile = fileParameterBinaryValue != null && fileParameterBinaryValue.getSize( ) > 0;
+        ProcessedImage processedImage = null;
 
-        if ( !ImageUtils.safeImage( fileParameterBinaryValue ) )
+        // The decode memory of a new file is held until the renditions and the hash are computed from the sanitized image
+        try
         {
-            return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_SAFE_IMAGE, AdminMessage.TYPE_ERROR );
-        }
+            if ( bNewFile )
+            {
+                processedImage = processImage( fileParameterBinaryValue, strImageCroppable, strImageWidth );
 
-        if ( StringUtils.isNumeric( strIdImage ) )
-        {
-            Image image = _imageService.findByPrimaryKey( Integer.parseInt( strIdImage ) );
-            populate( image, request );
+                if ( processedImage == null )
+                {
+                    return AdminMessageService.getMessageUrl( request, PROPERTY_ERROR_SAFE_IMAGE, AdminMessage.TYPE_ERROR );
+                }
+            }
 
-            if ( fileParameterBinaryValue != null && fileParameterBinaryValue.getSize( ) > 0 )
+            if ( StringUtils.isNumeric( strIdImage ) )
             {
-                if ( "on".equals( strImageCroppable ) && StringUtils.isNumeric( strImageWidth ) )
+                Image image = _imageService.findByPrimaryKey( Integer.parseInt( strIdImage ) );
+                populate( image, request );
+
+                int nIdOldFile = image.getIdFile( );
+
+                if ( processedImage != null )
                 {
-                    fileParameterBinaryValue = ImageUtils.resizeImage( fileParameterBinaryValue, Integer.parseInt( strImageWidth ) );
+                    // The new file is stored before the old one is released, so that an unchanged content keeps its file
+                    image.setIdFile( ImageFileService.getInstance( ).store( processedImage.toFileItem( fileParameterBinaryValue ) ) );
+                    image.setPlaceholder( processedImage.createPlaceholder( ) );
+                    image.setMetadata( processedImage );
                 }
 
-                FileImagePublicService.init( );
-                FileService.getInstance( ).getFileStoreServiceProvider( ).delete( String.valueOf( image.getIdFile( ) ) );
+                try
+                {
+                    _imageService.update( image );
+                }
+                catch( RuntimeException e )
+                {
+                    if ( processedImage != null )
+                    {
+                        ImageFileService.getInstance( ).release( image.getIdFile( ) );
+                    }
+                    throw e;
+                }
 
-                image.setIdFile( Integer.parseInt( FileImagePublicService.getInstance( ).addImageResource( fileParameterBinaryValue ) ) );
+                if ( processedImage != null )
+                {
+                    // The file store is not transactional : the old file and its renditions are only released once the image no longer uses them
+                    ImageFileService.getInstance( ).release( nIdOldFile );
+                    ImageRenditionService.getInstance( ).removeRenditions( image.getIdImage( ) );
+                    ImageRenditionService.getInstance( ).createRenditions( image, processedImage.getImage( ) );
+                    PerceptualHashService.getInstance( ).store( image.getIdImage( ), ImageUtils.perceptualHash( processedImage.getImage( ) ) );
+                    GalleryStateService.getInstance( ).invalidateImage( image.getIdImage( ) );
+                }
+
+                if( image.getIdGallery( ) > 0 )
+                {
+                    return AppPathService.getBaseUrl( request ) + JSP_MANAGE_IMAGE_OF_GALLERY + image.getIdGallery( );
+                }
             }
-            _imageService.update( image );
-            
-            if( image.getIdGallery( ) > 0 )
+        }
+        finally
+        {
+            if ( processedImage != null )
             {
-                return AppPathService.getBaseUrl( request ) + JSP_MANAGE_IMAGE_OF_GALLERY + image.getIdGallery( );
+                processedImage.close( );
             }
         }
 
@@ -296,7 +507,8 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
         {
             Image image = _imageService.findByPrimaryKey( Integer.parseInt( strIdImage ) );
 
-            FileService.getInstance( ).getFileStoreServiceProvider( ).delete( String.valueOf( image.getIdFile( ) ) );
+            ImageFileService.getInstance( ).release( image.getIdFile( ) );
+            ImageRenditionService.getInstance( ).removeRenditions( image.getIdImage( ) );
 
             GalleryImageHome.removeByImageId( image.getIdImage( ) );
             _imageService.remove( image.getIdImage( ) );
@@ -310,4 +522,31 @@ public class ManageImageJspBean extends PluginAdminPageJspBean
         return AppPathService.getBaseUrl( request ) + JSP_LIST_IMAGE;
     }
 
+    /**
+     * Decode, sanitize and optionally resize an uploaded image
+     * 
+     * @param fileItem
+     *            the uploaded file
+     * @param strImageCroppable
+     *            "on" if the image has to be resized
+     * @param strImageWidth
+     *            the width the image is resized to
+     * @return the processed image, or null if the file is not a safe image
+     */
+    private static ProcessedImage processImage( FileItem fileItem, String strImageCroppable, String strImageWidth )
+    {
+        int nWidth = ( "on".equals( strImageCroppable ) && StringUtils.isNumeric( strImageWidth ) ) ? Integer.parseInt( strImageWidth ) : 0;
+
+        try
+        {
+            return ImagePipeline.process( fileItem, nWidth );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            AppLogService.error( "Error during Image file processing ! {}", e.getMessage( ), e );
+        }
+
+        return null;
+    }
+
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.web.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.GalleryHome;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryAccessService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryCursor;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryFragmentCacheService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryState;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryStateService;
+import fr.paris.lutece.plugins.galleryimage.util.HttpCacheUtils;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * AbstractGalleryServlet : serves the pages of a front gallery. The access control, the HTTP validators and the cache of the rendered pages are
+ * shared by the formats
+ *
+ */
+public abstract class AbstractGalleryServlet extends HttpServlet
+{
+    private static final long serialVersionUID = -2591764212953620437L;
+
+    // PARAMETER
+    private static final String PARAMETER_CODE_GALLERY = "codeGallery";
+    private static final String PARAMETER_CURSOR = "cursor";
+    private static final String PARAMETER_INDEX = "index";
+    private static final String PARAMETER_ID_IMAGE_AFTER = "after";
+    private static final String PARAMETER_POSITION_AFTER = "afterPosition";
+
+    // PROPERTY
+    private static final String PROPERTY_NB_ITEMS = "galleryimage.paginator.gallery.front.numberOfItems";
+    private static final String PROPERTY_MAX_BYTES = "galleryimage.paginator.gallery.front.maxBytes";
+    private static final String PROPERTY_CACHE_MAX_AGE = "galleryimage.gallery.front.cache.maxAge";
+
+    // CONSTANTS
+    private static final String UNAUTHORIZED = "unauthorized";
+    private static final String ETAG_SEPARATOR = "-";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    {
+        processRequest( request, response, false );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doHead( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    {
+        processRequest( request, response, true );
+    }
+
+    /**
+     * Process the request : the validators are checked before loading the images and rendering the page
+     * 
+     * @param request
+     *            the request
+     * @param response
+     *            the response
+     * @param bHeadOnly
+     *            true if only the headers must be sent
+     * @throws IOException
+     *             if an error occurs while writing the response
+     */
+    private void processRequest( HttpServletRequest request, HttpServletResponse response, boolean bHeadOnly ) throws IOException
+    {
+        String strCodeGallery = request.getParameter( PARAMETER_CODE_GALLERY );
+        int nDefaultItemsPerPage = AppPropertiesService.getPropertyInt( PROPERTY_NB_ITEMS, 5 );
+        long lPageMaxBytes = AppPropertiesService.getPropertyLong( PROPERTY_MAX_BYTES, 0L );
+
+        if ( StringUtils.isNotEmpty( strCodeGallery ) )
+        {
+            GalleryCursor cursor = getCursor( request );
+
+            if ( cursor == null )
+            {
+                response.sendError( HttpServletResponse.SC_BAD_REQUEST );
+                return;
+            }
+
+            Gallery gallery = GalleryHome.findByCodeGallery( strCodeGallery );
+
+            if ( gallery == null )
+            {
+                response.sendError( HttpServletResponse.SC_NOT_FOUND );
+                return;
+            }
+
+            response.setContentType( getContentType( ) );
+
+            if ( !GalleryAccessService.getInstance( ).canView( request, gallery ) )
+            {
+                sendUnauthorized( response, bHeadOnly );
+                return;
+            }
+
+            GalleryState state = GalleryStateService.getInstance( ).getState( gallery );
+            // The version covers the content of the gallery and the rendering options : it validates the responses and keys the rendered pages
+            String strVersion = state.getFingerprint( ) + ETAG_SEPARATOR + nDefaultItemsPerPage + ETAG_SEPARATOR + lPageMaxBytes + ETAG_SEPARATOR
+                    + getVariant( request, gallery );
+            String strETag = HttpCacheUtils.buildETag( strVersion );
+
+            // No Last-Modified : the galleries don't keep the date of their content, and the date the state was computed differs between the nodes
+            HttpCacheUtils.setCacheHeaders( response, strETag, -1, gallery.isAuthenticatedMode( ),
+                    AppPropertiesService.getPropertyInt( PROPERTY_CACHE_MAX_AGE, 0 ) );
+            setVariantHeaders( response );
+
+            if ( HttpCacheUtils.isNotModified( request, strETag, -1 ) )
+            {
+                response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+                return;
+            }
+
+            if ( bHeadOnly )
+            {
+                return;
+            }
+
+            GalleryFragmentCacheService fragmentCache = GalleryFragmentCacheService.getInstance( );
+            String strKey = getFragmentKey( request, gallery, cursor, strVersion );
+            String strContent = fragmentCache.getFragment( strKey );
+
+            if ( strContent == null )
+            {
+                strContent = render( request, gallery, cursor, nDefaultItemsPerPage, lPageMaxBytes );
+                fragmentCache.putFragment( strKey, strContent );
+            }
+
+            response.getWriter( ).println( strContent );
+        }
+    }
+
+    /**
+     * Get the cursor of the requested page : the opaque cursor given with the previous page, or the page index and the last image displayed
+     * 
+     * @param request
+     *            the request
+     * @return the cursor, or null if the opaque cursor is invalid
+     */
+    private static GalleryCursor getCursor( HttpServletRequest request )
+    {
+        String strCursor = request.getParameter( PARAMETER_CURSOR );
+
+        if ( StringUtils.isNotEmpty( strCursor ) )
+        {
+            return GalleryCursor.decode( strCursor );
+        }
+
+        int nIndex = Math.max( NumberUtils.toInt( request.getParameter( PARAMETER_INDEX ), 1 ), 1 );
+        int nIdImageAfter = NumberUtils.toInt( request.getParameter( PARAMETER_ID_IMAGE_AFTER ), 0 );
+        int nPositionAfter = nIdImageAfter > 0 ? NumberUtils.toInt( request.getParameter( PARAMETER_POSITION_AFTER ), Integer.MIN_VALUE ) : Integer.MIN_VALUE;
+
+        return new GalleryCursor( nIndex, nPositionAfter, nIdImageAfter, null );
+    }
+
+    /**
+     * Send the response to a user who isn't allowed to view the gallery
+     * 
+     * @param response
+     *            the response
+     * @param bHeadOnly
+     *            true if only the headers must be sent
+     * @throws IOException
+     *             if an error occurs while writing the response
+     */
+    protected void sendUnauthorized( HttpServletResponse response, boolean bHeadOnly ) throws IOException
+    {
+        if ( !bHeadOnly )
+        {
+            response.getWriter( ).println( UNAUTHORIZED );
+        }
+    }
+
+    /**
+     * Set the headers telling on which request headers the response depends
+     * 
+     * @param response
+     *            the response
+     */
+    protected void setVariantHeaders( HttpServletResponse response )
+    {
+        // The response depends on the url only
+    }
+
+    /**
+     * @return the content type of the response
+     */
+    protected abstract String getContentType( );
+
+    /**
+     * Get the rendering options of the gallery which are part of the entity tag, including the request headers the response varies on
+     * 
+     * @param request
+     *            the request
+     * @param gallery
+     *            the gallery
+     * @return the rendering options
+     */
+    protected abstract String getVariant( HttpServletRequest request, Gallery gallery );
+
+    /**
+     * Get the key of a rendered page in the fragment cache
+     * 
+     * @param request
+     *            the request
+     * @param gallery
+     *            the gallery
+     * @param cursor
+     *            the cursor of the page
+     * @param strVersion
+     *            the version of the gallery content and of its rendering options
+     * @return the key
+     */
+    protected abstract String getFragmentKey( HttpServletRequest request, Gallery gallery, GalleryCursor cursor, String strVersion );
+
+    /**
+     * Render a page of the gallery
+     * 
+     * @param request
+     *            the request
+     * @param gallery
+     *            the gallery
+     * @param cursor
+     *            the cursor of the page
+     * @param nDefaultItemsPerPage
+     *            the number of images per page
+     * @param lPageMaxBytes
+     *            the byte budget of a page, the pages hold the same number of images if not positive
+     * @return the rendered page
+     */
+    protected abstract String render( HttpServletRequest request, Gallery gallery, GalleryCursor cursor, int nDefaultItemsPerPage, long lPageMaxBytes );
+}
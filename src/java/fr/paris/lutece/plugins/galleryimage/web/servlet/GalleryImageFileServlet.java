@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.web.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryAccessService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageRenditionService;
+import fr.paris.lutece.plugins.galleryimage.util.HttpCacheUtils;
+import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
+import fr.paris.lutece.portal.service.image.ImageResource;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * GalleryImageFileServlet : serves the binary of an image of the gallery
+ *
+ */
+public class GalleryImageFileServlet extends HttpServlet
+{
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -2318845741297612478L;
+
+    // PARAMETER
+    private static final String PARAMETER_ID_IMAGE = "id";
+    private static final String PARAMETER_WIDTH = "w";
+
+    // PROPERTY
+    private static final String PROPERTY_CACHE_MAX_AGE = "galleryimage.image.cache.maxAge";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    {
+        processRequest( request, response, false );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doHead( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    {
+        processRequest( request, response, true );
+    }
+
+    /**
+     * Process the request : the smallest rendition covering the requested width is served, or the original. A stored file is never modified, so the
+     * file id is a strong validator checked before reading the file store
+     * 
+     * @param request
+     *            the request
+     * @param response
+     *            the response
+     * @param bHeadOnly
+     *            true if only the headers must be sent
+     * @throws IOException
+     *             if an error occurs while writing the response
+     */
+    private void processRequest( HttpServletRequest request, HttpServletResponse response, boolean bHeadOnly ) throws IOException
+    {
+        int nIdImage = NumberUtils.toInt( request.getParameter( PARAMETER_ID_IMAGE ), -1 );
+        String strWidth = request.getParameter( PARAMETER_WIDTH );
+        int nWidth = StringUtils.isEmpty( strWidth ) ? 0 : NumberUtils.toInt( strWidth, -1 );
+
+        if ( nIdImage <= 0 || nWidth < 0 )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST );
+            return;
+        }
+
+        Image image = ImageHome.find( nIdImage );
+
+        if ( image == null )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+
+        // The image is visible with the galleries it belongs to, and kept out of the shared caches if one of them is protected
+        List<Gallery> listGalleries = GalleryAccessService.getInstance( ).getGalleries( image );
+
+        if ( !GalleryAccessService.getInstance( ).canView( request, listGalleries ) )
+        {
+            response.sendError( HttpServletResponse.SC_FORBIDDEN );
+            return;
+        }
+
+        int nIdFile = ImageRenditionService.getInstance( ).getIdFile( image, nWidth );
+
+        String strETag = HttpCacheUtils.buildETag( String.valueOf( nIdFile ) );
+        HttpCacheUtils.setCacheHeaders( response, strETag, -1, GalleryAccessService.getInstance( ).isPrivate( listGalleries ),
+                AppPropertiesService.getPropertyInt( PROPERTY_CACHE_MAX_AGE, 3600 ) );
+
+        if ( HttpCacheUtils.isNotModified( request, strETag, -1 ) )
+        {
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+
+        if ( bHeadOnly && nIdFile == image.getIdFile( ) && image.getMimeType( ) != null && image.getSize( ) > 0 )
+        {
+            // The headers of the original are known without reading the file store
+            response.setContentType( image.getMimeType( ) );
+            response.setContentLength( image.getSize( ) );
+            return;
+        }
+
+        FileImagePublicService.init( );
+        ImageResource imageResource = FileImagePublicService.getInstance( ).getImageResource( nIdFile );
+
+        if ( imageResource == null || imageResource.getImage( ) == null )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+
+        byte [ ] imageBytes = imageResource.getImage( );
+        response.setContentType( imageResource.getMimeType( ) );
+        response.setContentLength( imageBytes.length );
+
+        if ( bHeadOnly )
+        {
+            return;
+        }
+
+        try ( OutputStream out = response.getOutputStream( ) )
+        {
+            out.write( imageBytes );
+        }
+    }
+}
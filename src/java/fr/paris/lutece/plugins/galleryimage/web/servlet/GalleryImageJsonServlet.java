@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.web.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageRendition;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryCursor;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryFragmentCacheService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryPage;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryPagesService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageRenditionService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * 
+ * GalleryImageJsonServlet : pages of a front gallery in JSON, the images being described by their url instead of rendered slides
+ *
+ */
+public class GalleryImageJsonServlet extends AbstractGalleryServlet
+{
+    private static final long serialVersionUID = 4813528911562307345L;
+
+    // JSON
+    private static final String JSON_IMAGES = "images";
+    private static final String JSON_NEXT = "next";
+    private static final String JSON_ID = "id";
+    private static final String JSON_ID_FILE = "idFile";
+    private static final String JSON_TITLE = "title";
+    private static final String JSON_URL = "url";
+    private static final String JSON_WIDTH = "width";
+    private static final String JSON_HEIGHT = "height";
+    private static final String JSON_PLACEHOLDER = "placeholder";
+    private static final String JSON_RENDITIONS = "renditions";
+
+    // CONSTANTS
+    private static final String CONTENT_TYPE_JSON = "application/json;charset=UTF-8";
+    private static final String FORMAT_JSON = "json";
+    private static final String URL_IMAGE = "servlet/plugins/galleryimage/image?id=";
+    private static final String URL_PARAMETER_WIDTH = "&w=";
+    private static final String PLACEHOLDER_PREFIX = "data:image/";
+
+    private static final ObjectMapper _mapper = new ObjectMapper( );
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getContentType( )
+    {
+        return CONTENT_TYPE_JSON;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getVariant( HttpServletRequest request, Gallery gallery )
+    {
+        return FORMAT_JSON;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void sendUnauthorized( HttpServletResponse response, boolean bHeadOnly ) throws IOException
+    {
+        response.sendError( HttpServletResponse.SC_FORBIDDEN );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getFragmentKey( HttpServletRequest request, Gallery gallery, GalleryCursor cursor, String strVersion )
+    {
+        // The page doesn't depend on the locale
+        return GalleryFragmentCacheService.getKey( gallery.getIdGallery( ), strVersion, FORMAT_JSON, cursor, null, null, null );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String render( HttpServletRequest request, Gallery gallery, GalleryCursor cursor, int nDefaultItemsPerPage, long lPageMaxBytes )
+    {
+        GalleryPage page = GalleryPagesService.getInstance( ).getPage( gallery, cursor, nDefaultItemsPerPage, lPageMaxBytes );
+
+        // The renditions let the browser pick the width fitting the device, as for the HTML slides
+        ImageRenditionService.getInstance( ).loadRenditions( page.getImages( ) );
+
+        List<Map<String, Object>> listJsonImages = new ArrayList<>( );
+
+        for ( Image image : page.getImages( ) )
+        {
+            listJsonImages.add( toJson( image, gallery.getWidthGallery( ) ) );
+        }
+
+        Map<String, Object> mapPage = new LinkedHashMap<>( );
+        mapPage.put( JSON_IMAGES, listJsonImages );
+
+        if ( page.getNextCursor( ) != null )
+        {
+            mapPage.put( JSON_NEXT, page.getNextCursor( ).encode( ) );
+        }
+
+        try
+        {
+            return _mapper.writeValueAsString( mapPage );
+        }
+        catch( JsonProcessingException e )
+        {
+            AppLogService.error( "GalleryImageJsonServlet:render( ): {} ", e.getMessage( ), e );
+
+            return "{}";
+        }
+    }
+
+    /**
+     * Describe an image, the unknown values being left out
+     * 
+     * @param image
+     *            the image
+     * @param nWidth
+     *            the displayed width, the image servlet serves the smallest rendition covering it
+     * @return the description of the image
+     */
+    private static Map<String, Object> toJson( Image image, int nWidth )
+    {
+        Map<String, Object> mapImage = new LinkedHashMap<>( );
+        mapImage.put( JSON_ID, image.getIdImage( ) );
+        mapImage.put( JSON_ID_FILE, image.getIdFile( ) );
+        mapImage.put( JSON_TITLE, image.getTitle( ) );
+        mapImage.put( JSON_URL, ( nWidth > 0 ) ? URL_IMAGE + image.getIdImage( ) + URL_PARAMETER_WIDTH + nWidth : URL_IMAGE + image.getIdImage( ) );
+
+        if ( image.getWidth( ) > 0 && image.getHeight( ) > 0 )
+        {
+            mapImage.put( JSON_WIDTH, image.getWidth( ) );
+            mapImage.put( JSON_HEIGHT, image.getHeight( ) );
+        }
+
+        if ( image.getPlaceholder( ) != null && image.getPlaceholder( ).startsWith( PLACEHOLDER_PREFIX ) )
+        {
+            mapImage.put( JSON_PLACEHOLDER, image.getPlaceholder( ) );
+        }
+
+        if ( image.getListRenditions( ) != null && !image.getListRenditions( ).isEmpty( ) )
+        {
+            List<Map<String, Object>> listJsonRenditions = new ArrayList<>( );
+
+            for ( ImageRendition rendition : image.getListRenditions( ) )
+            {
+                Map<String, Object> mapRendition = new LinkedHashMap<>( );
+                mapRendition.put( JSON_WIDTH, rendition.getWidth( ) );
+                mapRendition.put( JSON_URL, URL_IMAGE + image.getIdImage( ) + URL_PARAMETER_WIDTH + rendition.getWidth( ) );
+                listJsonRenditions.add( mapRendition );
+            }
+
+            mapImage.put( JSON_RENDITIONS, listJsonRenditions );
+        }
+
+        return mapImage;
+    }
+}
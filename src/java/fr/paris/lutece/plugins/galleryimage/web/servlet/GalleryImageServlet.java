@@ -33,30 +33,26 @@
  */
 package fr.paris.lutece.plugins.galleryimage.web.servlet;
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
-import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.galleryimage.business.Gallery;
-import fr.paris.lutece.plugins.galleryimage.business.GalleryHome;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
 import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
-import fr.paris.lutece.portal.business.rbac.RBAC;
-import fr.paris.lutece.portal.service.admin.AdminUserService;
-import fr.paris.lutece.portal.service.rbac.RBACService;
-import fr.paris.lutece.portal.service.security.SecurityService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryCursor;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryFragmentCacheService;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryPage;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryPagesService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageRenditionService;
 import fr.paris.lutece.portal.service.template.AppTemplateService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
-import fr.paris.lutece.portal.web.util.LocalizedPaginator;
 import fr.paris.lutece.util.html.HtmlTemplate;
 
 /**
@@ -64,7 +60,7 @@ import fr.paris.lutece.util.html.HtmlTemplate;
  * GalleryImageServlet
  *
  */
-public class GalleryImageServlet extends HttpServlet
+public class GalleryImageServlet extends AbstractGalleryServlet
 {
 
     /**
@@ -80,88 +76,160 @@ public class GalleryImageServlet extends HttpServlet
     private static final String MARK_LIST_IMAGES = "listImages";
     private static final String MARK_GALLERY_CONFIG = "config";
     private static final String MARK_INDEX = "index";
-    private static final String MARK_PAGES_COUNT = "pagesCount";
     private static final String MARK_SHOW_PREVIOUS_BTN = "showPreviousBtn";
     private static final String MARK_SHOW_NEXT_BTN = "showNextBtn";
     private static final String MARK_INPUT_NAME = "inputName";
     private static final String MARK_ID_FILE = "idFileSelected";
+    private static final String MARK_JSON_PAGES = "jsonPages";
+    private static final String MARK_NEXT_CURSOR = "nextCursor";
     
     // PARAMETER
-    private static final String PARAMTER_CODE_GALLERY = "codeGallery";
     private static final String PARAMTER_INPUT_NAME = "inputName";
     private static final String PARAMTER_ID_FILE = "idFileSelected";
 
     // PROPERTY
-    private static final String PROPERTY_NB_ITEMS = "galleryimage.paginator.gallery.front.numberOfItems";
-    private static final String UNAUTHORIZED = "unauthorized";
-    
+    private static final String PROPERTY_LOAD_BINARY_LIMIT = "galleryimage.load.binary.limit";
+    private static final String PROPERTY_JSON_PAGES = "galleryimage.gallery.front.jsonPages";
+
+    // CONSTANTS
+    private static final String CONTENT_TYPE_HTML = "text/html;charset=UTF-8";
+    private static final String FORMAT_HTML = "html";
+    private static final String HEADER_VARY = "Vary";
+    private static final String HEADER_ACCEPT_LANGUAGE = "Accept-Language";
+    private static final String VARIANT_SEPARATOR = "-";
+    private static final Pattern PATTERN_INPUT_NAME = Pattern.compile( "[A-Za-z0-9_.\\-]{1,64}" );
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getContentType( )
+    {
+        return CONTENT_TYPE_HTML;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    protected String getVariant( HttpServletRequest request, Gallery gallery )
     {
-        String strCodeGallery = request.getParameter( PARAMTER_CODE_GALLERY );        
-        String strIndex = request.getParameter( MARK_INDEX );
-        int nIndex = StringUtils.isEmpty( strIndex ) ? 1 : Integer.parseInt( strIndex );
-        int nDefaultItemsPerPage = AppPropertiesService.getPropertyInt( PROPERTY_NB_ITEMS, 5 );
+        // The page is rendered in the locale of the request : a cache holding another language must not get a 304
+        return getLoadBinaryLimit( gallery ) + VARIANT_SEPARATOR + AppPropertiesService.getPropertyBoolean( PROPERTY_JSON_PAGES, false ) + VARIANT_SEPARATOR
+                + request.getLocale( );
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setVariantHeaders( HttpServletResponse response )
+    {
+        response.setHeader( HEADER_VARY, HEADER_ACCEPT_LANGUAGE );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getFragmentKey( HttpServletRequest request, Gallery gallery, GalleryCursor cursor, String strVersion )
+    {
+        return GalleryFragmentCacheService.getKey( gallery.getIdGallery( ), strVersion, FORMAT_HTML, cursor, request.getLocale( ),
+                getInputName( request ), getIdFileSelected( request ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String render( HttpServletRequest request, Gallery gallery, GalleryCursor cursor, int nDefaultItemsPerPage, long lPageMaxBytes )
+    {
         Map<String, Object> model = new HashMap<>( );
 
-        if ( StringUtils.isNotEmpty( strCodeGallery ) )
+        GalleryPage page = GalleryPagesService.getInstance( ).getPage( gallery, cursor, nDefaultItemsPerPage, lPageMaxBytes );
+        List<Image> listImages = page.getImages( );
+
+        if ( page.getNextCursor( ) != null )
         {
-            Gallery gallery = GalleryHome.findByCodeGallery( strCodeGallery );
-            PrintWriter out = response.getWriter( );
-            
-            if( gallery.isAuthenticatedMode( )&&
-                    !RBACService.isAuthorized( Gallery.RESOURCE_TYPE, RBAC.WILDCARD_RESOURCES_ID, Gallery.PERMISSION_VIEW, getUser( request ) ) )
-            {
-                out.println( UNAUTHORIZED );
-            }
-            else
-            {          
-                List<Integer> listIds = ImageHome.getIdsListLinkedToGallery( gallery.getIdGallery( ) );
-                
-                LocalizedPaginator<Integer> paginator = new LocalizedPaginator<>( listIds, nDefaultItemsPerPage, StringUtils.EMPTY,
-                        StringUtils.EMPTY, String.valueOf( nIndex ), request.getLocale( ) );
-                                        
-                model.put( MARK_PAGES_COUNT, paginator.getPagesCount( ) );
-                model.put( MARK_INDEX, nIndex );
-                model.put( MARK_SHOW_PREVIOUS_BTN, nIndex > 1 );
-                model.put( MARK_SHOW_NEXT_BTN, nIndex < paginator.getPagesCount( ) && paginator.getPagesCount( ) > 1 );
-                model.put( MARK_LIST_IMAGES, ImageHome.getImagesByIdsWithBinary( paginator.getPageItems( ) ) );
-                model.put( MARK_INPUT_NAME, request.getParameter( PARAMTER_INPUT_NAME ) );
-                model.put( MARK_ID_FILE, request.getParameter( PARAMTER_ID_FILE ) );
-                model.put( MARK_GALLERY_CONFIG, gallery );
-                
-                HtmlTemplate html ;
-                if( nIndex < 2 )
-                {
-                    html = AppTemplateService.getTemplate( TEMPLATE_GALLERY_IMAGE, request.getLocale( ), model );
-                }
-                else
-                {
-                    html = AppTemplateService.getTemplate( TEMPLATE_LIST_IMAGE, request.getLocale( ), model );
-                }
-    
-                out.println( html.getHtml( ) );
-            }
+            // The last slide carries the cursor of the next page
+            model.put( MARK_NEXT_CURSOR, page.getNextCursor( ).encode( ) );
+        }
+
+        model.put( MARK_INDEX, cursor.getIndex( ) );
+        model.put( MARK_SHOW_PREVIOUS_BTN, cursor.getIndex( ) > 1 );
+        model.put( MARK_SHOW_NEXT_BTN, page.getNextCursor( ) != null );
+
+        // Only the first slides carry their binary : the size of the fragment doesn't grow with the number of images per page
+        int nInlined = Math.min( getLoadBinaryLimit( gallery ), listImages.size( ) );
+        ImageHome.loadBinaries( listImages.subList( 0, nInlined ), gallery.getWidthGallery( ) );
+
+        if ( nInlined < listImages.size( ) )
+        {
+            // The other slides are loaded lazily through the binary servlet, with their renditions and placeholder
+            ImageRenditionService.getInstance( ).loadRenditions( listImages.subList( nInlined, listImages.size( ) ) );
+        }
+
+        model.put( MARK_LIST_IMAGES, listImages );
+        model.put( MARK_INPUT_NAME, getInputName( request ) );
+        model.put( MARK_ID_FILE, getIdFileSelected( request ) );
+        model.put( MARK_GALLERY_CONFIG, gallery );
+        model.put( MARK_JSON_PAGES, AppPropertiesService.getPropertyBoolean( PROPERTY_JSON_PAGES, false ) );
+        
+        HtmlTemplate html ;
+        if( cursor.getIndex( ) < 2 )
+        {
+            html = AppTemplateService.getTemplate( TEMPLATE_GALLERY_IMAGE, request.getLocale( ), model );
+        }
+        else
+        {
+            html = AppTemplateService.getTemplate( TEMPLATE_LIST_IMAGE, request.getLocale( ), model );
         }
+
+        return html.getHtml( );
     }
     
     /**
-     * Get user authenticated
+     * Get the name of the selection input. The fragment and its cache key only keep a well formed name
+     * 
      * @param request
-     * @return user authenticated
+     *            the request
+     * @return the input name, or null if it is missing or malformed
      */
-    private User getUser ( HttpServletRequest request )
+    private static String getInputName( HttpServletRequest request )
     {
-        User user = SecurityService.getInstance( ).getRegisteredUser( request );
-        
-        if( user == null )
+        String strInputName = request.getParameter( PARAMTER_INPUT_NAME );
+
+        return ( strInputName != null && PATTERN_INPUT_NAME.matcher( strInputName ).matches( ) ) ? strInputName : null;
+    }
+
+    /**
+     * Get the id of the selected file. The fragment and its cache key only keep a numeric id
+     * 
+     * @param request
+     *            the request
+     * @return the file id, or null if it is missing or malformed
+     */
+    private static String getIdFileSelected( HttpServletRequest request )
+    {
+        int nIdFile = NumberUtils.toInt( request.getParameter( PARAMTER_ID_FILE ), -1 );
+
+        return ( nIdFile > 0 ) ? String.valueOf( nIdFile ) : null;
+    }
+
+    /**
+     * Get the number of images of a page whose binary is inlined in the fragment
+     * 
+     * @param gallery
+     *            the gallery
+     * @return the limit of the gallery, or the default limit of the plugin if the gallery doesn't define one
+     */
+    private static int getLoadBinaryLimit( Gallery gallery )
+    {
+        if ( gallery.getLoadBinaryLimit( ) >= 0 )
         {
-            user = AdminUserService.getAdminUser( request );
+            return gallery.getLoadBinaryLimit( );
         }
-        return user;
+
+        return Math.max( AppPropertiesService.getPropertyInt( PROPERTY_LOAD_BINARY_LIMIT, 1 ), 0 );
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.web.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.galleryimage.business.Gallery;
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+import fr.paris.lutece.plugins.galleryimage.business.ImageHome;
+import fr.paris.lutece.plugins.galleryimage.service.GalleryAccessService;
+import fr.paris.lutece.plugins.galleryimage.service.ImageTransformService;
+import fr.paris.lutece.plugins.galleryimage.util.HttpCacheUtils;
+import fr.paris.lutece.plugins.galleryimage.util.ImageDecodeTimeoutException;
+import fr.paris.lutece.portal.service.image.ImageResource;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * GalleryImageTransformServlet : serves an image of the gallery resized to the requested width and/or height
+ *
+ */
+public class GalleryImageTransformServlet extends HttpServlet
+{
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 3815095728262046175L;
+
+    // PARAMETER
+    private static final String PARAMETER_ID_IMAGE = "id";
+    private static final String PARAMETER_WIDTH = "w";
+    private static final String PARAMETER_HEIGHT = "h";
+
+    // PROPERTY
+    private static final String PROPERTY_CACHE_MAX_AGE = "galleryimage.image.cache.maxAge";
+
+    // CONSTANTS
+    private static final String ETAG_PATTERN = "%d-%dx%d";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    {
+        processRequest( request, response, false );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doHead( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException
+    {
+        processRequest( request, response, true );
+    }
+
+    /**
+     * Process the request : the requested dimensions are snapped to the configured buckets before anything else
+     * 
+     * @param request
+     *            the request
+     * @param response
+     *            the response
+     * @param bHeadOnly
+     *            true if only the headers must be sent
+     * @throws IOException
+     *             if an error occurs while writing the response
+     */
+    private void processRequest( HttpServletRequest request, HttpServletResponse response, boolean bHeadOnly ) throws IOException
+    {
+        int nIdImage = NumberUtils.toInt( request.getParameter( PARAMETER_ID_IMAGE ), -1 );
+        ImageTransformService transformService = ImageTransformService.getInstance( );
+        int nWidth = transformService.snapToBucket( getIntParameter( request, PARAMETER_WIDTH ) );
+        int nHeight = transformService.snapToBucket( getIntParameter( request, PARAMETER_HEIGHT ) );
+
+        if ( nIdImage <= 0 || ( nWidth == 0 && nHeight == 0 ) )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST );
+            return;
+        }
+
+        Image image = ImageHome.find( nIdImage );
+
+        if ( image == null )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+
+        // The image is visible with the galleries it belongs to, and kept out of the shared caches if one of them is protected
+        List<Gallery> listGalleries = GalleryAccessService.getInstance( ).getGalleries( image );
+
+        if ( !GalleryAccessService.getInstance( ).canView( request, listGalleries ) )
+        {
+            response.sendError( HttpServletResponse.SC_FORBIDDEN );
+            return;
+        }
+
+        // The derivatives of a file never change : the original file id and the buckets are a strong validator
+        String strETag = HttpCacheUtils.buildETag( String.format( ETAG_PATTERN, image.getIdFile( ), nWidth, nHeight ) );
+        HttpCacheUtils.setCacheHeaders( response, strETag, -1, GalleryAccessService.getInstance( ).isPrivate( listGalleries ),
+                AppPropertiesService.getPropertyInt( PROPERTY_CACHE_MAX_AGE, 3600 ) );
+
+        if ( HttpCacheUtils.isNotModified( request, strETag, -1 ) )
+        {
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+
+        ImageResource imageResource;
+
+        try
+        {
+            imageResource = transformService.getTransformedImage( image, nWidth, nHeight );
+        }
+        catch( ImageDecodeTimeoutException e )
+        {
+            // The decode budget of the front office is exhausted : the request fails at once instead of queueing
+            response.setHeader( HEADER_RETRY_AFTER, RETRY_AFTER_SECONDS );
+            response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+            return;
+        }
+
+        if ( imageResource == null )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+
+        byte [ ] imageBytes = imageResource.getImage( );
+        response.setContentType( imageResource.getMimeType( ) );
+        response.setContentLength( imageBytes.length );
+
+        if ( bHeadOnly )
+        {
+            return;
+        }
+
+        try ( OutputStream out = response.getOutputStream( ) )
+        {
+            out.write( imageBytes );
+        }
+    }
+
+    /**
+     * Get a positive integer parameter
+     * 
+     * @param request
+     *            the request
+     * @param strParameter
+     *            the parameter name
+     * @return the value, or 0 if the parameter is missing or invalid
+     */
+    private static int getIntParameter( HttpServletRequest request, String strParameter )
+    {
+        String strValue = request.getParameter( strParameter );
+
+        if ( StringUtils.isNumeric( strValue ) && StringUtils.isNotEmpty( strValue ) && strValue.length( ) < 6 )
+        {
+            return Integer.parseInt( strValue );
+        }
+
+        return 0;
+    }
+}
@@ -4,15 +4,18 @@
 DROP TABLE IF EXISTS galleryimage_gallery;
 CREATE TABLE galleryimage_gallery (
 	id_gallery int AUTO_INCREMENT,
-	code_gallery LONG VARCHAR DEFAULT NULL,
+	code_gallery VARCHAR(64) DEFAULT NULL,
 	label VARCHAR(255) NOT NULL,
 	gallery_image_type VARCHAR(255) NOT NULL,
 	height_gallery INT NOT NULL,
 	width_gallery INT NOT NULL,
 	authenticated_mode SMALLINT default 0,
+	load_binary_limit INT NOT NULL DEFAULT -1,
 	PRIMARY KEY (id_gallery)
 );
 
+CREATE UNIQUE INDEX idx_galleryimage_gallery_code ON galleryimage_gallery (code_gallery);
+
 --
 -- Structure for table galleryimage_image
 --
@@ -23,9 +26,17 @@ CREATE TABLE galleryimage_image (
 	description LONG VARCHAR NOT NULL,
 	id_file INT NOT NULL,
 	id_gallery INT NOT NULL,
+	perceptual_hash BIGINT DEFAULT NULL,
+	placeholder VARCHAR(2048) DEFAULT NULL,
+	image_width INT NOT NULL DEFAULT 0,
+	image_height INT NOT NULL DEFAULT 0,
+	image_size INT NOT NULL DEFAULT 0,
+	mime_type VARCHAR(255) DEFAULT NULL,
 	PRIMARY KEY (id_image)
 );
 
+CREATE INDEX idx_galleryimage_image_gallery ON galleryimage_image (id_gallery);
+
 --
 -- Structure for table galleryimage_gallery_image
 --
@@ -34,5 +45,35 @@ CREATE TABLE galleryimage_gallery_image (
 	id_gallery_image int AUTO_INCREMENT,
 	id_gallery INT NOT NULL,
 	id_image INT NOT NULL,
+	image_position INT NOT NULL DEFAULT 0,
 	PRIMARY KEY (id_gallery_image)
-);
\ No newline at end of file
+);
+
+CREATE UNIQUE INDEX idx_galleryimage_gallery_image ON galleryimage_gallery_image (id_gallery, id_image);
+CREATE INDEX idx_galleryimage_gallery_image_image ON galleryimage_gallery_image (id_image);
+CREATE INDEX idx_galleryimage_gallery_image_position ON galleryimage_gallery_image (id_gallery, image_position, id_image);
+
+--
+-- Structure for table galleryimage_image_rendition
+--
+DROP TABLE IF EXISTS galleryimage_image_rendition;
+CREATE TABLE galleryimage_image_rendition (
+	id_image INT NOT NULL,
+	width INT NOT NULL,
+	height INT NOT NULL,
+	id_file INT NOT NULL,
+	PRIMARY KEY (id_image, width)
+);
+
+--
+-- Structure for table galleryimage_image_file
+--
+DROP TABLE IF EXISTS galleryimage_image_file;
+CREATE TABLE galleryimage_image_file (
+	id_file INT NOT NULL,
+	hash_value VARCHAR(64) NOT NULL,
+	ref_count INT NOT NULL DEFAULT 0,
+	PRIMARY KEY (id_file)
+);
+
+CREATE UNIQUE INDEX idx_galleryimage_image_file_hash ON galleryimage_image_file (hash_value);
@@ -0,0 +1,83 @@
+--
+-- MySQL / MariaDB only : the positions are numbered with user variables and an ordered UPDATE
+--
+
+--
+-- Structure for table galleryimage_image_rendition
+--
+DROP TABLE IF EXISTS galleryimage_image_rendition;
+CREATE TABLE galleryimage_image_rendition (
+	id_image INT NOT NULL,
+	width INT NOT NULL,
+	height INT NOT NULL,
+	id_file INT NOT NULL,
+	PRIMARY KEY (id_image, width)
+);
+
+--
+-- Fixed length gallery code (sha256 hex) so that it can be indexed
+--
+ALTER TABLE galleryimage_gallery MODIFY code_gallery VARCHAR(64) DEFAULT NULL;
+CREATE UNIQUE INDEX idx_galleryimage_gallery_code ON galleryimage_gallery (code_gallery);
+
+--
+-- Indexes for the lookups by gallery
+--
+CREATE INDEX idx_galleryimage_image_gallery ON galleryimage_image (id_gallery);
+
+DELETE FROM galleryimage_gallery_image WHERE id_gallery_image NOT IN (
+	SELECT id_gallery_image FROM (
+		SELECT MIN(id_gallery_image) AS id_gallery_image FROM galleryimage_gallery_image GROUP BY id_gallery, id_image
+	) kept_links
+);
+CREATE UNIQUE INDEX idx_galleryimage_gallery_image ON galleryimage_gallery_image (id_gallery, id_image);
+CREATE INDEX idx_galleryimage_gallery_image_image ON galleryimage_gallery_image (id_image);
+
+--
+-- Position of the images in the galleries : sparse positions, in the order of the links creation, numbered per gallery
+-- (rank of the link in its gallery * 1024) as the renumbering of a gallery does. The links are ranked in a single ordered pass :
+-- the rank starts again at 1 each time the gallery changes.
+--
+ALTER TABLE galleryimage_gallery_image ADD COLUMN image_position INT NOT NULL DEFAULT 0;
+SET @link_rank = 0;
+SET @link_gallery = NULL;
+UPDATE galleryimage_gallery_image
+SET image_position = 1024 * ( @link_rank := IF( @link_gallery = id_gallery, @link_rank + 1, 1 ) ),
+	id_gallery = ( @link_gallery := id_gallery )
+ORDER BY id_gallery, id_gallery_image;
+CREATE INDEX idx_galleryimage_gallery_image_position ON galleryimage_gallery_image (id_gallery, image_position, id_image);
+
+--
+-- Index of the image binaries by content, shared by the images with the same content
+--
+CREATE TABLE galleryimage_image_file (
+	id_file INT NOT NULL,
+	hash_value VARCHAR(64) NOT NULL,
+	ref_count INT NOT NULL DEFAULT 0,
+	PRIMARY KEY (id_file)
+);
+
+CREATE UNIQUE INDEX idx_galleryimage_image_file_hash ON galleryimage_image_file (hash_value);
+
+--
+-- Perceptual hash of the images, used to find the near-duplicates
+--
+ALTER TABLE galleryimage_image ADD COLUMN perceptual_hash BIGINT DEFAULT NULL;
+
+--
+-- Tiny version of the images, inlined in the galleries while the images load
+--
+ALTER TABLE galleryimage_image ADD COLUMN placeholder VARCHAR(2048) DEFAULT NULL;
+
+--
+-- Dimensions, size and mime type of the stored images
+--
+ALTER TABLE galleryimage_image ADD COLUMN image_width INT NOT NULL DEFAULT 0;
+ALTER TABLE galleryimage_image ADD COLUMN image_height INT NOT NULL DEFAULT 0;
+ALTER TABLE galleryimage_image ADD COLUMN image_size INT NOT NULL DEFAULT 0;
+ALTER TABLE galleryimage_image ADD COLUMN mime_type VARCHAR(255) DEFAULT NULL;
+
+--
+-- Number of slides of a gallery page carrying their binary, -1 for the default limit of the plugin
+--
+ALTER TABLE galleryimage_gallery ADD COLUMN load_binary_limit INT NOT NULL DEFAULT -1;
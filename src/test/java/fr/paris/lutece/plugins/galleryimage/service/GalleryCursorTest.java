@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Test;
+
+/**
+ * GalleryCursor tests
+ */
+public class GalleryCursorTest
+{
+    /**
+     * A cursor is decoded as it was encoded
+     */
+    @Test
+    public void testRoundTrip( )
+    {
+        GalleryCursor cursor = GalleryCursor.decode( new GalleryCursor( 3, -2048, 42, "0123456789abcdef" ).encode( ) );
+
+        assertNotNull( cursor );
+        assertEquals( 3, cursor.getIndex( ) );
+        assertEquals( -2048, cursor.getPositionAfter( ) );
+        assertEquals( 42, cursor.getIdImageAfter( ) );
+        assertEquals( "0123456789abcdef", cursor.getVersion( ) );
+    }
+
+    /**
+     * The unknown position and version are kept
+     */
+    @Test
+    public void testRoundTripUnknownPosition( )
+    {
+        GalleryCursor cursor = GalleryCursor.decode( new GalleryCursor( 1, Integer.MIN_VALUE, 0, null ).encode( ) );
+
+        assertNotNull( cursor );
+        assertEquals( Integer.MIN_VALUE, cursor.getPositionAfter( ) );
+        assertEquals( 0, cursor.getIdImageAfter( ) );
+        assertEquals( "", cursor.getVersion( ) );
+    }
+
+    /**
+     * The encoded cursor can be used in a url as is
+     */
+    @Test
+    public void testEncodeIsUrlSafe( )
+    {
+        String strCursor = new GalleryCursor( Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, "~~~~????>>>>" ).encode( );
+
+        assertEquals( strCursor, strCursor.replaceAll( "[^A-Za-z0-9_-]", "" ) );
+    }
+
+    /**
+     * The invalid cursors are rejected
+     */
+    @Test
+    public void testDecodeInvalid( )
+    {
+        assertNull( GalleryCursor.decode( null ) );
+        assertNull( GalleryCursor.decode( "" ) );
+        assertNull( GalleryCursor.decode( "not a cursor!" ) );
+        assertNull( GalleryCursor.decode( encode( "1:2:3" ) ) );
+        assertNull( GalleryCursor.decode( encode( "one:2:3:version" ) ) );
+        assertNull( GalleryCursor.decode( encode( "1:2:99999999999:version" ) ) );
+        assertNull( GalleryCursor.decode( encode( "0:2:3:version" ) ) );
+        assertNull( GalleryCursor.decode( encode( "-1:2:3:version" ) ) );
+    }
+
+    /**
+     * Encode a raw cursor string
+     * 
+     * @param strCursor
+     *            the cursor string
+     * @return the encoded string
+     */
+    private static String encode( String strCursor )
+    {
+        return Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( strCursor.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * GalleryImagePositionService tests
+ */
+public class GalleryImagePositionServiceTest
+{
+    private static final int GAP = GalleryImagePositionService.POSITION_GAP;
+
+    /**
+     * A move beyond the last neighbour takes the next gap
+     */
+    @Test
+    public void testSingleNeighbour( )
+    {
+        assertEquals( Integer.valueOf( 2 * GAP ), GalleryImagePositionService.computePosition( Collections.singletonList( 3 * GAP ), true ) );
+        assertEquals( Integer.valueOf( 4 * GAP ), GalleryImagePositionService.computePosition( Collections.singletonList( 3 * GAP ), false ) );
+    }
+
+    /**
+     * A move between two neighbours takes their midpoint
+     */
+    @Test
+    public void testMidpoint( )
+    {
+        assertEquals( Integer.valueOf( GAP + GAP / 2 ), GalleryImagePositionService.computePosition( Arrays.asList( GAP, 2 * GAP ), false ) );
+        assertEquals( Integer.valueOf( GAP + GAP / 2 ), GalleryImagePositionService.computePosition( Arrays.asList( 2 * GAP, GAP ), true ) );
+    }
+
+    /**
+     * Repeated moves between the same neighbours exhaust the gap, then a renumbered gallery has room again
+     */
+    @Test
+    public void testMidpointExhaustion( )
+    {
+        int nLow = GAP;
+        int nHigh = 2 * GAP;
+        int nMoves = 0;
+        Integer nPosition;
+
+        // Each move lands between the previous one and the same neighbour
+        while ( ( nPosition = GalleryImagePositionService.computePosition( Arrays.asList( nLow, nHigh ), false ) ) != null )
+        {
+            nHigh = nPosition;
+            nMoves++;
+        }
+
+        // log2( GAP ) moves before the neighbours are adjacent
+        assertEquals( Integer.numberOfTrailingZeros( GAP ), nMoves );
+        assertEquals( nLow + 1, nHigh );
+
+        // The renumbering spreads the positions again with the default gap
+        nPosition = GalleryImagePositionService.computePosition( Arrays.asList( GAP, 2 * GAP ), false );
+        assertNotNull( nPosition );
+    }
+
+    /**
+     * No position beyond the integer range
+     */
+    @Test
+    public void testOverflow( )
+    {
+        assertNull( GalleryImagePositionService.computePosition( Collections.singletonList( Integer.MAX_VALUE - 1 ), false ) );
+        assertNull( GalleryImagePositionService.computePosition( Collections.singletonList( Integer.MIN_VALUE + 1 ), true ) );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import fr.paris.lutece.plugins.galleryimage.business.Image;
+
+/**
+ * GalleryPagesService tests
+ */
+public class GalleryPagesServiceTest
+{
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String VERSION = "version";
+
+    /**
+     * The pages are filled up to the budget
+     */
+    @Test
+    public void testSplit( )
+    {
+        GalleryPages pages = GalleryPagesService.split( images( 400, 400, 400, 100, 900 ), FINGERPRINT, 1000, 10 );
+
+        assertEquals( 3, pages.getPagesCount( ) );
+        assertEquals( 0, pages.getPageOffset( 1 ) );
+        assertEquals( 2, pages.getPageSize( 1 ) );
+        assertEquals( 2, pages.getPageOffset( 2 ) );
+        assertEquals( 2, pages.getPageSize( 2 ) );
+        assertEquals( 4, pages.getPageOffset( 3 ) );
+        assertEquals( 1, pages.getPageSize( 3 ) );
+        assertEquals( 0, pages.getPageSize( 4 ) );
+        assertEquals( 5, pages.getPageOffset( 4 ) );
+    }
+
+    /**
+     * An image larger than the budget gets a page of its own
+     */
+    @Test
+    public void testSplitOversizedImage( )
+    {
+        GalleryPages pages = GalleryPagesService.split( images( 100, 5000, 100 ), FINGERPRINT, 1000, 10 );
+
+        assertEquals( 3, pages.getPagesCount( ) );
+        assertEquals( 1, pages.getPageSize( 1 ) );
+        assertEquals( 1, pages.getPageOffset( 2 ) );
+        assertEquals( 1, pages.getPageSize( 2 ) );
+        assertEquals( 1, pages.getPageSize( 3 ) );
+
+        pages = GalleryPagesService.split( images( 5000 ), FINGERPRINT, 1000, 10 );
+
+        assertEquals( 1, pages.getPagesCount( ) );
+        assertEquals( 1, pages.getPageSize( 1 ) );
+    }
+
+    /**
+     * The images whose size is unknown get the share of the budget of a count based page
+     */
+    @Test
+    public void testSplitUnknownSize( )
+    {
+        GalleryPages pages = GalleryPagesService.split( images( 0, 0, 0, 0, 0 ), FINGERPRINT, 1000, 2 );
+
+        assertEquals( 3, pages.getPagesCount( ) );
+        assertEquals( 2, pages.getPageSize( 1 ) );
+        assertEquals( 2, pages.getPageSize( 2 ) );
+        assertEquals( 1, pages.getPageSize( 3 ) );
+    }
+
+    /**
+     * An empty gallery has a single empty page
+     */
+    @Test
+    public void testSplitEmpty( )
+    {
+        GalleryPages pages = GalleryPagesService.split( new ArrayList<>( ), FINGERPRINT, 1000, 10 );
+
+        assertEquals( 1, pages.getPagesCount( ) );
+        assertEquals( 0, pages.getPageSize( 1 ) );
+    }
+
+    /**
+     * A budget of 0 or less disables the byte budgeted pages
+     */
+    @Test
+    public void testByteBudgetDisabled( )
+    {
+        GalleryCursor cursor = new GalleryCursor( 2, 1024, 1, VERSION );
+
+        assertFalse( GalleryPagesService.isByteBudgeted( cursor, VERSION, 0 ) );
+        assertFalse( GalleryPagesService.isByteBudgeted( cursor, VERSION, -1 ) );
+        assertTrue( GalleryPagesService.isByteBudgeted( cursor, VERSION, 1000 ) );
+    }
+
+    /**
+     * The byte budgeted boundaries only apply to the version of the gallery the cursor was given for
+     */
+    @Test
+    public void testByteBudgetVersion( )
+    {
+        assertTrue( GalleryPagesService.isByteBudgeted( new GalleryCursor( 2, 1024, 1, null ), VERSION, 1000 ) );
+        assertFalse( GalleryPagesService.isByteBudgeted( new GalleryCursor( 2, 1024, 1, "other" ), VERSION, 1000 ) );
+    }
+
+    /**
+     * Create images of given sizes
+     * 
+     * @param nSizes
+     *            the sizes
+     * @return the images
+     */
+    private static List<Image> images( int... nSizes )
+    {
+        List<Image> listImages = new ArrayList<>( );
+
+        for ( int i = 0; i < nSizes.length; i++ )
+        {
+            Image image = new Image( );
+            image.setIdImage( i + 1 );
+            image.setSize( nSizes [i] );
+            listImages.add( image );
+        }
+
+        return listImages;
+    }
+}
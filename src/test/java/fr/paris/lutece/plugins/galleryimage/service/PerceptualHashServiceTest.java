@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * PerceptualHashService tests
+ */
+public class PerceptualHashServiceTest
+{
+    private static final long HASH = 0x0123456789ABCDEFL;
+    private static final int MAX_DISTANCE = 6;
+    private static final int MAX_RESULTS = 20;
+
+    /**
+     * The distance counts the differing bits
+     */
+    @Test
+    public void testDistance( )
+    {
+        assertEquals( 0, PerceptualHashService.distance( HASH, HASH ) );
+        assertEquals( 64, PerceptualHashService.distance( HASH, ~HASH ) );
+        assertEquals( 6, PerceptualHashService.distance( HASH, flip( HASH, 0, 9, 18, 27, 36, 45 ) ) );
+    }
+
+    /**
+     * The images within the maximum distance are found, the closest first, even when their differing bits are spread over several bytes
+     */
+    @Test
+    public void testFind( )
+    {
+        PerceptualHashService.HashIndex index = new PerceptualHashService.HashIndex( );
+        index.put( 1, HASH );
+        // 6 bits differ, in 6 of the 8 bytes
+        index.put( 2, flip( HASH, 0, 9, 18, 27, 36, 45 ) );
+        // 7 bits differ, in 7 of the 8 bytes : one byte is still shared
+        index.put( 3, flip( HASH, 0, 9, 18, 27, 36, 45, 54 ) );
+        index.put( 4, ~HASH );
+
+        assertEquals( Arrays.asList( 1, 2 ), index.find( HASH, MAX_DISTANCE, 0, MAX_RESULTS ) );
+        assertEquals( Arrays.asList( 1, 2, 3 ), index.find( HASH, MAX_DISTANCE + 1, 0, MAX_RESULTS ) );
+    }
+
+    /**
+     * The searched image and the results beyond the limit are left out
+     */
+    @Test
+    public void testFindExcludedAndLimit( )
+    {
+        PerceptualHashService.HashIndex index = new PerceptualHashService.HashIndex( );
+        index.put( 1, HASH );
+        index.put( 2, flip( HASH, 3 ) );
+        index.put( 3, flip( HASH, 3, 60 ) );
+
+        assertEquals( Arrays.asList( 2, 3 ), index.find( HASH, MAX_DISTANCE, 1, MAX_RESULTS ) );
+        assertEquals( Collections.singletonList( 1 ), index.find( HASH, MAX_DISTANCE, 0, 1 ) );
+    }
+
+    /**
+     * A new hash of an image replaces the previous one
+     */
+    @Test
+    public void testPutReplaces( )
+    {
+        PerceptualHashService.HashIndex index = new PerceptualHashService.HashIndex( );
+        index.put( 1, HASH );
+        index.put( 1, ~HASH );
+
+        assertTrue( index.find( HASH, MAX_DISTANCE, 0, MAX_RESULTS ).isEmpty( ) );
+        assertEquals( Collections.singletonList( 1 ), index.find( ~HASH, MAX_DISTANCE, 0, MAX_RESULTS ) );
+    }
+
+    /**
+     * Flip bits of a hash
+     * 
+     * @param lHash
+     *            the hash
+     * @param nBits
+     *            the bits to flip
+     * @return the new hash
+     */
+    private static long flip( long lHash, int... nBits )
+    {
+        long lFlipped = lHash;
+
+        for ( int nBit : nBits )
+        {
+            lFlipped ^= 1L << nBit;
+        }
+
+        return lFlipped;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.galleryimage.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+/**
+ * HttpCacheUtils tests
+ */
+public class HttpCacheUtilsTest
+{
+    private static final String ETAG = HttpCacheUtils.buildETag( "abc-12" );
+    private static final long LAST_MODIFIED = 1500000000000L;
+
+    /**
+     * The current entity tag matches
+     */
+    @Test
+    public void testETagMatch( )
+    {
+        assertTrue( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "\"abc-12\"" ), ETAG, -1 ) );
+        assertFalse( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "\"abc-11\"" ), ETAG, -1 ) );
+    }
+
+    /**
+     * The weak entity tags match with the weak comparison of If-None-Match
+     */
+    @Test
+    public void testWeakETag( )
+    {
+        assertTrue( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "W/\"abc-12\"" ), ETAG, -1 ) );
+        assertFalse( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "W/\"abc-11\"" ), ETAG, -1 ) );
+    }
+
+    /**
+     * One of the listed entity tags is enough
+     */
+    @Test
+    public void testETagList( )
+    {
+        assertTrue( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "\"abc-10\", W/\"abc-11\",\"abc-12\"" ), ETAG, -1 ) );
+        assertTrue( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "\"abc-10\" ,  W/\"abc-12\"" ), ETAG, -1 ) );
+        assertFalse( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "\"abc-10\", W/\"abc-11\"" ), ETAG, -1 ) );
+    }
+
+    /**
+     * The wildcard matches any entity tag
+     */
+    @Test
+    public void testWildcard( )
+    {
+        assertTrue( HttpCacheUtils.isNotModified( request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "*" ), ETAG, -1 ) );
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since
+     */
+    @Test
+    public void testETagPrecedence( )
+    {
+        HttpServletRequest request = request( HttpCacheUtils.HEADER_IF_NONE_MATCH, "\"abc-11\"" );
+        ( (RequestHeaders) Proxy.getInvocationHandler( request ) )._mapDateHeaders.put( HttpCacheUtils.HEADER_IF_MODIFIED_SINCE, LAST_MODIFIED );
+
+        assertFalse( HttpCacheUtils.isNotModified( request, ETAG, LAST_MODIFIED ) );
+    }
+
+    /**
+     * If-Modified-Since is only evaluated with a last modification date
+     */
+    @Test
+    public void testIfModifiedSince( )
+    {
+        HttpServletRequest request = request( null, null );
+        ( (RequestHeaders) Proxy.getInvocationHandler( request ) )._mapDateHeaders.put( HttpCacheUtils.HEADER_IF_MODIFIED_SINCE, LAST_MODIFIED );
+
+        assertTrue( HttpCacheUtils.isNotModified( request, ETAG, LAST_MODIFIED ) );
+        assertFalse( HttpCacheUtils.isNotModified( request, ETAG, LAST_MODIFIED + 1000 ) );
+        assertFalse( HttpCacheUtils.isNotModified( request, ETAG, -1 ) );
+    }
+
+    /**
+     * No conditional header : the representation is sent
+     */
+    @Test
+    public void testNoConditionalHeader( )
+    {
+        assertFalse( HttpCacheUtils.isNotModified( request( null, null ), ETAG, LAST_MODIFIED ) );
+    }
+
+    /**
+     * Create a request with a header
+     * 
+     * @param strName
+     *            the header name, or null
+     * @param strValue
+     *            the header value
+     * @return the request
+     */
+    private static HttpServletRequest request( String strName, String strValue )
+    {
+        RequestHeaders headers = new RequestHeaders( );
+
+        if ( strName != null )
+        {
+            headers._mapHeaders.put( strName, strValue );
+        }
+
+        return (HttpServletRequest) Proxy.newProxyInstance( HttpCacheUtilsTest.class.getClassLoader( ), new Class<?> [ ] {
+                HttpServletRequest.class
+        }, headers );
+    }
+
+    /**
+     * The headers of a request : only getHeader and getDateHeader are answered
+     */
+    private static final class RequestHeaders implements InvocationHandler
+    {
+        private final Map<String, String> _mapHeaders = new HashMap<>( );
+        private final Map<String, Long> _mapDateHeaders = new HashMap<>( );
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke( Object proxy, Method method, Object [ ] args )
+        {
+            if ( "getHeader".equals( method.getName( ) ) )
+            {
+                return _mapHeaders.get( args [0] );
+            }
+
+            if ( "getDateHeader".equals( method.getName( ) ) )
+            {
+                return _mapDateHeaders.getOrDefault( args [0], -1L );
+            }
+
+            throw new UnsupportedOperationException( method.getName( ) );
+        }
+    }
+}
@@ -0,0 +1,4 @@
+<%@ page errorPage="../../ErrorPage.jsp" contentType="application/json; charset=UTF-8" trimDirectiveWhitespaces="true" %>
+<jsp:useBean id="manageImage" scope="session" class="fr.paris.lutece.plugins.galleryimage.web.ManageImageJspBean" />
+<% manageImage.init( request, manageImage.RIGHT_GALLERY_IMAGE_MANAGEMENT ); %>
+<%= manageImage.getUploadJobStatus( request ) %>